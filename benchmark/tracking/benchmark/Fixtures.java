@@ -0,0 +1,300 @@
+package tracking.benchmark;
+
+import static com.googlecode.javacv.cpp.opencv_core.CV_FILLED;
+import static com.googlecode.javacv.cpp.opencv_core.CV_WHOLE_SEQ;
+import static com.googlecode.javacv.cpp.opencv_core.IPL_DEPTH_8U;
+import static com.googlecode.javacv.cpp.opencv_core.cvCircle;
+import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvFillConvexPoly;
+import static com.googlecode.javacv.cpp.opencv_core.cvPoint;
+import static com.googlecode.javacv.cpp.opencv_core.cvRectangle;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvScalarAll;
+import static com.googlecode.javacv.cpp.opencv_core.cvSet;
+import static com.googlecode.javacv.cpp.opencv_core.cvSize;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_CHAIN_APPROX_SIMPLE;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_RETR_EXTERNAL;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvContourArea;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvFindContours;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.Random;
+
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacpp.Loader;
+import com.googlecode.javacv.cpp.opencv_core.CvContour;
+import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.CvPoint;
+import com.googlecode.javacv.cpp.opencv_core.CvPoint2D32f;
+import com.googlecode.javacv.cpp.opencv_core.CvScalar;
+import com.googlecode.javacv.cpp.opencv_core.CvSeq;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Synthetic input for the benchmarks. Everything is generated from fixed seeds, so every run and
+ * every commit measures the same images and lists.
+ *
+ * @author Philipp
+ */
+public class Fixtures {
+
+    /**
+     * Seed of all fixtures.
+     */
+    public static final long SEED = 20130311L;
+
+    /**
+     * The colors of the signs in the scenes. They are fully saturated, so they keep their color
+     * when the ColorFilter pushes the HSV value.
+     */
+    private static final double[][] COLORS = { { 0, 0, 255 }, { 255, 0, 0 },
+            { 0, 255, 255 }, { 0, 255, 0 }, { 255, 0, 255 }, { 255, 255, 0 },
+            { 0, 128, 255 }, { 255, 0, 128 } };
+
+    /**
+     * Tolerance of the scalar ranges around the colors.
+     */
+    private static final double RANGE = 40;
+
+    /**
+     * The shapes, which are drawn into the scenes.
+     */
+    private static final Type[] SHAPES = { Type.SIGN_CIRCLE,
+            Type.SIGN_TRIANGLE, Type.SIGN_RECTANGLE };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Create a street scene: a noisy grey background with filled circles, triangles and
+     * rectangles in all sign colors.
+     *
+     * @param width
+     * @param height
+     * @param signs
+     *            number of signs in the scene.
+     * @return a new rgb {@link IplImage}, has to be released.
+     */
+    public static IplImage scene(int width, int height, int signs) {
+        Random random = new Random(SEED);
+        IplImage image = cvCreateImage(cvSize(width, height), IPL_DEPTH_8U,
+                3);
+
+        // grey noise, so the color filter has something to reject
+        ByteBuffer buffer = image.getByteBuffer();
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) (60 + random.nextInt(60)));
+        }
+
+        for (int i = 0; i < signs; i++) {
+            int size = 20 + random.nextInt(60);
+            int x = random.nextInt(Math.max(1, width - size));
+            int y = random.nextInt(Math.max(1, height - size));
+            double[] c = COLORS[i % COLORS.length];
+            drawShape(image, SHAPES[i % SHAPES.length], x, y, size,
+                    new CvScalar(c[0], c[1], c[2], 0));
+        }
+        return image;
+    }
+
+    /**
+     * Create a binary blob image with one white shape, like a ROI of the filtered image.
+     *
+     * @param shape
+     *            {@link Type#SIGN_CIRCLE}, {@link Type#SIGN_TRIANGLE},
+     *            {@link Type#SIGN_RECTANGLE} or {@link Type#SIGN_OCTAGON}.
+     * @param size
+     *            the size of the shape in pixels.
+     * @return a new greyscale {@link IplImage}, has to be released.
+     */
+    public static IplImage blob(Type shape, int size) {
+        return blob(shape, size, 0);
+    }
+
+    /**
+     * Create a binary blob image with one white shape, which is rotated around its center.
+     *
+     * @param shape
+     *            {@link Type#SIGN_CIRCLE}, {@link Type#SIGN_TRIANGLE},
+     *            {@link Type#SIGN_RECTANGLE} or {@link Type#SIGN_OCTAGON}.
+     * @param size
+     *            the size of the shape in pixels.
+     * @param angle
+     *            the rotation in degrees.
+     * @return a new greyscale {@link IplImage}, has to be released.
+     */
+    public static IplImage blob(Type shape, int size, double angle) {
+        // a rotated shape needs more space
+        int border = angle == 0 ? size / 8 + 2 : size / 4 + 2;
+        IplImage image = cvCreateImage(
+                cvSize(size + 2 * border, size + 2 * border),
+                IPL_DEPTH_8U, 1);
+        cvSet(image, cvScalarAll(0));
+        drawShape(image, shape, border, border, size, angle, cvScalarAll(255));
+        return image;
+    }
+
+    /**
+     * Return the biggest outer contour of a blob image, like cvFindContours finds it in the
+     * filtered image.
+     *
+     * @param blob
+     *            the blob image, it is not changed.
+     * @param storage
+     *            memory storage for the contour.
+     * @return the contour or <code>null</code>, if the image is empty.
+     */
+    public static CvSeq contour(IplImage blob, CvMemStorage storage) {
+        IplImage copy = cvCloneImage(blob);
+        CvSeq contours = new CvSeq();
+        cvFindContours(copy, storage, contours,
+                Loader.sizeof(CvContour.class), CV_RETR_EXTERNAL,
+                CV_CHAIN_APPROX_SIMPLE, cvPoint(0, 0));
+        cvReleaseImage(copy);
+
+        CvSeq biggest = null;
+        double biggestArea = 0;
+        for (CvSeq ptr = contours; ptr != null && !ptr.isNull(); ptr = ptr
+                .h_next()) {
+            double area = Math.abs(cvContourArea(ptr, CV_WHOLE_SEQ, 0));
+            if (biggest == null || area > biggestArea) {
+                biggest = ptr;
+                biggestArea = area;
+            }
+        }
+        return biggest;
+    }
+
+    private static void drawShape(IplImage image, Type shape, int x, int y,
+            int size, CvScalar color) {
+        drawShape(image, shape, x, y, size, 0, color);
+    }
+
+    private static void drawShape(IplImage image, Type shape, int x, int y,
+            int size, double angle, CvScalar color) {
+        if (shape == Type.SIGN_CIRCLE) {
+            cvCircle(image, cvPoint(x + size / 2, y + size / 2), size / 2,
+                    color, CV_FILLED, 8, 0);
+            return;
+        }
+
+        double[][] corners;
+        if (shape == Type.SIGN_TRIANGLE) {
+            corners = new double[][] { { x, y + size }, { x + size, y + size },
+                    { x + size / 2, y } };
+        } else if (shape == Type.SIGN_OCTAGON) {
+            corners = new double[8][];
+            for (int i = 0; i < 8; i++) {
+                double a = Math.PI / 8 + i * Math.PI / 4;
+                corners[i] = new double[] {
+                        x + size / 2.0 + size / 2.0 * Math.cos(a),
+                        y + size / 2.0 + size / 2.0 * Math.sin(a) };
+            }
+        } else if (angle == 0) { // the rectangle of the former fixtures
+            cvRectangle(image, cvPoint(x, y), cvPoint(x + size, y + size),
+                    color, CV_FILLED, 8, 0);
+            return;
+        } else {
+            corners = new double[][] { { x, y }, { x + size, y },
+                    { x + size, y + size }, { x, y + size } };
+        }
+
+        // rotate the corners around the center of the shape
+        double cos = Math.cos(Math.toRadians(angle));
+        double sin = Math.sin(Math.toRadians(angle));
+        double cx = x + size / 2.0;
+        double cy = y + size / 2.0;
+        CvPoint points = new CvPoint(corners.length);
+        for (int i = 0; i < corners.length; i++) {
+            double dx = corners[i][0] - cx;
+            double dy = corners[i][1] - cy;
+            points.position(i);
+            points.x((int) Math.round(cx + dx * cos - dy * sin)).y(
+                    (int) Math.round(cy + dx * sin + dy * cos));
+        }
+        points.position(0);
+        cvFillConvexPoly(image, points, corners.length, color, 8, 0);
+    }
+
+    /**
+     * Return the lower bounds of the color filter ranges around the first sign colors.
+     *
+     * @param ranges
+     *            number of ranges, 1 to 8.
+     * @return {@link LinkedList} of {@link CvScalar}s.
+     */
+    public static LinkedList<CvScalar> lowScalars(int ranges) {
+        return scalars(ranges, -RANGE);
+    }
+
+    /**
+     * Return the upper bounds of the color filter ranges around the first sign colors.
+     *
+     * @param ranges
+     *            number of ranges, 1 to 8.
+     * @return {@link LinkedList} of {@link CvScalar}s.
+     */
+    public static LinkedList<CvScalar> highScalars(int ranges) {
+        return scalars(ranges, RANGE);
+    }
+
+    private static LinkedList<CvScalar> scalars(int ranges, double offset) {
+        LinkedList<CvScalar> scalars = new LinkedList<CvScalar>();
+        for (int i = 0; i < ranges; i++) {
+            double[] c = COLORS[i % COLORS.length];
+            scalars.add(new CvScalar(clamp(c[0] + offset), clamp(c[1] + offset),
+                    clamp(c[2] + offset), 0));
+        }
+        return scalars;
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * Create Hough lines like cvHoughLines2 returns them for a polygon: a few bundles of nearly
+     * equal lines. point.x() is the distance rho, point.y() the angle theta.
+     *
+     * @param lines
+     *            number of lines.
+     * @param sides
+     *            number of bundles, e.g. 3 for a triangle.
+     * @return {@link LinkedList} of {@link CvPoint2D32f}.
+     */
+    public static LinkedList<CvPoint2D32f> houghLines(int lines, int sides) {
+        Random random = new Random(SEED + lines);
+        LinkedList<CvPoint2D32f> list = new LinkedList<CvPoint2D32f>();
+        for (int i = 0; i < lines; i++) {
+            int side = i % sides;
+            double rho = 20 + 15 * side + random.nextGaussian() * 2;
+            double theta = Math.PI * side / sides + random.nextGaussian() * 0.02;
+            list.add(new CvPoint2D32f(rho, theta));
+        }
+        return list;
+    }
+
+    /**
+     * Create random points for the sign tracker.
+     *
+     * @param random
+     *            the source of the coordinates.
+     * @param points
+     *            number of points.
+     * @param width
+     * @param height
+     * @return the coordinates as {x, y} pairs.
+     */
+    public static int[][] points(Random random, int points, int width,
+            int height) {
+        int[][] result = new int[points][2];
+        for (int i = 0; i < points; i++) {
+            result[i][0] = random.nextInt(width);
+            result[i][1] = random.nextInt(height);
+        }
+        return result;
+    }
+}
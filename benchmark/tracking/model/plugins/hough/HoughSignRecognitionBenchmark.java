@@ -0,0 +1,89 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tracking.benchmark.Fixtures;
+import tracking.model.plugins.FrameContext;
+import tracking.model.plugins.FrameDetection;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Benchmark of the detection step of the {@link HoughSignRecognition} on a fixed synthetic frame:
+ * color filter, contours and the shape detection of all blobs.
+ *
+ * @author Philipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class HoughSignRecognitionBenchmark {
+
+    /**
+     * Frame size as WIDTHxHEIGHT.
+     */
+    @Param({ "640x360", "1280x720" })
+    public String size;
+
+    /**
+     * Number of signs in the frame.
+     */
+    @Param({ "4", "24" })
+    public int signs;
+
+    /**
+     * Tasks for the shape detection of the blobs.
+     */
+    @Param({ "1", "4" })
+    public int blobThreads;
+
+    private IplImage frame;
+
+    private HoughSignRecognition plugin;
+
+    @Setup
+    public void setUp() {
+        String[] split = size.split("x");
+        frame = Fixtures.scene(Integer.parseInt(split[0]),
+                Integer.parseInt(split[1]), signs);
+        plugin = new HoughSignRecognition(null);
+        plugin.setDrawIntoImage(false);
+        plugin.setBlobThreads(blobThreads);
+        plugin.setScalarLists(Fixtures.lowScalars(4), Fixtures.highScalars(4));
+    }
+
+    @TearDown
+    public void tearDown() {
+        cvReleaseImage(frame);
+        plugin.release();
+    }
+
+    @Benchmark
+    public int detectFrame() {
+        FrameContext context = new FrameContext(frame);
+        FrameDetection detection = plugin.detectFrame(context);
+        int points = ((HoughFrameDetection) detection).getTrackingPoints()
+                .size();
+        detection.release();
+        context.release();
+        return points;
+    }
+}
@@ -0,0 +1,428 @@
+package tracking.model.plugins.hough;
+
+import java.awt.Point;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import tracking.model.ImageCodec;
+import tracking.model.NativeMemory;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+import tracking.model.plugins.hough.PointGrid.Entry;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * The {@link SignTracker} with {@link TrackingPoint} and {@link TrackingLine} objects and the
+ * points in a {@link PointGrid}, before the tracker was moved to the {@link TrackStore}. Only for
+ * the comparison in the {@link SignTrackerBenchmark}.
+ *
+ * @author Philipp
+ */
+public class ObjectSignTracker implements PointTracker {
+
+    /**
+     * Sign location points in the order they were added, indexed by a grid with maxPointDistance
+     * as cell size.
+     */
+    private PointGrid trackingPoints;
+
+    /**
+     * List of located lines
+     */
+    private LinkedList<TrackingLine> trackingLines;
+
+    private double maxLineDistance;
+    private double maxPointDistance;
+    private int maxFrameDelay;
+
+    /**
+     * Reused lists for the points of the neighbouring cells.
+     */
+    private final List<Entry> candidates = new ArrayList<Entry>();
+    private final List<Entry> thirdCandidates = new ArrayList<Entry>();
+
+    /**
+     * Constructor for sign tracker
+     * 
+     * @param maxLineDistance
+     *            The maximum distance a point can have to a line, built by two other points.
+     * @param maxPointDistance
+     *            maximum distance a point can have to the tip of the line.
+     * @param maxFrameDelay
+     *            maximum frame delay until a line or a point is recognized as a sign. E.g.
+     *            maxFrameDelay = 5, when a tracking line does not get new points within 5 frames,
+     *            it is recognized as a sign.
+     */
+    public ObjectSignTracker(double maxLineDistance, double maxPointDistance,
+            int maxFrameDelay) {
+        this.maxLineDistance = maxLineDistance;
+        this.maxPointDistance = maxPointDistance;
+        this.maxFrameDelay = maxFrameDelay;
+        this.trackingLines = new LinkedList<TrackingLine>();
+        this.trackingPoints = new PointGrid(maxPointDistance);
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.FIRST_HIT;
+    }
+
+    /**
+     * Add trackpoints to the {@link SignTracker}. The tracking methos is "Take First Hit". That
+     * means, the first 3 points which are detected on one line are deleted and become a line. Then,
+     * the remaining points are processed. In line-point detection, the first point detected on a
+     * line is added to this line as new point and the detection goes on with the next line in the
+     * list. This method returns a {@link LinkedList} of {@link StreetObject}
+     * 
+     * @param trackingPoints
+     *            a {@link LinkedList} of new found tracking points
+     * @return {@link LinkedList} of the tracked {@link StreetObject}
+     */
+    @Override
+    public LinkedList<StreetObject> addTrackpoints(
+            LinkedList<TrackingPoint> trackingPoints) {
+        for (TrackingPoint point : trackingPoints) {
+            this.trackingPoints.add(point);
+        }
+        dctLinePoint();
+        dctPointLine();
+        LinkedList<StreetObject> objects = new LinkedList<StreetObject>();
+
+        for (Iterator<TrackingLine> it = trackingLines.iterator(); it.hasNext();) {
+            TrackingLine line = it.next();
+            if (line.getFrameDelay() > maxFrameDelay) {
+                objects.add(new StreetObject(line.getImage(), line.getType()));
+                line.releaseImage();
+                it.remove();
+            }
+        }
+
+        for (Iterator<TrackingPoint> it = this.trackingPoints.iterator(); it
+                .hasNext();) {
+            TrackingPoint point = it.next();
+            if (point.getFrameDelay() > maxFrameDelay) {
+                objects.add(new StreetObject(point.getImage(), point.getType()));
+                point.releaseImage();
+                it.remove();
+            }
+        }
+
+        incrementFrameDelay();
+        return objects;
+    }
+
+    /**
+     * Detect lines with 3 points on it with "Take First Hit" method. The points are compared in
+     * list order like in a triple loop over the list, but only with the points of the neighbouring
+     * cells: P2 has to be within maxPointDistance of P1 and P3 within maxPointDistance of P2.
+     */
+    private void dctPointLine() {
+        if (trackingPoints.size() < 3) {
+            return;
+        }
+        Entry e1 = trackingPoints.first();
+        while (e1 != null) {
+            TrackingPoint P1 = e1.getPoint();
+            Entry next = e1.getNext();
+
+            // find all lines between P1 and the following points
+            jfor: for (Entry e2 : trackingPoints.neighbours(P1.getX(),
+                    P1.getY(), candidates)) {
+                TrackingPoint P2 = e2.getPoint();
+
+                // check if the points have a maximum distance of maxPointDistance
+                if (e2.getOrder() > e1.getOrder()
+                        && P1.getType() == P2.getType()
+                        && P1.distance(P2) <= maxPointDistance) {
+
+                    // check if one of the remaining points is on a line built from 2 other points
+                    for (Entry e3 : trackingPoints.neighbours(P2.getX(),
+                            P2.getY(), thirdCandidates)) {
+
+                        // these points already are on the line
+                        if (e3 == e1 || e3 == e2) {
+                            continue;
+                        }
+                        TrackingPoint P3 = e3.getPoint();
+
+                        // The type of P3 must be the same as P2 and P1
+                        // The distance of P3 to P2 must be lower than maxPointDistance. P2 is
+                        // the tip of our temporary line: When the sign is only going in one
+                        // direction, the points are sorted in the chronology they appear.
+                        // The distance of P3 to the line(P1,P2) must be lower than
+                        // maxLineDistance.
+                        if (P2.getType() == P3.getType()
+                                && P3.distance(P2) <= maxPointDistance
+                                && Line2D.ptLineDist(P1.getX(), P1.getY(),
+                                        P2.getX(), P2.getY(), P3.getX(),
+                                        P3.getY()) <= maxLineDistance) {
+
+                            // the point is on the line. Make a new line.
+                            trackingLines.add(new TrackingLine(P2, P3, P3
+                                    .getType(), getMaxImage(P2, P3)));
+
+                            // release images and remove points, that are now a line, form
+                            // trackingPoints list.
+                            P1.releaseImage();
+                            P2.releaseImage();
+                            P3.releaseImage();
+                            trackingPoints.remove(e2);
+                            trackingPoints.remove(e3);
+                            next = e1.getNext();
+                            trackingPoints.remove(e1);
+                            // The list index of P1 is processed again. When P3 was in front of
+                            // P1, the points behind P1 moved by one less, so the first of them
+                            // is skipped.
+                            if (e3.getOrder() < e1.getOrder() && next != null) {
+                                next = next.getNext();
+                            }
+                            break jfor;
+                        }
+                    }// end for e3
+                } // end if distance P1 P2
+            }// end for e2
+            e1 = next;
+        }
+    }
+
+    /**
+     * Return the bigger image of P1 and P2
+     * 
+     * @param P1
+     * @param P2
+     * @return
+     */
+    private IplImage getMaxImage(TrackingPoint P1, TrackingPoint P2) {
+        int x = P1.getImage().height() * P1.getImage().width();
+        int y = P2.getImage().height() * P2.getImage().width();
+
+        if (x < y) {
+            return P2.getImage();
+        } else {
+            return P1.getImage();
+        }
+    }
+
+    /**
+     * Detect point that belongs to a line with "Take First Hit" method. The points are compared in
+     * list order, but only the points in the cells around the tip of the line.
+     */
+    private void dctLinePoint() {
+
+        if (trackingLines.isEmpty() || trackingPoints.isEmpty()) {
+            return;
+        }
+
+        // go through all lines
+        for (TrackingLine line : trackingLines) {
+            // only points behind this position in the list are compared
+            long after = Long.MIN_VALUE;
+            Entry found;
+            do {
+                found = null;
+                Point2D tip = line.getP2();
+                for (Entry entry : trackingPoints.neighbours(tip.getX(),
+                        tip.getY(), candidates)) {
+                    TrackingPoint point = entry.getPoint();
+
+                    // ****a new point is found
+                    // Frame delay of new point must be 0. That means it's a really new point.
+                    // The smallest distance of the point to the line must be lower than
+                    // maxLineDistance.
+                    // The distance from P2, which is the tip of the line, to the new point must
+                    // be lower than maxPointDistance.
+                    // The StreetObject.Type of the new point must be the same as the Type of the
+                    // line.
+                    if (entry.getOrder() > after && point.getFrameDelay() == 0
+                            && line.getType() == point.getType()
+                            && tip.distance(point) <= maxPointDistance
+                            && line.ptLineDist(point) <= maxLineDistance) {
+                        found = entry;
+                        break;
+                    }
+                }
+
+                if (found != null) {
+                    TrackingPoint point = found.getPoint();
+                    // set new tip of the line
+                    line.setLine(line.getP2(), point);
+
+                    // set new image for the line if it's bigger than the old one. (better quality)
+                    IplImage old = line.getImage();
+                    IplImage nevv = point.getImage();
+
+                    int x = old.height() * old.width();
+                    int y = nevv.height() * nevv.width();
+                    if (x < y) {
+                        line.setImage(nevv);
+                        NativeMemory.releaseImage(old);
+                    }
+                    line.resetFrameDelay();
+                    point.releaseImage();
+
+                    // the search goes on behind the point, which follows the removed one
+                    Entry skipped = found.getNext();
+                    trackingPoints.remove(found);
+                    if (skipped == null) {
+                        break;
+                    }
+                    after = skipped.getOrder();
+                }
+            } while (found != null);
+        }
+    }
+
+    // /**
+    // * fromIndex inclusive and toIndex exclusive
+    // */
+    // private LinkedList<TrackingLine> subList(LinkedList<TrackingLine> list,
+    // int fromIndex, int toIndex) {
+    // if (fromIndex < 0 || fromIndex > list.size() || toIndex < fromIndex
+    // || toIndex > list.size() || fromIndex == toIndex) {
+    // return null;
+    // }
+    //
+    // LinkedList<TrackingLine> result = new LinkedList<TrackingLine>();
+    //
+    // for (int i = fromIndex; i < toIndex; i++) {
+    // result.add(list.get(i));
+    // }
+    // return result;
+    // }
+
+    @Override
+    public void setValues(double maxLineDistance, double maxPointDistance,
+            int maxFrameDelay) {
+        this.maxFrameDelay = maxFrameDelay;
+        this.maxLineDistance = maxLineDistance;
+        this.maxPointDistance = maxPointDistance;
+        trackingPoints.setDistance(maxPointDistance);
+    }
+
+    /**
+     * Write the state of the tracker: the values and all open tracking points and lines with their
+     * images.
+     * 
+     * @param out
+     *            the stream to write to.
+     * @throws IOException
+     */
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeDouble(maxLineDistance);
+        out.writeDouble(maxPointDistance);
+        out.writeInt(maxFrameDelay);
+
+        out.writeInt(trackingPoints.size());
+        for (TrackingPoint point : trackingPoints) {
+            out.writeInt((int) point.getX());
+            out.writeInt((int) point.getY());
+            out.writeUTF(point.getType().name());
+            out.writeInt(point.getFrameDelay());
+            writeImage(out, point.getImage());
+        }
+
+        out.writeInt(trackingLines.size());
+        for (TrackingLine line : trackingLines) {
+            out.writeInt((int) line.getX1());
+            out.writeInt((int) line.getY1());
+            out.writeInt((int) line.getX2());
+            out.writeInt((int) line.getY2());
+            out.writeUTF(line.getType().name());
+            out.writeInt(line.getFrameDelay());
+            writeImage(out, line.getImage());
+        }
+    }
+
+    /**
+     * Remove the open tracking points and lines and release their images.
+     */
+    @Override
+    public void clear() {
+        for (TrackingPoint point : trackingPoints) {
+            point.releaseImage();
+        }
+        trackingPoints.clear();
+        for (TrackingLine line : trackingLines) {
+            line.releaseImage();
+        }
+        trackingLines.clear();
+    }
+
+    /**
+     * Replace the state of the tracker with the state written by
+     * {@link #writeState(DataOutputStream)}. The open tracking points and lines are released.
+     * 
+     * @param in
+     *            the stream to read from.
+     * @throws IOException
+     */
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        clear();
+
+        maxLineDistance = in.readDouble();
+        maxPointDistance = in.readDouble();
+        maxFrameDelay = in.readInt();
+        trackingPoints.setDistance(maxPointDistance);
+
+        int points = in.readInt();
+        for (int i = 0; i < points; i++) {
+            Point location = new Point(in.readInt(), in.readInt());
+            Type type = Type.valueOf(in.readUTF());
+            int delay = in.readInt();
+            IplImage image = readImage(in);
+            TrackingPoint point = new TrackingPoint(location, type, image);
+            NativeMemory.releaseImage(image); // the point has a copy
+            point.setFrameDelay(delay);
+            trackingPoints.add(point);
+        }
+
+        int lines = in.readInt();
+        for (int i = 0; i < lines; i++) {
+            Point p1 = new Point(in.readInt(), in.readInt());
+            Point p2 = new Point(in.readInt(), in.readInt());
+            Type type = Type.valueOf(in.readUTF());
+            int delay = in.readInt();
+            IplImage image = readImage(in);
+            TrackingLine line = new TrackingLine(p1, p2, type, image);
+            NativeMemory.releaseImage(image); // the line has a copy
+            line.setFrameDelay(delay);
+            trackingLines.add(line);
+        }
+    }
+
+    private static void writeImage(DataOutputStream out, IplImage image)
+            throws IOException {
+        byte[] bytes = ImageCodec.encode(image);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static IplImage readImage(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ImageCodec.decode(bytes);
+    }
+
+    /**
+     * Increment the frame delays in all tracking points and tracking lines.
+     */
+    private void incrementFrameDelay() {
+        for (TrackingPoint point : trackingPoints) {
+            point.incrementFrameDelay();
+        }
+        for (TrackingLine line : trackingLines) {
+            line.incrementFrameDelay();
+        }
+    }
+
+}
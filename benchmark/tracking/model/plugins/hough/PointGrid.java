@@ -0,0 +1,304 @@
+package tracking.model.plugins.hough;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The open {@link TrackingPoint}s of the {@link ObjectSignTracker}. The points are kept in the
+ * order they were added, like in a list, and additionally in a uniform grid. The cells are as big
+ * as the maximum point distance of the tracker, so all points within this distance of a location
+ * are in the 3x3 cells around it and the tracker does not have to look at the other points.
+ * <p>
+ * Adding and removing a point is O(1) besides the removal from its cell. The coordinates of the
+ * points are integers, so the cells are computed with integer arithmetic and there are no rounding
+ * problems at the cell borders.
+ *
+ * @author Philipp
+ */
+class PointGrid implements Iterable<TrackingPoint> {
+
+    /**
+     * A point in the grid and in the list.
+     */
+    static class Entry {
+
+        private final TrackingPoint point;
+
+        /**
+         * Position in the list. Increases with every added point and never changes.
+         */
+        private final long order;
+
+        private long cell;
+
+        private Entry previous;
+
+        private Entry next;
+
+        private Entry(TrackingPoint point, long order, long cell) {
+            this.point = point;
+            this.order = order;
+            this.cell = cell;
+        }
+
+        TrackingPoint getPoint() {
+            return point;
+        }
+
+        long getOrder() {
+            return order;
+        }
+
+        /**
+         * Return the next point in the list, <code>null</code> for the last one.
+         *
+         * @return
+         */
+        Entry getNext() {
+            return next;
+        }
+    }
+
+    private static final Comparator<Entry> BY_ORDER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return o1.order < o2.order ? -1 : (o1.order == o2.order ? 0 : 1);
+        }
+    };
+
+    /**
+     * The points of the cells in list order.
+     */
+    private final Map<Long, List<Entry>> cells = new HashMap<Long, List<Entry>>();
+
+    private int cellSize;
+
+    private Entry first;
+
+    private Entry last;
+
+    private int size;
+
+    private long nextOrder;
+
+    /**
+     * @param distance
+     *            the maximum distance of two points, which are compared.
+     */
+    PointGrid(double distance) {
+        this.cellSize = cellSize(distance);
+    }
+
+    /**
+     * Change the maximum distance of two points, which are compared. The cells are built again if
+     * their size changes.
+     *
+     * @param distance
+     */
+    void setDistance(double distance) {
+        int size = cellSize(distance);
+        if (size == cellSize) {
+            return;
+        }
+        cellSize = size;
+
+        // the list is kept, only the cells change
+        cells.clear();
+        for (Entry entry = first; entry != null; entry = entry.next) {
+            entry.cell = cell(entry.point.getX(), entry.point.getY());
+            addToCell(entry);
+        }
+    }
+
+    /**
+     * Append a point to the list.
+     *
+     * @param point
+     * @return the {@link Entry} of the point.
+     */
+    Entry add(TrackingPoint point) {
+        Entry entry = new Entry(point, nextOrder++, cell(point.getX(),
+                point.getY()));
+        link(entry);
+        return entry;
+    }
+
+    /**
+     * Remove a point from the list and the grid. The removed entry is unlinked, so get its next
+     * entry before.
+     *
+     * @param entry
+     */
+    void remove(Entry entry) {
+        if (entry.previous == null) {
+            first = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next == null) {
+            last = entry.previous;
+        } else {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        size--;
+
+        List<Entry> cell = cells.get(entry.cell);
+        cell.remove(entry);
+        if (cell.isEmpty()) {
+            cells.remove(entry.cell);
+        }
+    }
+
+    /**
+     * Return the first point of the list.
+     *
+     * @return the {@link Entry} or <code>null</code> if there are no points.
+     */
+    Entry first() {
+        return first;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all points. The images of the points are not released.
+     */
+    void clear() {
+        cells.clear();
+        first = null;
+        last = null;
+        size = 0;
+    }
+
+    /**
+     * Collect the points of the 3x3 cells around a location. These are all points within the
+     * distance of the grid, and some more.
+     *
+     * @param x
+     * @param y
+     * @param result
+     *            the list for the points, it is cleared first.
+     * @return the result, sorted in list order.
+     */
+    List<Entry> neighbours(double x, double y, List<Entry> result) {
+        result.clear();
+        int cx = floorDiv((int) x, cellSize);
+        int cy = floorDiv((int) y, cellSize);
+        for (int i = cx - 1; i <= cx + 1; i++) {
+            for (int j = cy - 1; j <= cy + 1; j++) {
+                List<Entry> cell = cells.get(key(i, j));
+                if (cell != null) {
+                    result.addAll(cell);
+                }
+            }
+        }
+        Collections.sort(result, BY_ORDER);
+        return result;
+    }
+
+    /**
+     * Iterate over the points in list order. The iterator supports remove.
+     */
+    @Override
+    public Iterator<TrackingPoint> iterator() {
+        return new Iterator<TrackingPoint>() {
+
+            private Entry next = first;
+
+            private Entry current;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public TrackingPoint next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                current = next;
+                next = next.next;
+                return current.point;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                PointGrid.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    private void link(Entry entry) {
+        if (last == null) {
+            first = entry;
+        } else {
+            last.next = entry;
+            entry.previous = last;
+        }
+        last = entry;
+        size++;
+        addToCell(entry);
+    }
+
+    /**
+     * Append an entry to its cell. The entries are added in list order, so the cells stay sorted.
+     */
+    private void addToCell(Entry entry) {
+        List<Entry> cell = cells.get(entry.cell);
+        if (cell == null) {
+            cell = new ArrayList<Entry>(4);
+            cells.put(entry.cell, cell);
+        }
+        cell.add(entry);
+    }
+
+    private long cell(double x, double y) {
+        return key(floorDiv((int) x, cellSize), floorDiv((int) y, cellSize));
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /**
+     * Integer division, which rounds towards negative infinity.
+     */
+    private static int floorDiv(int x, int y) {
+        int quotient = x / y;
+        if (x % y != 0 && x < 0) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /**
+     * The cell size for a distance, at least 1.
+     */
+    private static int cellSize(double distance) {
+        if (!(distance >= 1)) {
+            return 1;
+        }
+        return distance >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math
+                .ceil(distance);
+    }
+}
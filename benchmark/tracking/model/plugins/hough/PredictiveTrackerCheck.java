@@ -0,0 +1,170 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+
+import java.awt.Point;
+import java.util.LinkedList;
+import java.util.Random;
+
+import tracking.benchmark.Fixtures;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Checks of the {@link PredictiveSignTracker}. First {@link PredictiveSignTracker#solveAssignment}
+ * is compared with a brute force search on random cost matrices with forbidden cells, it fails
+ * with an exception if a solution is not minimal. Then fast signs are tracked with the
+ * {@link SignTracker} and the {@link PredictiveSignTracker} and the number of found objects is
+ * printed, ideally one per sign. Run it with the same classpath as the benchmarks:
+ *
+ * <pre>
+ * java -cp "bin-bench:lib/*:jmh/*" tracking.model.plugins.hough.PredictiveTrackerCheck [MATRICES]
+ * </pre>
+ *
+ * @author Philipp
+ */
+public class PredictiveTrackerCheck {
+
+    private static final double FORBIDDEN = 1e15;
+
+    private static final Type[] TYPES = { Type.SIGN_CIRCLE,
+            Type.SIGN_TRIANGLE, Type.SIGN_RECTANGLE };
+
+    /**
+     * Number of fast signs.
+     */
+    private static final int SIGNS = 20;
+
+    /**
+     * Frames in which the signs are visible, the trackers get empty frames afterwards.
+     */
+    private static final int VISIBLE_FRAMES = 30;
+
+    private static final int FRAMES = 40;
+
+    /**
+     * maxLineDistance, maxPointDistance and maxFrameDelay of both trackers.
+     */
+    private static final double LINE_DISTANCE = 30;
+    private static final double POINT_DISTANCE = 120;
+    private static final int FRAME_DELAY = 3;
+
+    private PredictiveTrackerCheck() {
+    }
+
+    /**
+     * @param args
+     *            optional number of cost matrices, default 2000.
+     */
+    public static void main(String[] args) {
+        int matrices = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        checkAssignment(new Random(Fixtures.SEED), matrices);
+        System.out.printf("%d assignments minimal%n", matrices);
+
+        System.out.printf("%-12s %8s%n", "tracker", "objects");
+        simulate(new SignTracker(LINE_DISTANCE, POINT_DISTANCE, FRAME_DELAY));
+        simulate(new PredictiveSignTracker(LINE_DISTANCE, POINT_DISTANCE,
+                FRAME_DELAY));
+    }
+
+    /**
+     * Compare the Hungarian method with a brute force search on matrices with up to 5 rows and up
+     * to 3 more columns. A quarter of the cells is forbidden.
+     */
+    private static void checkAssignment(Random random, int matrices) {
+        for (int t = 0; t < matrices; t++) {
+            int rows = 1 + random.nextInt(5);
+            int columns = rows + random.nextInt(4);
+            double[][] cost = new double[rows][columns];
+            for (double[] row : cost) {
+                for (int j = 0; j < columns; j++) {
+                    row[j] = random.nextInt(4) == 0 ? FORBIDDEN : random
+                            .nextInt(100);
+                }
+            }
+
+            int[] match = PredictiveSignTracker.solveAssignment(cost);
+            boolean[] used = new boolean[columns];
+            double sum = 0;
+            for (int i = 0; i < rows; i++) {
+                if (used[match[i]]) {
+                    throw new IllegalStateException("Matrix " + t
+                            + ": column " + match[i] + " is assigned twice");
+                }
+                used[match[i]] = true;
+                sum += cost[i][match[i]];
+            }
+            double best = minimum(cost, 0, new boolean[columns]);
+            if (Math.abs(sum - best) > 1e-6) {
+                throw new IllegalStateException("Matrix " + t + ": cost "
+                        + sum + " instead of " + best);
+            }
+        }
+    }
+
+    /**
+     * Minimal cost of the rows from row on, over all assignments to the unused columns.
+     */
+    private static double minimum(double[][] cost, int row, boolean[] used) {
+        if (row == cost.length) {
+            return 0;
+        }
+        double best = Double.MAX_VALUE;
+        for (int j = 0; j < used.length; j++) {
+            if (!used[j]) {
+                used[j] = true;
+                best = Math.min(best, cost[row][j]
+                        + minimum(cost, row + 1, used));
+                used[j] = false;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Track signs, which move 40 to 90 pixels per frame in random directions. The detections
+     * have 3 pixels noise and every sixth is missed.
+     */
+    private static void simulate(PointTracker tracker) {
+        Random random = new Random(Fixtures.SEED);
+        IplImage blob = Fixtures.blob(Type.SIGN_CIRCLE, 8);
+
+        // x, y, dx, dy of the signs
+        double[][] signs = new double[SIGNS][4];
+        for (double[] sign : signs) {
+            sign[0] = random.nextInt(1280);
+            sign[1] = random.nextInt(720);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double speed = 40 + random.nextInt(50);
+            sign[2] = Math.cos(angle) * speed;
+            sign[3] = Math.sin(angle) * speed;
+        }
+
+        int objects = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            LinkedList<TrackingPoint> points = new LinkedList<TrackingPoint>();
+            for (int k = 0; frame < VISIBLE_FRAMES && k < SIGNS; k++) {
+                double[] sign = signs[k];
+                sign[0] += sign[2];
+                sign[1] += sign[3];
+                if (random.nextInt(6) > 0) {
+                    points.add(new TrackingPoint(new Point(
+                            (int) (sign[0] + random.nextGaussian() * 3),
+                            (int) (sign[1] + random.nextGaussian() * 3)),
+                            TYPES[k % TYPES.length], blob));
+                }
+            }
+            for (StreetObject object : tracker.addTrackpoints(points)) {
+                object.releaseImage();
+                objects++;
+            }
+        }
+        tracker.clear();
+        cvReleaseImage(blob);
+
+        System.out.printf("%-12s %8d%n", tracker.getMode(), objects);
+    }
+}
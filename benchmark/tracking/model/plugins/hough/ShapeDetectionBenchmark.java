@@ -0,0 +1,146 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateMemStorage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseMemStorage;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tracking.benchmark.Fixtures;
+import tracking.model.plugins.StreetObject.Type;
+import tracking.model.plugins.hough.ShapeDetection.CircleEngine;
+import tracking.model.plugins.hough.ShapeDetection.PolygonEngine;
+
+import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.CvPoint2D32f;
+import com.googlecode.javacv.cpp.opencv_core.CvSeq;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Benchmark of {@link ShapeDetection}: the whole shape detection of one blob with all
+ * {@link CircleEngine}s and {@link PolygonEngine}s and the line cleaning and angle computation of the Hough polygon
+ * detection. The shape detection uses the default values of the {@link HoughSignRecognition}.
+ * The recall of the engines is measured by {@link ShapeRecall}.
+ *
+ * @author Philipp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ShapeDetectionBenchmark {
+
+    /**
+     * One blob image.
+     */
+    @State(Scope.Thread)
+    public static class Blob {
+
+        @Param({ "SIGN_CIRCLE", "SIGN_TRIANGLE", "SIGN_RECTANGLE",
+                "SIGN_OCTAGON" })
+        public String shape;
+
+        /**
+         * Size of the shape in pixels.
+         */
+        @Param({ "24", "48", "96" })
+        public int size;
+
+        private IplImage image;
+
+        private CvMemStorage storage;
+
+        private CvSeq contour;
+
+        @Setup
+        public void setUp() {
+            image = Fixtures.blob(Type.valueOf(shape), size);
+            storage = cvCreateMemStorage(0);
+            contour = Fixtures.contour(image, storage);
+        }
+
+        @TearDown
+        public void tearDown() {
+            cvReleaseImage(image);
+            cvReleaseMemStorage(storage);
+        }
+    }
+
+    /**
+     * The {@link ShapeDetection} with the default values of the {@link HoughSignRecognition}.
+     */
+    @State(Scope.Thread)
+    public static class Detection {
+
+        @Param({ "HOUGH_LINES", "CONTOUR" })
+        public String engine;
+
+        @Param({ "HOUGH_CIRCLES", "RADIAL_SYMMETRY" })
+        public String circles;
+
+        private ShapeDetection shapeDetection;
+
+        @Setup
+        public void setUp() {
+            shapeDetection = new ShapeDetection();
+            shapeDetection.setValues(new int[] { 7, 7 }, new int[] { 2, 50,
+                    200, 70, 0, 50 }, new int[] { 2, 2 }, new int[] { 35, 50,
+                    200 }, new double[] { 2.0, 5.0, 8.0 });
+            shapeDetection.setPolygonEngine(PolygonEngine.valueOf(engine),
+                    new double[] { 0.04, 12.0 });
+            shapeDetection.setCircleEngine(CircleEngine.valueOf(circles));
+        }
+
+        @TearDown
+        public void tearDown() {
+            shapeDetection.release();
+        }
+    }
+
+    /**
+     * Hough lines of a polygon.
+     */
+    @State(Scope.Thread)
+    public static class Lines {
+
+        @Param({ "6", "24", "96" })
+        public int lines;
+
+        private LinkedList<CvPoint2D32f> list;
+
+        @Setup
+        public void setUp() {
+            list = Fixtures.houghLines(lines, 3);
+        }
+    }
+
+    @Benchmark
+    public Type detect(Detection detection, Blob blob) {
+        return detection.shapeDetection.detect(blob.image, blob.contour);
+    }
+
+    @Benchmark
+    public LinkedList<CvPoint2D32f> cleanLines(Lines lines) {
+        return ShapeDetection.cleanLines(lines.list, 5.0, 8.0);
+    }
+
+    @Benchmark
+    public double[] computeAngles(Lines lines) {
+        return ShapeDetection.computeAngles(lines.list);
+    }
+}
@@ -0,0 +1,93 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvClearMemStorage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateMemStorage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseMemStorage;
+
+import java.util.Random;
+
+import tracking.benchmark.Fixtures;
+import tracking.model.plugins.StreetObject.Type;
+import tracking.model.plugins.hough.ShapeDetection.CircleEngine;
+import tracking.model.plugins.hough.ShapeDetection.PolygonEngine;
+
+import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Recall of the {@link CircleEngine}s and {@link PolygonEngine}s: every shape is drawn in three
+ * sizes with random rotations and classified with the default values of the
+ * {@link HoughSignRecognition}. Prints the part of the blobs, which got the right type, for every
+ * combination of engines, shape and size. Run it with the same classpath as the benchmarks:
+ *
+ * <pre>
+ * java -cp "bin-bench:lib/*:jmh/*" tracking.model.plugins.hough.ShapeRecall [BLOBS]
+ * </pre>
+ *
+ * @author Philipp
+ */
+public class ShapeRecall {
+
+    private static final Type[] SHAPES = { Type.SIGN_CIRCLE,
+            Type.SIGN_TRIANGLE, Type.SIGN_RECTANGLE, Type.SIGN_OCTAGON };
+
+    private static final int[] SIZES = { 24, 48, 96 };
+
+    /**
+     * Maximum rotation of the blobs in degrees.
+     */
+    private static final double MAX_ANGLE = 15;
+
+    private ShapeRecall() {
+    }
+
+    /**
+     * @param args
+     *            optional number of blobs per shape and size, default 50.
+     */
+    public static void main(String[] args) {
+        int blobs = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        System.out.printf("%-16s %-12s %-15s %6s %8s%n", "circles", "polygons",
+                "shape", "size", "recall");
+        for (CircleEngine circles : CircleEngine.values()) {
+            for (PolygonEngine engine : PolygonEngine.values()) {
+                recall(circles, engine, blobs);
+            }
+        }
+    }
+
+    private static void recall(CircleEngine circles, PolygonEngine engine,
+            int blobs) {
+        ShapeDetection shapeDetection = new ShapeDetection();
+        shapeDetection.setValues(new int[] { 7, 7 }, new int[] { 2, 50, 200,
+                70, 0, 50 }, new int[] { 2, 2 }, new int[] { 35, 50, 200 },
+                new double[] { 2.0, 5.0, 8.0 });
+        shapeDetection.setPolygonEngine(engine, new double[] { 0.04, 12.0 });
+        shapeDetection.setCircleEngine(circles);
+        CvMemStorage storage = cvCreateMemStorage(0);
+
+        for (Type shape : SHAPES) {
+            for (int size : SIZES) {
+                // the same blobs for all engines
+                Random random = new Random(Fixtures.SEED + size);
+                int hits = 0;
+                for (int i = 0; i < blobs; i++) {
+                    double angle = (random.nextDouble() * 2 - 1) * MAX_ANGLE;
+                    IplImage blob = Fixtures.blob(shape, size, angle);
+                    cvClearMemStorage(storage);
+                    if (shapeDetection.detect(blob,
+                            Fixtures.contour(blob, storage)) == shape) {
+                        hits++;
+                    }
+                    cvReleaseImage(blob);
+                }
+                System.out.printf("%-16s %-12s %-15s %6d %7.1f%%%n", circles,
+                        engine, shape, size, 100.0 * hits / blobs);
+            }
+        }
+        cvReleaseMemStorage(storage);
+        shapeDetection.release();
+    }
+}
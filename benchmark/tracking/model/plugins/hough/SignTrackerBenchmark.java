@@ -0,0 +1,142 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+
+import java.awt.Point;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tracking.benchmark.Fixtures;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Benchmark of {@link SignTracker#addTrackpoints(LinkedList)}. Every call adds the points of one
+ * frame. The points stay in the tracker for maxFrameDelay frames, so the tracker keeps about
+ * livePoints points and lines. The signs, which leave the tracker, are released.
+ * <p>
+ * The {@link LegacySignTracker} compares every point with the whole list. With the default
+ * distance of 1000 the grid of the {@link SignTracker} has only a few cells and both are
+ * quadratic, with a distance of 60 the grid should scale linearly with the live points. The
+ * {@link ObjectSignTracker} has the same grid with objects instead of the {@link TrackStore}, run
+ * it with <code>-prof gc</code> to compare the allocations. The {@link PredictiveSignTracker}
+ * only compares the points of a frame with the open tracks.
+ *
+ * @author Philipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SignTrackerBenchmark {
+
+    /**
+     * Frames a point stays in the tracker, the default of the {@link HoughSignRecognition}.
+     */
+    private static final int MAX_FRAME_DELAY = 5;
+
+    /**
+     * Points in the tracker in the steady state.
+     */
+    @Param({ "12", "48", "192", "768", "3072" })
+    public int livePoints;
+
+    /**
+     * maxPointDistance of the tracker, maxLineDistance is the half of it.
+     */
+    @Param({ "1000", "60" })
+    public int maxPointDistance;
+
+    /**
+     * arrays for the {@link SignTracker}, objects for the {@link ObjectSignTracker}, legacy for
+     * the {@link LegacySignTracker}, predictive for the {@link PredictiveSignTracker}.
+     */
+    @Param({ "arrays", "objects", "legacy", "predictive" })
+    public String tracker;
+
+    private static final Type[] TYPES = { Type.SIGN_CIRCLE,
+            Type.SIGN_TRIANGLE, Type.SIGN_RECTANGLE };
+
+    private PointTracker signTracker;
+
+    private LegacySignTracker legacySignTracker;
+
+    /**
+     * Image of all tracking points.
+     */
+    private IplImage image;
+
+    private Random random;
+
+    private int pointsPerFrame;
+
+    @Setup
+    public void setUp() {
+        if (tracker.equals("legacy")) {
+            legacySignTracker = new LegacySignTracker(maxPointDistance / 2,
+                    maxPointDistance, MAX_FRAME_DELAY);
+        } else if (tracker.equals("objects")) {
+            signTracker = new ObjectSignTracker(maxPointDistance / 2,
+                    maxPointDistance, MAX_FRAME_DELAY);
+        } else if (tracker.equals("predictive")) {
+            signTracker = new PredictiveSignTracker(maxPointDistance / 2,
+                    maxPointDistance, MAX_FRAME_DELAY);
+        } else {
+            signTracker = new SignTracker(maxPointDistance / 2,
+                    maxPointDistance, MAX_FRAME_DELAY);
+        }
+        image = Fixtures.blob(Type.SIGN_CIRCLE, 8);
+        random = new Random(Fixtures.SEED);
+        pointsPerFrame = Math.max(1, livePoints / (MAX_FRAME_DELAY + 1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (legacySignTracker != null) {
+            legacySignTracker.clear();
+        } else {
+            signTracker.clear();
+        }
+        cvReleaseImage(image);
+    }
+
+    @Benchmark
+    public int addTrackpoints() {
+        LinkedList<TrackingPoint> points = new LinkedList<TrackingPoint>();
+        int[][] coordinates = Fixtures.points(random, pointsPerFrame, 1280,
+                720);
+        for (int i = 0; i < coordinates.length; i++) {
+            points.add(new TrackingPoint(new Point(coordinates[i][0],
+                    coordinates[i][1]), TYPES[i % TYPES.length], image));
+        }
+
+        LinkedList<StreetObject> signs;
+        if (legacySignTracker != null) {
+            signs = legacySignTracker.addTrackpoints(points);
+        } else {
+            signs = signTracker.addTrackpoints(points);
+        }
+        for (StreetObject sign : signs) {
+            sign.releaseImage();
+        }
+        return signs.size();
+    }
+}
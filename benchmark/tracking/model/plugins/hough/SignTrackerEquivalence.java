@@ -0,0 +1,219 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import tracking.benchmark.Fixtures;
+import tracking.model.NativeMemory;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Equivalence of the {@link SignTracker} and the {@link LegacySignTracker}: both track the same
+ * seeded frames of moving signs and random noise, with random tracker values. The signs of every
+ * frame must have the same types in the same order. The images are not compared, the
+ * {@link SignTracker} keeps the crop with the best {@link CropScore} and the legacy tracker the
+ * biggest one.
+ * <p>
+ * After {@link #RESTORE_FRAME} frames the state of the {@link SignTracker} is written, read into
+ * a new tracker and written again. Both writes must have the same bytes and the new tracker goes
+ * on in place of the old one. At the end no crop may be left, the native memory is tracked. Run
+ * it with the same classpath as the benchmarks:
+ *
+ * <pre>
+ * java -cp "bin-bench:lib/*:jmh/*" tracking.model.plugins.hough.SignTrackerEquivalence [RUNS]
+ * </pre>
+ *
+ * @author Philipp
+ */
+public class SignTrackerEquivalence {
+
+    private static final Type[] TYPES = { Type.SIGN_CIRCLE,
+            Type.SIGN_TRIANGLE, Type.SIGN_RECTANGLE, Type.SIGN_OCTAGON };
+
+    private static final int[] SIZES = { 8, 12, 16, 24 };
+
+    private static final double[] LINE_DISTANCES = { 5, 20, 60, 500 };
+
+    private static final double[] POINT_DISTANCES = { 0.5, 10, 40, 80, 1000 };
+
+    private static final int FRAMES = 60;
+
+    /**
+     * Frame before which the state of the {@link SignTracker} is written and restored.
+     */
+    private static final int RESTORE_FRAME = 20;
+
+    /**
+     * Frame before which the maxPointDistance of both trackers may change.
+     */
+    private static final int CHANGE_FRAME = 30;
+
+    private SignTrackerEquivalence() {
+    }
+
+    /**
+     * @param args
+     *            optional number of runs, default 400.
+     * @throws IOException
+     *             if the state can not be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+
+        IplImage[] blobs = new IplImage[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            blobs[i] = Fixtures.blob(Type.SIGN_CIRCLE, SIZES[i]);
+        }
+        NativeMemory.setTracking(true);
+
+        long signs = 0;
+        for (int run = 0; run < runs; run++) {
+            signs += run(new Random(Fixtures.SEED + run), run, blobs);
+        }
+        NativeMemory.checkNoLeaks();
+        NativeMemory.setTracking(false);
+
+        for (IplImage blob : blobs) {
+            cvReleaseImage(blob);
+        }
+        System.out.printf("%d runs, %d signs, all equal%n", runs, signs);
+    }
+
+    /**
+     * Track one seeded video with both trackers.
+     *
+     * @return the number of signs.
+     */
+    private static int run(Random random, int run, IplImage[] blobs)
+            throws IOException {
+        double lineDistance = LINE_DISTANCES[random
+                .nextInt(LINE_DISTANCES.length)];
+        double pointDistance = POINT_DISTANCES[random
+                .nextInt(POINT_DISTANCES.length)];
+        int delay = random.nextInt(6);
+        SignTracker tracker = new SignTracker(lineDistance, pointDistance,
+                delay);
+        LegacySignTracker legacy = new LegacySignTracker(lineDistance,
+                pointDistance, delay);
+
+        int width = 200 + random.nextInt(1000);
+        int height = 100 + random.nextInt(600);
+        // x, y, dx, dy and type of the moving signs
+        double[][] tracks = new double[random.nextInt(40)][5];
+        for (double[] track : tracks) {
+            track[0] = random.nextInt(width);
+            track[1] = random.nextInt(height);
+            track[2] = random.nextGaussian() * 15;
+            track[3] = random.nextGaussian() * 15;
+            track[4] = random.nextInt(TYPES.length);
+        }
+
+        int signs = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (frame == RESTORE_FRAME) {
+                tracker = restore(tracker, run);
+            }
+            if (frame == CHANGE_FRAME && random.nextBoolean()) {
+                pointDistance = POINT_DISTANCES[random
+                        .nextInt(POINT_DISTANCES.length)];
+                tracker.setValues(lineDistance, pointDistance, delay);
+                legacy.setValues(lineDistance, pointDistance, delay);
+            }
+
+            // the signs are missed in every fifth frame, the noise has no track
+            List<int[]> points = new ArrayList<int[]>();
+            for (double[] track : tracks) {
+                track[0] += track[2];
+                track[1] += track[3];
+                if (random.nextInt(5) > 0) {
+                    points.add(new int[] {
+                            (int) (track[0] + random.nextGaussian() * 2),
+                            (int) (track[1] + random.nextGaussian() * 2),
+                            (int) track[4] });
+                }
+            }
+            int noise = random.nextInt(30);
+            for (int i = 0; i < noise; i++) {
+                points.add(new int[] { random.nextInt(width) - 50,
+                        random.nextInt(height) - 50,
+                        random.nextInt(TYPES.length) });
+            }
+            Collections.shuffle(points, random);
+
+            LinkedList<TrackingPoint> trackerPoints = new LinkedList<TrackingPoint>();
+            LinkedList<TrackingPoint> legacyPoints = new LinkedList<TrackingPoint>();
+            for (int[] point : points) {
+                IplImage blob = blobs[random.nextInt(blobs.length)];
+                Point center = new Point(point[0], point[1]);
+                trackerPoints.add(new TrackingPoint(center, TYPES[point[2]],
+                        blob));
+                legacyPoints.add(new TrackingPoint(center, TYPES[point[2]],
+                        blob));
+            }
+
+            List<Type> trackerSigns = types(tracker
+                    .addTrackpoints(trackerPoints));
+            List<Type> legacySigns = types(legacy.addTrackpoints(legacyPoints));
+            if (!trackerSigns.equals(legacySigns)) {
+                throw new IllegalStateException("Run " + run + ", frame "
+                        + frame + ": " + trackerSigns + " instead of "
+                        + legacySigns);
+            }
+            signs += trackerSigns.size();
+        }
+        tracker.clear();
+        legacy.clear();
+        return signs;
+    }
+
+    /**
+     * Write the state of the tracker, read it into a new tracker and check that it writes the
+     * same bytes. The old tracker is cleared.
+     *
+     * @return the new tracker.
+     */
+    private static SignTracker restore(SignTracker tracker, int run)
+            throws IOException {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        tracker.writeState(new DataOutputStream(written));
+        tracker.clear();
+
+        SignTracker restored = new SignTracker(1, 1, 1);
+        restored.readState(new DataInputStream(new ByteArrayInputStream(
+                written.toByteArray())));
+        ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+        restored.writeState(new DataOutputStream(rewritten));
+        if (!Arrays.equals(written.toByteArray(), rewritten.toByteArray())) {
+            throw new IllegalStateException("Run " + run
+                    + ": the restored state differs");
+        }
+        return restored;
+    }
+
+    /**
+     * Return the types of the signs and release their images.
+     */
+    private static List<Type> types(List<StreetObject> signs) {
+        List<Type> types = new ArrayList<Type>();
+        for (StreetObject sign : signs) {
+            types.add(sign.getType());
+            sign.releaseImage();
+        }
+        return types;
+    }
+}
@@ -0,0 +1,88 @@
+package tracking.model.plugins.hough.colorfilter;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tracking.benchmark.Fixtures;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Benchmark of the HSV push ({@link ColorFilter#setImage(IplImage)}) and the multi scalar filter
+ * ({@link ColorFilter#filter(int)} with method 1) on a synthetic frame.
+ *
+ * @author Philipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ColorFilterBenchmark {
+
+    /**
+     * Frame size as WIDTHxHEIGHT.
+     */
+    @Param({ "640x360", "1280x720" })
+    public String size;
+
+    /**
+     * Number of scalar ranges of the filter.
+     */
+    @Param({ "1", "2", "4", "8" })
+    public int ranges;
+
+    /**
+     * Stripes, which are processed concurrently.
+     */
+    @Param({ "1", "4" })
+    public int stripes;
+
+    private IplImage frame;
+
+    private ColorFilter filter;
+
+    @Setup
+    public void setUp() {
+        String[] split = size.split("x");
+        frame = Fixtures.scene(Integer.parseInt(split[0]),
+                Integer.parseInt(split[1]), 24);
+        filter = new ColorFilter(frame);
+        filter.setLows(Fixtures.lowScalars(ranges));
+        filter.setHighs(Fixtures.highScalars(ranges));
+        filter.setStripes(stripes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cvReleaseImage(frame);
+        filter.release();
+    }
+
+    @Benchmark
+    public IplImage pushHSVValue() {
+        filter.setImage(frame);
+        return filter.getImage();
+    }
+
+    @Benchmark
+    public IplImage filter() {
+        filter.filter(1);
+        return filter.getImage();
+    }
+}
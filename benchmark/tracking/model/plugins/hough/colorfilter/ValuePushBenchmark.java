@@ -0,0 +1,100 @@
+package tracking.model.plugins.hough.colorfilter;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_RGB2HSV;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvCvtColor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tracking.benchmark.Fixtures;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Compare the V channel push between the two color conversions of the HSV push:
+ * {@link ColorFilter#maximizeValue(IplImage)} against the former byte loop. The setup checks that
+ * both give the same image.
+ *
+ * @author Philipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ValuePushBenchmark {
+
+    /**
+     * Frame size as WIDTHxHEIGHT.
+     */
+    @Param({ "640x360", "1280x720", "1920x1080" })
+    public String size;
+
+    private IplImage hsv;
+
+    @Setup
+    public void setUp() {
+        String[] split = size.split("x");
+        IplImage frame = Fixtures.scene(Integer.parseInt(split[0]),
+                Integer.parseInt(split[1]), 24);
+        hsv = cvCloneImage(frame);
+        cvCvtColor(frame, hsv, CV_RGB2HSV);
+        cvReleaseImage(frame);
+
+        IplImage legacy = cvCloneImage(hsv);
+        IplImage current = cvCloneImage(hsv);
+        legacyPush(legacy);
+        ColorFilter.maximizeValue(current);
+        boolean same = legacy.getByteBuffer().equals(current.getByteBuffer());
+        cvReleaseImage(legacy);
+        cvReleaseImage(current);
+        if (!same) {
+            throw new IllegalStateException("Value push differs for " + size);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cvReleaseImage(hsv);
+    }
+
+    @Benchmark
+    public IplImage legacy() {
+        legacyPush(hsv);
+        return hsv;
+    }
+
+    @Benchmark
+    public IplImage maximizeValue() {
+        ColorFilter.maximizeValue(hsv);
+        return hsv;
+    }
+
+    /**
+     * The loop of the former pushHSVValue.
+     */
+    private static void legacyPush(IplImage image) {
+        ByteBuffer buff = image.getByteBuffer();
+        for (int i = 0; i < buff.capacity(); i++) {
+            if (i % 3 == 2) {
+                buff.put(i, (byte) (255)); // 255 max. unsigned byte value
+            }
+        }
+    }
+}
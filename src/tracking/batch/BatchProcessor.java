@@ -0,0 +1,738 @@
+package tracking.batch;
+
+import static com.googlecode.javacv.cpp.opencv_highgui.cvCreateFileCapture;
+import static com.googlecode.javacv.cpp.opencv_highgui.cvReleaseCapture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Properties;
+
+import tracking.model.DetectionStore;
+import tracking.model.Fingerprint;
+import tracking.model.GPSProcessor;
+import tracking.model.Metrics;
+import tracking.model.NativeMemory;
+import tracking.model.ResultCache;
+import tracking.model.VideoProcessor;
+import tracking.model.plugins.ObjectDetectionPlugin;
+import tracking.model.plugins.ResultObject;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.hough.DetectionCache;
+import tracking.model.plugins.hough.HoughFrameDetection;
+import tracking.model.plugins.hough.HoughSignRecognition;
+
+import com.googlecode.javacv.cpp.opencv_highgui.CvCapture;
+
+/**
+ * Process a video and a gpx file without gui. The found street objects are saved like in the
+ * GPSProcessorFrame. A summary with the results and the throughput is written as
+ * <code>summary.properties</code> into the output folder.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * BatchProcessor --video FILE --gpx FILE --out FOLDER [--config FILE]... [--threads N]
+ *                [--segments N] [--stride N] [--name PATTERN] [--checkpoint N] [--resume]
+ *                [--report N] [--stripes N] [--blob-threads N] [--check-leaks]
+ *                [--detection-cache FOLDER] [--result-cache FOLDER]
+ * </pre>
+ *
+ * With <code>--checkpoint</code> a checkpoint is written into the output folder at least every N
+ * frames. <code>--resume</code> continues a crashed run with the same arguments from its last
+ * checkpoint. <code>--report</code> prints the {@link Metrics} of the pipeline stages every N
+ * seconds, the final metrics are always part of the summary. <code>--stripes</code> splits the
+ * color filter of every frame into N stripes, which are filtered concurrently. This helps when
+ * fewer frames than cores are processed at the same time, e.g. with <code>--threads 1</code>.
+ * <code>--blob-threads</code> detects the shapes of the blobs of a frame with N tasks, for the
+ * same reason.
+ * <code>--check-leaks</code> tracks all native images and memory storages with
+ * {@link NativeMemory} and fails with {@link #EXIT_LEAK}, if some are not released at the end.
+ * <p>
+ * With <code>--detection-cache</code> the raw detections of every plugin are recorded into a
+ * {@link DetectionCache} in the folder. If the folder already holds the caches of all plugins for
+ * the same video and detection settings, the video is not decoded at all: the caches are replayed
+ * through the trackers and the {@link GPSProcessor}. So other tracker values can be tried in a
+ * fraction of the time. A resumed run does not record caches, they would miss the first frames.
+ * <p>
+ * With <code>--result-cache</code> the {@link VideoProcessor} keeps the found objects of every
+ * plugin in a {@link ResultCache} in the folder. A plugin whose configuration did not change since
+ * the last run on the video is not run again, see {@link VideoProcessor#setResultCache(File)}.
+ * The two caches can not be combined: a plugin, whose results are loaded, detects nothing which
+ * could be recorded.
+ * <p>
+ * Every <code>--config</code> file adds a {@link HoughSignRecognition} with the settings of the
+ * properties file, see {@link HoughSignRecognition#loadSettings(Properties)}.
+ *
+ * @author Philipp
+ */
+public class BatchProcessor {
+
+    /**
+     * Exit code: everything is saved.
+     */
+    public static final int EXIT_OK = 0;
+
+    /**
+     * Exit code: unexpected error while processing.
+     */
+    public static final int EXIT_FAILED = 1;
+
+    /**
+     * Exit code: wrong command line arguments.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Exit code: an input file could not be read.
+     */
+    public static final int EXIT_INPUT = 3;
+
+    /**
+     * Exit code: the street objects could not be saved.
+     */
+    public static final int EXIT_SAVE = 4;
+
+    /**
+     * Exit code: native memory was not released, only with <code>--check-leaks</code>.
+     */
+    public static final int EXIT_LEAK = 5;
+
+    /**
+     * Name of the summary file in the output folder.
+     */
+    public static final String SUMMARY = "summary.properties";
+
+    /**
+     * Name of the {@link DetectionStore} file in the output folder.
+     */
+    public static final String STORE = "detections.store";
+
+    /**
+     * Name of the checkpoint file in the output folder.
+     */
+    public static final String CHECKPOINT = "checkpoint.dat";
+
+    /**
+     * Frames without detections, after which the {@link VideoProcessor} goes back to the frame
+     * stride.
+     */
+    private static final int STRIDE_COOLDOWN = 15;
+
+    private File video;
+
+    private File gpx;
+
+    private File out;
+
+    private LinkedList<File> configs = new LinkedList<File>();
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int segments = 1;
+
+    private int stride = 1;
+
+    private String name = "#name#_#type#_#frame#_";
+
+    /**
+     * Frames between two checkpoints, 0 for no checkpoints.
+     */
+    private int checkpointInterval = 0;
+
+    private boolean resume = false;
+
+    /**
+     * Seconds between two metrics reports, 0 for no periodic report.
+     */
+    private int reportInterval = 0;
+
+    /**
+     * Stripes of the color filter, see {@link HoughSignRecognition#setFilterStripes(int)}.
+     */
+    private int stripes = 1;
+
+    /**
+     * Tasks for the blobs of a frame, see {@link HoughSignRecognition#setBlobThreads(int)}.
+     */
+    private int blobThreads = 1;
+
+    /**
+     * Track the native memory and fail if something is not released.
+     */
+    private boolean checkLeaks = false;
+
+    /**
+     * Folder of the {@link DetectionCache}s, <code>null</code> for no cache.
+     */
+    private File cacheFolder;
+
+    /**
+     * Folder of the {@link ResultCache}s, <code>null</code> for no cache.
+     */
+    private File resultCacheFolder;
+
+    /**
+     * The summary, which is written into the output folder.
+     */
+    private Properties summary = new Properties();
+
+    /**
+     * Number of processed frames.
+     */
+    private int frames = 0;
+
+    /**
+     * Error messages of the {@link GPSProcessor}.
+     */
+    private LinkedList<String> saveErrors = new LinkedList<String>();
+
+    /**
+     * Read the command line arguments.
+     *
+     * @param args
+     * @throws IllegalArgumentException
+     *             if the arguments are wrong.
+     */
+    public BatchProcessor(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--resume")) { // arguments without value
+                resume = true;
+                continue;
+            }
+            if (arg.equals("--check-leaks")) {
+                checkLeaks = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+
+            if (arg.equals("--video")) {
+                video = new File(value);
+            } else if (arg.equals("--gpx")) {
+                gpx = new File(value);
+            } else if (arg.equals("--out")) {
+                out = new File(value);
+            } else if (arg.equals("--config")) {
+                configs.add(new File(value));
+            } else if (arg.equals("--threads")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.equals("--segments")) {
+                segments = Integer.parseInt(value);
+            } else if (arg.equals("--stride")) {
+                stride = Integer.parseInt(value);
+            } else if (arg.equals("--checkpoint")) {
+                checkpointInterval = Integer.parseInt(value);
+            } else if (arg.equals("--stripes")) {
+                stripes = Integer.parseInt(value);
+            } else if (arg.equals("--blob-threads")) {
+                blobThreads = Integer.parseInt(value);
+            } else if (arg.equals("--report")) {
+                reportInterval = Integer.parseInt(value);
+            } else if (arg.equals("--name")) {
+                name = value;
+            } else if (arg.equals("--detection-cache")) {
+                cacheFolder = new File(value);
+            } else if (arg.equals("--result-cache")) {
+                resultCacheFolder = new File(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        if (video == null || gpx == null || out == null) {
+            throw new IllegalArgumentException(
+                    "--video, --gpx and --out are required.");
+        }
+        if (cacheFolder != null && resultCacheFolder != null) {
+            // a plugin loaded from its result cache tracks no frames, its detection cache
+            // would be finished empty
+            throw new IllegalArgumentException(
+                    "--detection-cache and --result-cache can not be combined.");
+        }
+    }
+
+    /**
+     * Process the video and save the found street objects.
+     *
+     * @return the exit code.
+     */
+    public int process() {
+        summary.setProperty("video", video.getPath());
+        summary.setProperty("gpx", gpx.getPath());
+        summary.setProperty("threads", "" + threads);
+        summary.setProperty("segments", "" + segments);
+        summary.setProperty("stride", "" + stride);
+        summary.setProperty("stripes", "" + stripes);
+        summary.setProperty("blobThreads", "" + blobThreads);
+        summary.setProperty("resultCache", resultCacheFolder != null ? ""
+                + resultCacheFolder : "off");
+        if (checkLeaks) {
+            NativeMemory.setTracking(true);
+        }
+
+        if (!video.isFile() || !gpx.isFile()) {
+            return finish(EXIT_INPUT, "Video or gpx file does not exist.");
+        }
+        if (!out.isDirectory() && !out.mkdirs()) {
+            return finish(EXIT_INPUT, "Could not create output folder " + out);
+        }
+
+        LinkedList<ObjectDetectionPlugin> plugins = new LinkedList<ObjectDetectionPlugin>();
+        if (configs.isEmpty()) {
+            HoughSignRecognition plugin = new HoughSignRecognition(null);
+            plugin.setFilterStripes(stripes);
+            plugin.setBlobThreads(blobThreads);
+            plugins.add(plugin);
+        }
+        for (File config : configs) {
+            HoughSignRecognition plugin = new HoughSignRecognition(null);
+            plugin.setFilterStripes(stripes);
+            plugin.setBlobThreads(blobThreads);
+            try {
+                plugin.loadSettings(loadProperties(config));
+            } catch (IOException | IllegalArgumentException e) {
+                return finish(EXIT_INPUT, "Could not read config " + config
+                        + ": " + e.getMessage());
+            }
+            plugins.add(plugin);
+        }
+        for (int i = 0; i < plugins.size(); i++) {
+            plugins.get(i).setPluginID(i);
+            plugins.get(i).setDrawIntoImage(false);
+        }
+        summary.setProperty("plugins", "" + plugins.size());
+
+        File checkpoint = new File(out, CHECKPOINT);
+        boolean resumed = resume && checkpoint.isFile();
+        summary.setProperty("resumed", "" + resumed);
+
+        // keys of the detection caches, null without cache
+        String[] cacheKeys = null;
+        boolean replay = false;
+        if (cacheFolder != null) {
+            if (!cacheFolder.isDirectory() && !cacheFolder.mkdirs()) {
+                return finish(EXIT_INPUT, "Could not create cache folder "
+                        + cacheFolder);
+            }
+            String fingerprint;
+            try {
+                fingerprint = Fingerprint.video(video);
+            } catch (IOException e) {
+                return finish(EXIT_INPUT, "Could not read video " + video
+                        + ": " + e.getMessage());
+            }
+            String frames = detectedFrames(plugins);
+            cacheKeys = new String[plugins.size()];
+            replay = true;
+            for (int i = 0; i < plugins.size(); i++) {
+                cacheKeys[i] = ((HoughSignRecognition) plugins.get(i))
+                        .getCacheKey(fingerprint, frames);
+                replay &= DetectionCache.exists(cacheFolder, cacheKeys[i]);
+            }
+            if (!replay && resumed) {
+                System.out.println("A resumed run records no detection cache.");
+                cacheKeys = null;
+            }
+        }
+        summary.setProperty("detectionCache", replay ? "replayed"
+                : cacheKeys != null ? "recorded" : "off");
+
+        DetectionStore store;
+        try {
+            store = resumed ? DetectionStore.open(new File(out, STORE))
+                    : new DetectionStore(new File(out, STORE));
+        } catch (IOException e) {
+            return finish(EXIT_INPUT, "Could not create detection store: "
+                    + e.getMessage());
+        }
+
+        if (replay) {
+            return replay(plugins, cacheKeys, store);
+        }
+
+        CvCapture capture = cvCreateFileCapture(video.getPath());
+        if (capture == null || capture.isNull()) {
+            release(plugins, store);
+            return finish(EXIT_INPUT, "Could not open video " + video);
+        }
+
+        if (cacheKeys != null) {
+            for (int i = 0; i < plugins.size(); i++) {
+                try {
+                    ((HoughSignRecognition) plugins.get(i))
+                            .setDetectionCache(DetectionCache.create(
+                                    cacheFolder, cacheKeys[i]));
+                } catch (IOException e) {
+                    closeCaches(plugins);
+                    cvReleaseCapture(capture);
+                    release(plugins, store);
+                    return finish(EXIT_INPUT,
+                            "Could not create detection cache: "
+                                    + e.getMessage());
+                }
+            }
+        }
+
+        VideoProcessor processor = new VideoProcessor(capture, plugins);
+        processor.setVideoFile(video);
+        processor.setDrawIntoImage(false);
+        processor.setWorkerThreads(threads);
+        processor.setPluginThreads(plugins.size());
+        processor.setSegments(segments);
+        processor.setFrameStride(stride);
+        processor.setStrideCooldown(STRIDE_COOLDOWN);
+        processor.setDetectionStore(store);
+        processor.setResultCache(resultCacheFolder);
+        if (checkpointInterval > 0) {
+            processor.setCheckpoint(checkpoint, checkpointInterval);
+        }
+        if (resumed) {
+            try {
+                processor.resume(checkpoint);
+            } catch (IOException e) {
+                cvReleaseCapture(capture);
+                closeCaches(plugins);
+                release(plugins, store);
+                return finish(EXIT_INPUT, "Could not resume from checkpoint: "
+                        + e.getMessage());
+            }
+        }
+        processor.addObserver(new Observer() {
+
+            @Override
+            public void update(Observable o, Object arg) {
+                if (arg instanceof ResultObject) {
+                    // nobody shows the images
+                    ((ResultObject) arg).releaseImage();
+                    frames++;
+                }
+            }
+        });
+
+        if (reportInterval > 0) {
+            Metrics.startPeriodicReport(reportInterval, System.out);
+        }
+        long start = System.nanoTime();
+        try {
+            processor.run(); // runs in this thread, the capture is released afterwards
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            closeCaches(plugins);
+            for (StreetObject obj : processor.getAllStreetObjects()) {
+                obj.releaseImage();
+            }
+            release(plugins, store);
+            return finish(EXIT_FAILED, "Processing failed: " + e);
+        } finally {
+            Metrics.stopPeriodicReport();
+            Metrics.store(summary, "metrics.");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // the video is complete, so the caches are
+        for (ObjectDetectionPlugin plugin : plugins) {
+            DetectionCache cache = ((HoughSignRecognition) plugin)
+                    .getDetectionCache();
+            if (cache != null) {
+                try {
+                    cache.finish();
+                } catch (IOException e) {
+                    System.err.println("Could not finish detection cache.");
+                    e.printStackTrace();
+                }
+            }
+        }
+        closeCaches(plugins);
+
+        return save(processor.getAllStreetObjects(), plugins, store, seconds);
+    }
+
+    /**
+     * Replay the detection caches of the plugins frame by frame through their trackers, like the
+     * {@link VideoProcessor} does with the detections of the video.
+     *
+     * @param plugins
+     *            the {@link HoughSignRecognition}s.
+     * @param cacheKeys
+     *            the key of the cache of every plugin.
+     * @param store
+     *            the {@link DetectionStore} for the images of the found objects.
+     * @return the exit code.
+     */
+    private int replay(LinkedList<ObjectDetectionPlugin> plugins,
+            String[] cacheKeys, DetectionStore store) {
+        DetectionCache[] caches = new DetectionCache[plugins.size()];
+        LinkedList<StreetObject> streetObjects = new LinkedList<StreetObject>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < caches.length; i++) {
+                caches[i] = DetectionCache.open(cacheFolder, cacheKeys[i]);
+            }
+
+            HoughFrameDetection[] detections = new HoughFrameDetection[caches.length];
+            while (true) {
+                int ended = 0;
+                for (int i = 0; i < caches.length; i++) {
+                    try {
+                        detections[i] = caches[i].readFrame();
+                    } catch (IOException | RuntimeException e) {
+                        // the frames of the other caches are not tracked
+                        for (int j = 0; j < i; j++) {
+                            if (detections[j] != null) {
+                                detections[j].release();
+                            }
+                        }
+                        throw e;
+                    }
+                    if (detections[i] == null) {
+                        ended++;
+                    }
+                }
+                if (ended > 0) {
+                    for (HoughFrameDetection detection : detections) {
+                        if (detection != null) {
+                            detection.release();
+                        }
+                    }
+                    if (ended < caches.length) {
+                        throw new IOException(
+                                "The detection caches have different lengths.");
+                    }
+                    break;
+                }
+
+                for (int i = 0; i < caches.length; i++) {
+                    HoughFrameDetection detection = detections[i];
+                    ResultObject result = ((HoughSignRecognition) plugins
+                            .get(i)).trackFrame(detection, null, null);
+                    for (StreetObject obj : result.getStreetObjects()) {
+                        obj.setFrame(detection.getNumber());
+                        obj.setTimestamp(detection.getTimestamp());
+                        obj.setVideoFPS(detection.getVideoFPS());
+                        obj.spill(store);
+                        streetObjects.add(obj);
+                    }
+                }
+                frames++;
+            }
+        } catch (IOException e) {
+            for (StreetObject obj : streetObjects) {
+                obj.releaseImage();
+            }
+            release(plugins, store);
+            return finish(EXIT_INPUT, "Could not replay detection cache: "
+                    + e.getMessage());
+        } finally {
+            for (DetectionCache cache : caches) {
+                if (cache != null) {
+                    cache.close();
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Replayed " + frames + " frames from the detection cache.");
+
+        return save(streetObjects, plugins, store, seconds);
+    }
+
+    /**
+     * Return the fingerprint of the frames, which the plugins detect. Without frame stride every
+     * frame is detected. With a frame stride the {@link VideoProcessor} detects the skipped
+     * frames as soon as one plugin finds something, so the detected frames of a plugin depend on
+     * the detection settings of all plugins.
+     *
+     * @param plugins
+     * @return the fingerprint for {@link HoughSignRecognition#getCacheKey(String, String)}.
+     */
+    private String detectedFrames(LinkedList<ObjectDetectionPlugin> plugins) {
+        if (stride <= 1) {
+            return "frameStride=1";
+        }
+        String[] values = new String[plugins.size() + 2];
+        values[0] = "frameStride=" + stride;
+        values[1] = "strideCooldown=" + STRIDE_COOLDOWN;
+        for (int i = 0; i < plugins.size(); i++) {
+            values[i + 2] = ((HoughSignRecognition) plugins.get(i))
+                    .getDetectionFingerprint();
+        }
+        return Fingerprint.of(values);
+    }
+
+    /**
+     * Release the native buffers of the plugins and close the {@link DetectionStore}, at the end
+     * of a run or after a failure.
+     */
+    private static void release(LinkedList<ObjectDetectionPlugin> plugins,
+            DetectionStore store) {
+        for (ObjectDetectionPlugin plugin : plugins) {
+            plugin.release();
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Close the detection caches of the plugins, unfinished caches are deleted.
+     */
+    private static void closeCaches(LinkedList<ObjectDetectionPlugin> plugins) {
+        for (ObjectDetectionPlugin plugin : plugins) {
+            HoughSignRecognition hough = (HoughSignRecognition) plugin;
+            if (hough.getDetectionCache() != null) {
+                hough.getDetectionCache().close();
+                hough.setDetectionCache(null);
+            }
+        }
+    }
+
+    /**
+     * Save the found street objects with the {@link GPSProcessor}, release everything and check
+     * for leaks.
+     *
+     * @param streetObjects
+     *            all found {@link StreetObject}s.
+     * @param plugins
+     * @param store
+     *            the {@link DetectionStore} with the images of the street objects.
+     * @param seconds
+     *            the processing time.
+     * @return the exit code.
+     */
+    private int save(LinkedList<StreetObject> streetObjects,
+            LinkedList<ObjectDetectionPlugin> plugins, DetectionStore store,
+            double seconds) {
+        summary.setProperty("frames", "" + frames);
+        summary.setProperty("streetObjects", "" + streetObjects.size());
+        summary.setProperty("processingSeconds",
+                String.format(Locale.ROOT, "%.3f", seconds));
+        summary.setProperty("framesPerSecond", String.format(Locale.ROOT,
+                "%.2f", seconds > 0 ? frames / seconds : 0));
+
+        GPSProcessor gpsProcessor = new GPSProcessor(streetObjects);
+        gpsProcessor.addObserver(new Observer() {
+
+            @Override
+            public void update(Observable o, Object arg) {
+                if (arg instanceof Object[]) {
+                    Object[] message = (Object[]) arg;
+                    if (message[0].equals(0)) { // 0 is error message
+                        saveErrors.add("" + message[1]);
+                    }
+                }
+            }
+        });
+        boolean[] selected = new boolean[streetObjects.size()];
+        Arrays.fill(selected, true);
+        gpsProcessor.save(gpx, out, name, selected);
+
+        for (StreetObject obj : streetObjects) {
+            obj.releaseImage();
+        }
+        release(plugins, store);
+
+        if (checkLeaks) {
+            int leaks = NativeMemory.getOutstandingAllocations();
+            summary.setProperty("nativeAllocations", "" + leaks);
+            if (leaks > 0) {
+                System.err.print(NativeMemory.report());
+                return finish(EXIT_LEAK, leaks
+                        + " native allocations not released.");
+            }
+        }
+
+        if (!saveErrors.isEmpty()) {
+            String errors = "";
+            for (String error : saveErrors) {
+                errors += (errors.isEmpty() ? "" : " | ") + error;
+            }
+            return finish(EXIT_SAVE, errors);
+        }
+        return finish(EXIT_OK, null);
+    }
+
+    /**
+     * Write the summary into the output folder.
+     *
+     * @param exitCode
+     * @param message
+     *            error message or <code>null</code>.
+     * @return the exit code.
+     */
+    private int finish(int exitCode, String message) {
+        summary.setProperty("exitCode", "" + exitCode);
+        summary.setProperty("status", exitCode == EXIT_OK ? "ok" : "failed");
+        if (message != null) {
+            summary.setProperty("message", message);
+            System.err.println(message);
+        }
+
+        if (out != null && out.isDirectory()) {
+            try (OutputStream stream = new FileOutputStream(new File(out,
+                    SUMMARY))) {
+                summary.store(stream, "GPStreetTracker batch summary");
+            } catch (IOException e) {
+                System.err.println("Could not write summary");
+                e.printStackTrace();
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * Load a properties file.
+     */
+    private static Properties loadProperties(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream stream = new FileInputStream(file)) {
+            properties.load(stream);
+        }
+        return properties;
+    }
+
+    /**
+     * The Main-method of the batch processing.
+     *
+     * @param args
+     *            see {@link BatchProcessor}.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        BatchProcessor batch;
+        try {
+            batch = new BatchProcessor(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BatchProcessor --video FILE --gpx FILE --out FOLDER"
+                    + " [--config FILE]... [--threads N] [--segments N] [--stride N]"
+                    + " [--name PATTERN] [--checkpoint N] [--resume] [--report N]"
+                    + " [--stripes N] [--blob-threads N] [--check-leaks]"
+                    + " [--detection-cache FOLDER] [--result-cache FOLDER]");
+            System.exit(EXIT_USAGE);
+            return;
+        }
+
+        int exitCode;
+        try {
+            exitCode = batch.process();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            exitCode = batch.finish(EXIT_FAILED, "Processing failed: " + e);
+        }
+        System.exit(exitCode);
+    }
+}
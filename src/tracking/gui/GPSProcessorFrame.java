@@ -1,7 +1,6 @@
 package tracking.gui;
 
 import static com.googlecode.javacv.cpp.opencv_core.IPL_DEPTH_8U;
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvResize;
 
@@ -35,6 +34,7 @@ import javax.swing.table.TableRowSorter;
 import tracking.gui.controller.GPSPathFieldListener;
 import tracking.gui.controller.GPSProcessorButtonListener;
 import tracking.model.GPSProcessor;
+import tracking.model.NativeMemory;
 import tracking.model.plugins.StreetObject;
 
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
@@ -193,13 +193,19 @@ public class GPSProcessorFrame extends JFrame implements Observer {
         Object[][] data = new Object[objects.size()][names.length];
 
         for (int i = 0; i < objects.size(); i++) {
-            IplImage tmp = cvCreateImage(cvSize(60, 50), IPL_DEPTH_8U, 3);
+            IplImage tmp = NativeMemory.createImage(cvSize(60, 50),
+                    IPL_DEPTH_8U, 3);
             StreetObject obj = objects.get(i);
             data[i][0] = obj.getFrame();
             data[i][1] = obj.getTimestampDouble();
             data[i][2] = obj.getPluginName();
             cvResize(obj.getImage(), tmp);
             data[i][3] = new ImageIcon(tmp.getBufferedImage());
+            NativeMemory.releaseImage(tmp);
+            // load only one stored image at a time
+            if (obj.isStored()) {
+                obj.releaseImage();
+            }
             data[i][4] = true;
         }
 
@@ -1,7 +1,5 @@
 package tracking.gui;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvResize;
 
@@ -12,6 +10,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import tracking.gui.layouts.VerticalFlowLayout;
+import tracking.model.NativeMemory;
 
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
 
@@ -46,7 +45,7 @@ public class ImageListPanel extends JPanel {
      * @param image the {@link IplImage}.
      */
     public void addImage(IplImage image) {
-        IplImage tmpImage = cvCreateImage(
+        IplImage tmpImage = NativeMemory.createImage(
                 cvSize(imageSize.width, imageSize.height), image.depth(),
                 image.nChannels());
 
@@ -54,7 +53,7 @@ public class ImageListPanel extends JPanel {
         // data of image.
         cvResize(image, tmpImage);
         this.add(new JLabel(new ImageIcon(tmpImage.getBufferedImage())));
-        cvReleaseImage(tmpImage);
+        NativeMemory.releaseImage(tmpImage);
         this.updateUI();
     }
 
@@ -1,9 +1,7 @@
 package tracking.gui;
 
 import static com.googlecode.javacv.cpp.opencv_core.IPL_DEPTH_8U;
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvGetSize;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvResize;
 
@@ -14,6 +12,8 @@ import java.beans.Transient;
 
 import javax.swing.JPanel;
 
+import tracking.model.NativeMemory;
+
 import com.googlecode.javacv.cpp.opencv_core.CvSize;
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
 
@@ -53,7 +53,7 @@ public class ImagePanel extends JPanel {
     public ImagePanel(Dimension dimension) {
         CvSize size = new CvSize((int) dimension.getWidth(),
                 (int) dimension.getHeight());
-        image = cvCreateImage(size, IPL_DEPTH_8U, 1);
+        image = NativeMemory.createImage(size, IPL_DEPTH_8U, 1);
         imageRatio = (double) size.width() / (double) size.height();
         landscape = true;
         rotation = false;
@@ -72,9 +72,9 @@ public class ImagePanel extends JPanel {
                 || image.nChannels() != newimage.nChannels()) {
             // release the old image when the new one is created
             IplImage releaseImage = image;
-            image = cvCreateImage(cvGetSize(image), newimage.depth(),
+            image = NativeMemory.createImage(cvGetSize(image), newimage.depth(),
                     newimage.nChannels());
-            cvReleaseImage(releaseImage);
+            NativeMemory.releaseImage(releaseImage);
         }
 
         cvResize(newimage, image);
@@ -133,15 +133,16 @@ public class ImagePanel extends JPanel {
     public void setImageSize(int width) {
         IplImage releaseImage = image;
         if (landscape) {
-            image = cvCreateImage(cvSize(width, (int) (width / imageRatio)),
+            image = NativeMemory.createImage(
+                    cvSize(width, (int) (width / imageRatio)),
                     releaseImage.depth(), releaseImage.nChannels());
         } else {
-            image = cvCreateImage(
+            image = NativeMemory.createImage(
                     cvSize((int) (width / imageRatio), (int) (width)),
                     releaseImage.depth(), releaseImage.nChannels());
         }
         cvResize(releaseImage, image);
-        cvReleaseImage(releaseImage);
+        NativeMemory.releaseImage(releaseImage);
         // this.removeAll();
         // this.add(new JLabel(new ImageIcon(image.getBufferedImage())));
         this.updateUI();
@@ -11,6 +11,7 @@ import java.awt.Toolkit;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.LinkedList;
 
 import javax.swing.JButton;
@@ -27,13 +28,16 @@ import javax.swing.filechooser.FileFilter;
 
 import tracking.gui.controller.PluginButtonListener;
 import tracking.gui.controller.VideoPathFieldListener;
+import tracking.gui.plugins.hough.colorfilter.HoughEditorFrame;
+import tracking.model.DetectionStore;
 import tracking.model.VideoProcessor;
 import tracking.model.plugins.ObjectDetectionPlugin;
+import tracking.model.plugins.PluginHost;
 import tracking.model.plugins.hough.HoughSignRecognition;
 
 import com.googlecode.javacv.cpp.opencv_highgui.CvCapture;
 
-public class MainFrame extends JFrame {
+public class MainFrame extends JFrame implements PluginHost {
 
     /**
      * A serialisation ID.
@@ -403,10 +407,22 @@ public class MainFrame extends JFrame {
     /**
      * return the CvCapture videoCapture.
      */
+    @Override
     public CvCapture getVideoCapture() {
         return videoCapture;
     }
 
+    /**
+     * Create the editor of the plugin. Add the editors of your plugins here.
+     */
+    @Override
+    public JDialog createEditorDialog(ObjectDetectionPlugin plugin) {
+        if (plugin instanceof HoughSignRecognition) {
+            return new HoughEditorFrame((HoughSignRecognition) plugin);
+        }
+        return null;
+    }
+
     // public File getVideoFile() { Return a CvGrabber instead of the VideoFile, because the Grabber
     // could only be initialised once.
     // return videoFile;
@@ -421,8 +437,23 @@ public class MainFrame extends JFrame {
             /*
              * create a VideoProcessorFrame and a VideoProcessor instance and dispose the MainFrame
              */
-            VideoProcessorFrame frame = new VideoProcessorFrame(
-                    new VideoProcessor(videoCapture, addedPlugins));
+            VideoProcessor processor = new VideoProcessor(videoCapture,
+                    addedPlugins);
+            processor.setVideoFile(videoFile);
+            // keep the images of the found objects on disk
+            try {
+                processor.setDetectionStore(DetectionStore.createTemporary());
+            } catch (IOException e) {
+                System.err.println("Could not create detection store, "
+                        + "images are kept in memory.");
+                e.printStackTrace();
+            }
+            // detect the frames on all cores
+            processor.setWorkerThreads(Runtime.getRuntime()
+                    .availableProcessors());
+            // and let the plugins of one frame detect concurrently
+            processor.setPluginThreads(addedPlugins.size());
+            VideoProcessorFrame frame = new VideoProcessorFrame(processor);
             this.dispose();
             frame.setVisible(true);
         } else {
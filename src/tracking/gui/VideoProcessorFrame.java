@@ -299,7 +299,10 @@ public class VideoProcessorFrame extends JFrame implements Observer {
         if (res instanceof ResultObject) {
             ResultObject result = (ResultObject) res;
 
-            this.videoPanel.setImage(result.getDrawImage());
+            // no image, if the processor only tracks the detections
+            if (result.getDrawImage() != null) {
+                this.videoPanel.setImage(result.getDrawImage());
+            }
 
             // release the image of the result object to prevent Memory Leak
             result.releaseImage();
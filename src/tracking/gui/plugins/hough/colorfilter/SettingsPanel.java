@@ -27,7 +27,7 @@ public class SettingsPanel extends JPanel {
 
     private JTable cvContourBlur, trackCircleBlur, trackCircle,
             trackPolygonBlur, trackPolygon, signTracker, shapeDetection,
-            blobDetection;
+            blobDetection, blobFilter;
 
     private final boolean[] editable = { false, true };
 
@@ -35,7 +35,7 @@ public class SettingsPanel extends JPanel {
 
     private JPanel panelCvContourBlur, panelTrackCircleBlur, panelTrackCircle,
             panelTrackPolygonBlur, panelTrackPolygon, panelSignTracker,
-            panelShapeDetection, panelBlobDetection;
+            panelShapeDetection, panelBlobDetection, panelBlobFilter;
 
     private final String nameCvContourBlur = "Contour detection",
             nameTrackCircleBlur = "Circle detection blur",
@@ -44,7 +44,8 @@ public class SettingsPanel extends JPanel {
             nameTrackPolygon = "Polygon detection",
             nameSignTracker = "Sign tracker",
             nameShapeDetection = "Shape detection",
-            nameBlobDetection = "Blob detection";
+            nameBlobDetection = "Blob detection",
+            nameBlobFilter = "Blob filter (0 disables a check)";
 
     private HoughSignRecognition model;
 
@@ -115,6 +116,14 @@ public class SettingsPanel extends JPanel {
                 { "Minimum blob size in pixel", (int) blobDetectionValue[1] },
                 { "Maximum blob size in pixel", (int) blobDetectionValue[2] } };
 
+        double[] blobFilterValue = model.getBlobFilterValue();
+        final Object[][] dataBlobFilter = {
+                { "Maximum aspect ratio", blobFilterValue[0] },
+                { "Minimum fill ratio", blobFilterValue[1] },
+                { "Minimum compactness", blobFilterValue[2] },
+                { "Minimum convexity", blobFilterValue[3] },
+                { "Minimum color coverage", blobFilterValue[4] } };
+
         CustomTableModel modelCvContourBlur = new CustomTableModel(
                 dataCvContourBlur, names, editable,
                 createMinMax(model.getCvContourMinMax()));
@@ -212,6 +221,18 @@ public class SettingsPanel extends JPanel {
                 BorderLayout.PAGE_START);
         panelBlobDetection.add(blobDetection, BorderLayout.CENTER);
 
+        CustomTableModel modelBlobFilter = new CustomTableModel(
+                dataBlobFilter, names, editable,
+                createMinMax(model.getBlobFilterMinMax()));
+        blobFilter = new JTable(modelBlobFilter);
+        blobFilter.setRowHeight(ROW_HEIGHT);
+        blobFilter.getTableHeader().setReorderingAllowed(false);
+        panelBlobFilter = new JPanel(new BorderLayout());
+        panelBlobFilter.setBorder(new TitledBorder(nameBlobFilter));
+        panelBlobFilter.add(blobFilter.getTableHeader(),
+                BorderLayout.PAGE_START);
+        panelBlobFilter.add(blobFilter, BorderLayout.CENTER);
+
         this.setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
 
@@ -252,6 +273,10 @@ public class SettingsPanel extends JPanel {
         gbc.gridy = 3;
         this.add(panelTrackPolygon, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        this.add(panelBlobFilter, gbc);
+
     }
 
     public void okButtonPressed() {
@@ -294,6 +319,13 @@ public class SettingsPanel extends JPanel {
                 (int) blobDetection.getModel().getValueAt(0, 1),
                 (int) blobDetection.getModel().getValueAt(1, 1),
                 (int) blobDetection.getModel().getValueAt(2, 1));
+
+        model.setBlobFilterValue(
+                (double) blobFilter.getModel().getValueAt(0, 1),
+                (double) blobFilter.getModel().getValueAt(1, 1),
+                (double) blobFilter.getModel().getValueAt(2, 1),
+                (double) blobFilter.getModel().getValueAt(3, 1),
+                (double) blobFilter.getModel().getValueAt(4, 1));
     }
 
     /**
@@ -0,0 +1,208 @@
+package tracking.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The files of a cache in a cache folder, e.g. of a {@link ResultCache}. A cache has two files,
+ * both named after its key: an index file, which starts with a magic number and the version of
+ * its format, and a {@link DetectionStore} with the images. A new cache is written under
+ * temporary names and renamed in {@link #finish()}, so an aborted run leaves no cache behind. The
+ * index file marks a complete cache, it is removed first and moved last.
+ *
+ * @author Philipp
+ */
+public class CacheFiles {
+
+    /**
+     * Suffix of the files while they are written.
+     */
+    private static final String PART = ".part";
+
+    private File folder;
+
+    private String key;
+
+    private String indexSuffix;
+
+    private String storeSuffix;
+
+    private DataOutputStream out;
+
+    private DataInputStream in;
+
+    private DetectionStore store;
+
+    /**
+     * <code>true</code> if a new cache is written.
+     */
+    private boolean written;
+
+    /**
+     * <code>true</code> after the written cache is complete.
+     */
+    private boolean finished;
+
+    /**
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache.
+     * @param indexSuffix
+     *            suffix of the index file.
+     * @param storeSuffix
+     *            suffix of the {@link DetectionStore}.
+     */
+    public CacheFiles(File folder, String key, String indexSuffix,
+            String storeSuffix) {
+        this.folder = folder;
+        this.key = key;
+        this.indexSuffix = indexSuffix;
+        this.storeSuffix = storeSuffix;
+    }
+
+    /**
+     * Check if the files of a complete cache exist.
+     *
+     * @return <code>true</code> if the cache can be opened.
+     */
+    public boolean exist() {
+        return new File(folder, key + indexSuffix).isFile()
+                && new File(folder, key + storeSuffix).isFile();
+    }
+
+    /**
+     * Create the temporary files of a new cache and write the header of the index file. An
+     * existing cache with the same key is replaced in {@link #finish()}.
+     *
+     * @param magic
+     *            marks the index file.
+     * @param version
+     *            version of the file format.
+     * @throws IOException
+     *             if the files can not be created.
+     */
+    public void create(int magic, int version) throws IOException {
+        written = true;
+        store = new DetectionStore(new File(folder, key + storeSuffix + PART));
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(new File(folder, key + indexSuffix
+                            + PART))));
+            out.writeInt(magic);
+            out.writeInt(version);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the files of a complete cache and check the header of the index file.
+     *
+     * @param magic
+     *            marks the index file.
+     * @param version
+     *            version of the file format.
+     * @throws IOException
+     *             if the cache does not exist or has the wrong format.
+     */
+    public void open(int magic, int version) throws IOException {
+        store = DetectionStore.open(new File(folder, key + storeSuffix));
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(new File(folder, key + indexSuffix))));
+            if (in.readInt() != magic || in.readInt() != version) {
+                throw new IOException("Cache " + key + indexSuffix
+                        + " has another version.");
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the written files and rename them, an older cache with the same key is replaced.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        out.close();
+        store.close();
+        finished = true;
+
+        File index = new File(folder, key + indexSuffix);
+        Files.deleteIfExists(index.toPath());
+        Files.move(store.getFile().toPath(),
+                new File(folder, key + storeSuffix).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.move(new File(folder, key + indexSuffix + PART).toPath(),
+                index.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Close the files. The files of a written cache, which is not finished, are deleted.
+     */
+    public void close() {
+        if (finished) {
+            return;
+        }
+        try {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+            if (store != null) {
+                store.close();
+            }
+            if (written) {
+                Files.deleteIfExists(new File(folder, key + indexSuffix
+                        + PART).toPath());
+                if (store != null) {
+                    Files.deleteIfExists(store.getFile().toPath());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not close cache " + key);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Return the index file to write, after {@link #create(int, int)}.
+     *
+     * @return the {@link DataOutputStream}.
+     */
+    public DataOutputStream getOutput() {
+        return out;
+    }
+
+    /**
+     * Return the index file to read, after {@link #open(int, int)}.
+     *
+     * @return the {@link DataInputStream}.
+     */
+    public DataInputStream getInput() {
+        return in;
+    }
+
+    /**
+     * Return the store with the images.
+     *
+     * @return the {@link DetectionStore}.
+     */
+    public DetectionStore getStore() {
+        return store;
+    }
+}
@@ -0,0 +1,261 @@
+package tracking.model;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedList;
+
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+
+/**
+ * State of a {@link VideoProcessor} run after a completely processed frame: the frame number, the
+ * found {@link StreetObject}s with the positions of their images in the {@link DetectionStore} and
+ * the state of the plugins. A run can be resumed from a checkpoint with
+ * {@link VideoProcessor#resume(File)}.
+ * <p>
+ * The checkpoint file is replaced atomically, so a crash while writing keeps the last checkpoint.
+ *
+ * @author Philipp
+ */
+public class Checkpoint {
+
+    /**
+     * Marks a checkpoint file.
+     */
+    private static final int MAGIC = 0x47505354;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * The last completely processed frame.
+     */
+    private int frame;
+
+    /**
+     * Length of the {@link DetectionStore} at the checkpoint.
+     */
+    private long storeLength;
+
+    /**
+     * <code>true</code> if the frame stride mode analysed every frame.
+     */
+    private boolean strideDense;
+
+    /**
+     * Frames without detections in the frame stride mode.
+     */
+    private int strideEmptyFrames;
+
+    /**
+     * All found {@link StreetObject}s. Their images are in the {@link DetectionStore}.
+     */
+    private LinkedList<StreetObject> streetObjects;
+
+    /**
+     * The state of every plugin, <code>null</code> for plugins without state.
+     */
+    private byte[][] pluginStates;
+
+    /**
+     * @param frame
+     *            the last completely processed frame.
+     * @param storeLength
+     *            length of the {@link DetectionStore}.
+     * @param strideDense
+     * @param strideEmptyFrames
+     * @param streetObjects
+     *            the found {@link StreetObject}s, all stored.
+     * @param pluginStates
+     *            the state of every plugin.
+     */
+    public Checkpoint(int frame, long storeLength, boolean strideDense,
+            int strideEmptyFrames, LinkedList<StreetObject> streetObjects,
+            byte[][] pluginStates) {
+        this.frame = frame;
+        this.storeLength = storeLength;
+        this.strideDense = strideDense;
+        this.strideEmptyFrames = strideEmptyFrames;
+        this.streetObjects = streetObjects;
+        this.pluginStates = pluginStates;
+    }
+
+    /**
+     * Write the checkpoint. It is written into a temporary file first, which then replaces the
+     * checkpoint file.
+     *
+     * @param file
+     *            the checkpoint file.
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(frame);
+            out.writeLong(storeLength);
+            out.writeBoolean(strideDense);
+            out.writeInt(strideEmptyFrames);
+
+            out.writeInt(streetObjects.size());
+            for (StreetObject obj : streetObjects) {
+                out.writeLong(obj.getStorePosition());
+                out.writeInt(obj.getFrame());
+                out.writeDouble(obj.getTimestamp());
+                out.writeDouble(obj.getVideoFPS());
+                out.writeUTF(obj.getType().name());
+                out.writeBoolean(obj.getPluginName() != null);
+                if (obj.getPluginName() != null) {
+                    out.writeUTF(obj.getPluginName());
+                }
+                out.writeBoolean(obj.getCenter() != null);
+                if (obj.getCenter() != null) {
+                    out.writeInt(obj.getCenter().x);
+                    out.writeInt(obj.getCenter().y);
+                }
+            }
+
+            out.writeInt(pluginStates.length);
+            for (byte[] state : pluginStates) {
+                if (state == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(state.length);
+                    out.write(state);
+                }
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a checkpoint.
+     *
+     * @param file
+     *            the checkpoint file.
+     * @param store
+     *            the {@link DetectionStore} with the images of the street objects.
+     * @return the {@link Checkpoint}.
+     * @throws IOException
+     *             if the file can not be read or is no checkpoint.
+     */
+    public static Checkpoint read(File file, DetectionStore store)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is no checkpoint of this version.");
+            }
+            int frame = in.readInt();
+            long storeLength = in.readLong();
+            boolean strideDense = in.readBoolean();
+            int strideEmptyFrames = in.readInt();
+
+            LinkedList<StreetObject> streetObjects = new LinkedList<StreetObject>();
+            int objects = in.readInt();
+            for (int i = 0; i < objects; i++) {
+                StreetObject obj = new StreetObject();
+                obj.setStored(store, in.readLong());
+                obj.setFrame(in.readInt());
+                obj.setTimestamp(in.readDouble());
+                obj.setVideoFPS(in.readDouble());
+                obj.setType(Type.valueOf(in.readUTF()));
+                if (in.readBoolean()) {
+                    obj.setPluginName(in.readUTF());
+                }
+                if (in.readBoolean()) {
+                    obj.setCenter(new Point(in.readInt(), in.readInt()));
+                }
+                streetObjects.add(obj);
+            }
+
+            byte[][] pluginStates = new byte[in.readInt()][];
+            for (int i = 0; i < pluginStates.length; i++) {
+                int length = in.readInt();
+                if (length >= 0) {
+                    pluginStates[i] = new byte[length];
+                    in.readFully(pluginStates[i]);
+                }
+            }
+
+            return new Checkpoint(frame, storeLength, strideDense,
+                    strideEmptyFrames, streetObjects, pluginStates);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + " contains an unknown type.", e);
+        }
+    }
+
+    /**
+     * Return the last completely processed frame.
+     *
+     * @return the frame number.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Return the length of the {@link DetectionStore} at the checkpoint.
+     *
+     * @return the length in bytes.
+     */
+    public long getStoreLength() {
+        return storeLength;
+    }
+
+    /**
+     * Return if the frame stride mode analysed every frame.
+     *
+     * @return <code>true</code> if every frame was analysed.
+     */
+    public boolean isStrideDense() {
+        return strideDense;
+    }
+
+    /**
+     * Return the number of frames without detections in the frame stride mode.
+     *
+     * @return number of frames.
+     */
+    public int getStrideEmptyFrames() {
+        return strideEmptyFrames;
+    }
+
+    /**
+     * Return the found {@link StreetObject}s.
+     *
+     * @return the {@link LinkedList} of {@link StreetObject}s.
+     */
+    public LinkedList<StreetObject> getStreetObjects() {
+        return streetObjects;
+    }
+
+    /**
+     * Return the state of every plugin.
+     *
+     * @return the states, <code>null</code> for plugins without state.
+     */
+    public byte[][] getPluginStates() {
+        return pluginStates;
+    }
+}
@@ -0,0 +1,173 @@
+package tracking.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import tracking.model.plugins.StreetObject;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Append only file for the images of the found {@link StreetObject}s. The images are encoded with
+ * the {@link ImageCodec} and written one after another, each with its length in front. A
+ * {@link StreetObject} only keeps the position of its image and loads it when it is needed. So the
+ * images of a long video do not have to be kept in native memory. All methods are thread safe.
+ * 
+ * @author Philipp
+ */
+public class DetectionStore {
+
+    /**
+     * The store file.
+     */
+    private File file;
+
+    /**
+     * The opened store file.
+     */
+    private RandomAccessFile data;
+
+    /**
+     * Create a new, empty store. An existing file is overwritten.
+     * 
+     * @param file
+     *            the store file.
+     * @throws IOException
+     *             if the file can not be created.
+     */
+    public DetectionStore(File file) throws IOException {
+        this(file, true);
+    }
+
+    private DetectionStore(File file, boolean clear) throws IOException {
+        this.file = file;
+        this.data = new RandomAccessFile(file, "rw");
+        if (clear) {
+            this.data.setLength(0);
+        }
+    }
+
+    /**
+     * Open an existing store and keep its images, e.g. to resume a run.
+     * 
+     * @param file
+     *            the store file.
+     * @return the {@link DetectionStore}.
+     * @throws IOException
+     *             if the file does not exist or can not be opened.
+     */
+    public static DetectionStore open(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("Detection store " + file + " does not exist.");
+        }
+        return new DetectionStore(file, false);
+    }
+
+    /**
+     * Create a store in a temporary file, which is deleted when the program ends.
+     * 
+     * @return the {@link DetectionStore}.
+     * @throws IOException
+     *             if the file can not be created.
+     */
+    public static DetectionStore createTemporary() throws IOException {
+        File file = File.createTempFile("detections", ".store");
+        file.deleteOnExit();
+        return new DetectionStore(file);
+    }
+
+    /**
+     * Append an image to the store.
+     * 
+     * @param image
+     *            the {@link IplImage}. If the image has a ROI, only the ROI is stored.
+     * @return the position of the image, needed for {@link #load(long)}.
+     * @throws IOException
+     *             if the image can not be written.
+     */
+    public long append(IplImage image) throws IOException {
+        byte[] bytes = ImageCodec.encode(image);
+        synchronized (this) {
+            long position = data.length();
+            data.seek(position);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+            return position;
+        }
+    }
+
+    /**
+     * Load an image from the store.
+     * 
+     * @param position
+     *            the position from {@link #append(IplImage)}.
+     * @return the {@link IplImage}. Has to be released with
+     *         {@link NativeMemory#releaseImage(IplImage)}.
+     * @throws IOException
+     *             if the image can not be read.
+     */
+    public IplImage load(long position) throws IOException {
+        byte[] bytes;
+        synchronized (this) {
+            data.seek(position);
+            bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+        }
+        return ImageCodec.decode(bytes);
+    }
+
+    /**
+     * Return the length of the store file in bytes.
+     * 
+     * @return the length.
+     * @throws IOException
+     */
+    public synchronized long length() throws IOException {
+        return data.length();
+    }
+
+    /**
+     * Cut off all images after the given length. Used to remove the images written after a
+     * checkpoint.
+     * 
+     * @param length
+     *            the new length from {@link #length()}.
+     * @throws IOException
+     *             if the store is shorter.
+     */
+    public synchronized void truncate(long length) throws IOException {
+        if (data.length() < length) {
+            throw new IOException("Detection store " + file
+                    + " is shorter than " + length + " bytes.");
+        }
+        data.setLength(length);
+    }
+
+    /**
+     * Force all written images to the disk.
+     * 
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        data.getFD().sync();
+    }
+
+    /**
+     * Return the store file.
+     * 
+     * @return the {@link File}.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Close the store file. The stored images can not be loaded afterwards.
+     * 
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        data.close();
+    }
+}
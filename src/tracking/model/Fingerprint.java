@@ -0,0 +1,122 @@
+package tracking.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fingerprints of the inputs of a run, e.g. to find cached results of the same video and the
+ * same settings. A fingerprint is a SHA-1 hash as hex string.
+ *
+ * @author Philipp
+ */
+public class Fingerprint {
+
+    /**
+     * Size of the read buffer of a video.
+     */
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * The fingerprints of the hashed videos by path, length and modification time.
+     */
+    private static final ConcurrentMap<String, String> videos = new ConcurrentHashMap<String, String>();
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Fingerprint of a video file: the hash of its whole content, so any change of the video
+     * changes it. The name of the file is not part of the fingerprint, so a renamed video keeps
+     * it. A video is only hashed once as long as its length and modification time stay the same.
+     *
+     * @param video
+     *            the video {@link File}.
+     * @return the fingerprint.
+     * @throws IOException
+     *             if the video can not be read.
+     */
+    public static String video(File video) throws IOException {
+        String key = video.getCanonicalPath() + '\0' + video.length() + '\0'
+                + video.lastModified();
+        String fingerprint = videos.get(key);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[BUFFER];
+        try (InputStream in = new FileInputStream(video)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        fingerprint = hex(digest.digest());
+        videos.put(key, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Fingerprint of settings, independent of the order of the keys.
+     *
+     * @param settings
+     *            the settings, e.g. of a plugin.
+     * @param ignored
+     *            keys which are not part of the fingerprint.
+     * @return the fingerprint.
+     */
+    public static String settings(Properties settings, String... ignored) {
+        TreeSet<String> keys = new TreeSet<String>(
+                settings.stringPropertyNames());
+        keys.removeAll(Arrays.asList(ignored));
+        StringBuilder text = new StringBuilder();
+        for (String key : keys) {
+            text.append(key).append('=').append(settings.getProperty(key))
+                    .append('\n');
+        }
+        return of(text.toString());
+    }
+
+    /**
+     * Fingerprint of several values, e.g. other fingerprints.
+     *
+     * @param values
+     * @return the fingerprint.
+     */
+    public static String of(String... values) {
+        MessageDigest digest = sha1();
+        for (String value : values) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-1
+            throw new IllegalStateException("SHA-1 is not available.", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            text.append(Character.forDigit((b >> 4) & 0xf, 16));
+            text.append(Character.forDigit(b & 0xf, 16));
+        }
+        return text.toString();
+    }
+}
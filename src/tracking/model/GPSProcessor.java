@@ -146,6 +146,10 @@ public class GPSProcessor extends Observable {
 
                     cvSaveImage(location + System.getProperty("file.separator")
                             + objName, obj.getImage());
+                    // load only one stored image at a time
+                    if (obj.isStored()) {
+                        obj.releaseImage();
+                    }
 
                     Element waypoint = new Element("wpt");
 
@@ -0,0 +1,74 @@
+package tracking.model;
+
+import static com.googlecode.javacv.cpp.opencv_core.CV_8UC1;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateMat;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseMat;
+import static com.googlecode.javacv.cpp.opencv_highgui.CV_LOAD_IMAGE_UNCHANGED;
+import static com.googlecode.javacv.cpp.opencv_highgui.cvDecodeImage;
+import static com.googlecode.javacv.cpp.opencv_highgui.cvEncodeImage;
+
+import java.nio.ByteBuffer;
+
+import com.googlecode.javacv.cpp.opencv_core.CvMat;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Encode {@link IplImage}s into bytes and back. PNG is used, so the decoded image has exactly the
+ * pixels of the encoded one.
+ * 
+ * @author Philipp
+ */
+public class ImageCodec {
+
+    /**
+     * The format of the encoded images.
+     */
+    private static final String FORMAT = ".png";
+
+    private ImageCodec() {
+    }
+
+    /**
+     * Encode the image. If the image has a ROI, only the ROI is encoded.
+     * 
+     * @param image
+     *            the {@link IplImage}.
+     * @return the encoded bytes.
+     */
+    public static byte[] encode(IplImage image) {
+        CvMat mat = cvEncodeImage(FORMAT, image, null);
+        if (mat == null || mat.isNull()) {
+            throw new IllegalStateException("Could not encode image.");
+        }
+        try {
+            ByteBuffer buffer = mat.getByteBuffer();
+            byte[] bytes = new byte[mat.rows() * mat.cols()];
+            buffer.get(bytes);
+            return bytes;
+        } finally {
+            cvReleaseMat(mat);
+        }
+    }
+
+    /**
+     * Decode an image.
+     * 
+     * @param bytes
+     *            the bytes from {@link #encode(IplImage)}.
+     * @return the {@link IplImage}. Has to be released with
+     *         {@link NativeMemory#releaseImage(IplImage)}.
+     */
+    public static IplImage decode(byte[] bytes) {
+        CvMat mat = cvCreateMat(1, bytes.length, CV_8UC1);
+        try {
+            mat.getByteBuffer().put(bytes);
+            IplImage image = cvDecodeImage(mat, CV_LOAD_IMAGE_UNCHANGED);
+            if (image == null || image.isNull()) {
+                throw new IllegalStateException("Could not decode image.");
+            }
+            return NativeMemory.track(image);
+        } finally {
+            cvReleaseMat(mat);
+        }
+    }
+}
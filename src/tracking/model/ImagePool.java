@@ -0,0 +1,271 @@
+package tracking.model;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvCopy;
+import static com.googlecode.javacv.cpp.opencv_core.cvResetImageROI;
+import static com.googlecode.javacv.cpp.opencv_core.cvSize;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Pool of native {@link IplImage}s for the per frame images. Images are borrowed from the pool and
+ * have to be given back with {@link #giveBack(IplImage)} instead of being released with
+ * cvReleaseImage. Idle images are kept per size, depth and number of channels and handed out again
+ * on the next borrow, so processing a frame does not allocate native memory. All methods are
+ * thread safe.
+ * <p>
+ * The pool counts the native bytes of all images it created. If the number of borrowed images
+ * does not go back to zero after a run, someone did not give back his images.
+ *
+ * @author Philipp
+ */
+public class ImagePool {
+
+    /**
+     * Default maximum number of idle images kept for one image format.
+     */
+    private static final int DEFAULT_MAX_IDLE = 32;
+
+    /**
+     * Idle images for each image format.
+     */
+    private static final ConcurrentMap<Format, ConcurrentLinkedQueue<IplImage>> idle = new ConcurrentHashMap<Format, ConcurrentLinkedQueue<IplImage>>();
+
+    /**
+     * All images, that are borrowed at the moment.
+     */
+    private static final Set<IplImage> borrowed = Collections
+            .newSetFromMap(new ConcurrentHashMap<IplImage, Boolean>());
+
+    /**
+     * Native bytes of all images created by the pool and not released yet.
+     */
+    private static final AtomicLong liveBytes = new AtomicLong();
+
+    /**
+     * Native bytes of all borrowed images.
+     */
+    private static final AtomicLong borrowedBytes = new AtomicLong();
+
+    /**
+     * Number of images created by the pool and not released yet.
+     */
+    private static final AtomicInteger liveImages = new AtomicInteger();
+
+    /**
+     * Maximum number of idle images for one image format. More images are released when they are
+     * given back.
+     */
+    private static volatile int maxIdle = DEFAULT_MAX_IDLE;
+
+    private ImagePool() {
+    }
+
+    /**
+     * Borrow an image with the given format. The content of the image is undefined.
+     *
+     * @param width
+     * @param height
+     * @param depth
+     *            e.g. IPL_DEPTH_8U
+     * @param channels
+     *            number of channels
+     * @return the {@link IplImage}. Has to be given back with {@link #giveBack(IplImage)}.
+     */
+    public static IplImage borrow(int width, int height, int depth,
+            int channels) {
+        Format format = new Format(width, height, depth, channels);
+        ConcurrentLinkedQueue<IplImage> queue = idle.get(format);
+        IplImage image = queue == null ? null : queue.poll();
+
+        if (image == null) {
+            image = NativeMemory.createImage(cvSize(width, height), depth,
+                    channels);
+            liveBytes.addAndGet(image.imageSize());
+            liveImages.incrementAndGet();
+        }
+
+        borrowed.add(image);
+        borrowedBytes.addAndGet(image.imageSize());
+        return image;
+    }
+
+    /**
+     * Borrow an image with the same format as the given image. The content of the image is
+     * undefined.
+     *
+     * @param like
+     *            the image with the format.
+     * @return the {@link IplImage}. Has to be given back with {@link #giveBack(IplImage)}.
+     */
+    public static IplImage borrow(IplImage like) {
+        return borrow(like.width(), like.height(), like.depth(),
+                like.nChannels());
+    }
+
+    /**
+     * Borrow an image and copy the content of src into it. Replacement for cvCloneImage.
+     *
+     * @param src
+     *            the image to copy. It must not have a ROI.
+     * @return the copy of src. Has to be given back with {@link #giveBack(IplImage)}.
+     */
+    public static IplImage borrowClone(IplImage src) {
+        if (src.roi() != null && !src.roi().isNull()) {
+            throw new IllegalArgumentException(
+                    "Only images without ROI can be cloned by the pool.");
+        }
+        IplImage image = borrow(src);
+        cvCopy(src, image);
+        return image;
+    }
+
+    /**
+     * Give a borrowed image back to the pool. The image must not be used afterwards.
+     *
+     * @param image
+     *            the {@link IplImage} from {@link #borrow(int, int, int, int)}.
+     */
+    public static void giveBack(IplImage image) {
+        if (image == null) {
+            return;
+        }
+        if (!borrowed.remove(image)) {
+            throw new IllegalArgumentException(
+                    "Image was not borrowed from the pool or is given back twice.");
+        }
+        borrowedBytes.addAndGet(-image.imageSize());
+        cvResetImageROI(image);
+
+        Format format = new Format(image.width(), image.height(),
+                image.depth(), image.nChannels());
+        ConcurrentLinkedQueue<IplImage> queue = idle.get(format);
+        if (queue == null) {
+            idle.putIfAbsent(format, new ConcurrentLinkedQueue<IplImage>());
+            queue = idle.get(format);
+        }
+
+        if (queue.size() < maxIdle) {
+            queue.add(image);
+        } else {
+            release(image);
+        }
+    }
+
+    /**
+     * Release all idle images. Borrowed images are not touched.
+     */
+    public static void clear() {
+        for (ConcurrentLinkedQueue<IplImage> queue : idle.values()) {
+            IplImage image;
+            while ((image = queue.poll()) != null) {
+                release(image);
+            }
+        }
+    }
+
+    /**
+     * Set the maximum number of idle images kept for one image format.
+     *
+     * @param max
+     */
+    public static void setMaxIdle(int max) {
+        maxIdle = Math.max(0, max);
+    }
+
+    /**
+     * Return the native bytes of all images created by the pool, which are not released yet. Idle
+     * and borrowed images are counted.
+     *
+     * @return the live native bytes.
+     */
+    public static long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Return the number of images created by the pool, which are not released yet.
+     *
+     * @return the number of live images.
+     */
+    public static int getLiveImages() {
+        return liveImages.get();
+    }
+
+    /**
+     * Return the native bytes of all borrowed images.
+     *
+     * @return the borrowed native bytes.
+     */
+    public static long getBorrowedBytes() {
+        return borrowedBytes.get();
+    }
+
+    /**
+     * Return the number of borrowed images.
+     *
+     * @return the number of borrowed images.
+     */
+    public static int getBorrowedImages() {
+        return borrowed.size();
+    }
+
+    /**
+     * Return a short report of the pool state.
+     *
+     * @return the report as {@link String}.
+     */
+    public static String report() {
+        return "ImagePool: " + getLiveImages() + " live images ("
+                + getLiveBytes() + " bytes), " + getBorrowedImages()
+                + " borrowed (" + getBorrowedBytes() + " bytes)";
+    }
+
+    /**
+     * Release the native memory of an image of the pool.
+     *
+     * @param image
+     */
+    private static void release(IplImage image) {
+        liveBytes.addAndGet(-image.imageSize());
+        liveImages.decrementAndGet();
+        NativeMemory.releaseImage(image);
+    }
+
+    /**
+     * Size, depth and number of channels of an image.
+     */
+    private static class Format {
+
+        private final int width, height, depth, channels;
+
+        private Format(int width, int height, int depth, int channels) {
+            this.width = width;
+            this.height = height;
+            this.depth = depth;
+            this.channels = channels;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Format)) {
+                return false;
+            }
+            Format other = (Format) obj;
+            return width == other.width && height == other.height
+                    && depth == other.depth && channels == other.channels;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((width * 31 + height) * 31 + depth) * 31 + channels;
+        }
+    }
+}
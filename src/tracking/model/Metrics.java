@@ -0,0 +1,394 @@
+package tracking.model;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms for the stages of the frame processing and counters for the blobs. A stage is
+ * measured with
+ *
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.end(Stage.CONTOURS, start);
+ * </pre>
+ *
+ * The histograms have one bucket per power of two microseconds, so recording is a few atomic
+ * increments. All methods are thread safe. The values are collected for the whole program, they
+ * are reset when a {@link VideoProcessor} starts.
+ *
+ * @author Philipp
+ */
+public class Metrics {
+
+    /**
+     * The measured stages of the frame processing.
+     */
+    public static enum Stage {
+        DECODE, HSV_PUSH, COLOR_FILTER, CONTOURS, BLOB_FILTER, TRACK_CIRCLE, TRACK_POLYGON, SIGN_TRACKER;
+    }
+
+    /**
+     * The counted events.
+     */
+    public static enum Counter {
+        /**
+         * Frames processed by the {@link VideoProcessor}.
+         */
+        FRAMES,
+        /**
+         * All blobs found by cvFindContours.
+         */
+        BLOBS_FOUND,
+        /**
+         * Blobs in the size range, which went through the shape detection.
+         */
+        BLOBS_CHECKED,
+        /**
+         * Checked blobs, which are no sign.
+         */
+        BLOBS_REJECTED,
+        /**
+         * Blobs in the size range, which are removed by the aspect ratio of the blob filter.
+         */
+        REJECTED_ASPECT,
+        /**
+         * Blobs removed by the fill ratio of the blob filter.
+         */
+        REJECTED_FILL,
+        /**
+         * Blobs removed by the compactness of the blob filter.
+         */
+        REJECTED_COMPACTNESS,
+        /**
+         * Blobs removed by the convexity of the blob filter.
+         */
+        REJECTED_CONVEXITY,
+        /**
+         * Blobs removed by the color coverage of the blob filter.
+         */
+        REJECTED_COLOR;
+    }
+
+    /**
+     * Number of histogram buckets. Bucket i holds durations below 2^i microseconds.
+     */
+    private static final int BUCKETS = 40;
+
+    private static volatile boolean enabled = true;
+
+    private static final Histogram[] histograms = new Histogram[Stage
+            .values().length];
+
+    private static final AtomicLong[] counters = new AtomicLong[Counter
+            .values().length];
+
+    /**
+     * Start of the measurement in nanoseconds, for the frame rate.
+     */
+    private static volatile long resetTime = System.nanoTime();
+
+    private static ScheduledExecutorService reporter;
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Enable or disable the measurement.
+     *
+     * @param enable
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Return if the measurement is enabled.
+     *
+     * @return <code>true</code> if enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start the measurement of a stage.
+     *
+     * @return the start time for {@link #end(Stage, long)}.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * End the measurement of a stage.
+     *
+     * @param stage
+     *            the measured {@link Stage}.
+     * @param start
+     *            the time from {@link #start()}.
+     */
+    public static void end(Stage stage, long start) {
+        if (enabled && start != 0) {
+            histograms[stage.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param counter
+     *            the {@link Counter}.
+     * @param value
+     *            the value to add.
+     */
+    public static void count(Counter counter, long value) {
+        if (enabled) {
+            counters[counter.ordinal()].addAndGet(value);
+        }
+    }
+
+    /**
+     * Return the value of a counter.
+     *
+     * @param counter
+     *            the {@link Counter}.
+     * @return the value.
+     */
+    public static long getCount(Counter counter) {
+        return counters[counter.ordinal()].get();
+    }
+
+    /**
+     * Return the number of measurements of a stage.
+     *
+     * @param stage
+     *            the {@link Stage}.
+     * @return the number of measurements.
+     */
+    public static long getCount(Stage stage) {
+        return histograms[stage.ordinal()].count.get();
+    }
+
+    /**
+     * Return the mean duration of a stage.
+     *
+     * @param stage
+     *            the {@link Stage}.
+     * @return the mean in microseconds, 0 if not measured yet.
+     */
+    public static double getMeanMicros(Stage stage) {
+        Histogram histogram = histograms[stage.ordinal()];
+        long count = histogram.count.get();
+        return count == 0 ? 0 : histogram.total.get() / 1000.0 / count;
+    }
+
+    /**
+     * Return the maximum duration of a stage.
+     *
+     * @param stage
+     *            the {@link Stage}.
+     * @return the maximum in microseconds.
+     */
+    public static double getMaxMicros(Stage stage) {
+        return histograms[stage.ordinal()].max.get() / 1000.0;
+    }
+
+    /**
+     * Return the upper bound of the duration below which the given part of the measurements of a
+     * stage is. The histogram only knows powers of two, so this is an estimate.
+     *
+     * @param stage
+     *            the {@link Stage}.
+     * @param quantile
+     *            e.g. 0.99
+     * @return the upper bound in microseconds.
+     */
+    public static long getQuantileMicros(Stage stage, double quantile) {
+        Histogram histogram = histograms[stage.ordinal()];
+        long count = histogram.count.get();
+        long needed = (long) Math.ceil(count * quantile);
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            sum += histogram.buckets.get(i);
+            if (sum >= needed && sum > 0) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return the processed frames per second since the last reset.
+     *
+     * @return frames per second.
+     */
+    public static double getFramesPerSecond() {
+        double seconds = (System.nanoTime() - resetTime) / 1e9;
+        return seconds > 0 ? getCount(Counter.FRAMES) / seconds : 0;
+    }
+
+    /**
+     * Reset all histograms and counters.
+     */
+    public static void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : counters) {
+            counter.set(0);
+        }
+        resetTime = System.nanoTime();
+    }
+
+    /**
+     * Return a report of all stages and counters.
+     *
+     * @return the report as {@link String}.
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        long frames = getCount(Counter.FRAMES);
+        report.append(String.format(Locale.ROOT,
+                "Metrics: %d frames, %.2f frames/sec%n", frames,
+                getFramesPerSecond()));
+
+        for (Stage stage : Stage.values()) {
+            report.append(String.format(Locale.ROOT,
+                    "  %-14s n=%-9d mean=%9.1fus p50<%dus p99<%dus max=%.1fus%n",
+                    stage, getCount(stage), getMeanMicros(stage),
+                    getQuantileMicros(stage, 0.5),
+                    getQuantileMicros(stage, 0.99), getMaxMicros(stage)));
+        }
+        for (Counter counter : Counter.values()) {
+            if (counter == Counter.FRAMES) {
+                continue;
+            }
+            long value = getCount(counter);
+            report.append(String.format(Locale.ROOT,
+                    "  %-14s %d (%.1f per frame)%n", counter, value,
+                    frames == 0 ? 0.0 : (double) value / frames));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Write the metrics into {@link Properties}, e.g. for a summary file.
+     *
+     * @param properties
+     *            the {@link Properties} to fill.
+     * @param prefix
+     *            prefix for all keys.
+     */
+    public static void store(Properties properties, String prefix) {
+        for (Stage stage : Stage.values()) {
+            String key = prefix + stage.name().toLowerCase(Locale.ROOT);
+            properties.setProperty(key + ".count", "" + getCount(stage));
+            properties.setProperty(key + ".meanMicros", String.format(
+                    Locale.ROOT, "%.1f", getMeanMicros(stage)));
+            properties.setProperty(key + ".p99Micros",
+                    "" + getQuantileMicros(stage, 0.99));
+        }
+        for (Counter counter : Counter.values()) {
+            properties.setProperty(
+                    prefix + counter.name().toLowerCase(Locale.ROOT),
+                    "" + getCount(counter));
+        }
+    }
+
+    /**
+     * Print the report periodically. A running periodic report is stopped.
+     *
+     * @param seconds
+     *            seconds between two reports.
+     * @param out
+     *            the stream to print to, e.g. System.out.
+     */
+    public static synchronized void startPeriodicReport(long seconds,
+            final PrintStream out) {
+        stopPeriodicReport();
+        reporter = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Metrics report");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        reporter.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                out.print(report());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic report.
+     */
+    public static synchronized void stopPeriodicReport() {
+        if (reporter != null) {
+            reporter.shutdown();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Log2 histogram of durations.
+     */
+    private static class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long nanos) {
+            long micros = nanos / 1000;
+            // smallest i with micros < 2^i
+            int bucket = Math.min(BUCKETS - 1,
+                    64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+
+            long old;
+            while (nanos > (old = max.get())) {
+                if (max.compareAndSet(old, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+    }
+}
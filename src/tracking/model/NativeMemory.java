@@ -0,0 +1,251 @@
+package tracking.model;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateMemStorage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseMemStorage;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.CvSize;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Creates and releases the native images and memory storages of the program. With tracking
+ * enabled every allocation is remembered with its call site until it is released, so
+ * {@link #report()} shows the outstanding native memory by call site and
+ * {@link #checkNoLeaks()} fails if anything is left.
+ * <p>
+ * Tracking is off by default, then the methods only call OpenCV. It is enabled with
+ * {@link #setTracking(boolean)} or the system property <code>tracking.nativeMemory=true</code>.
+ * Enable it before the first allocation, allocations from before are not known.
+ *
+ * @author Philipp
+ */
+public class NativeMemory {
+
+    /**
+     * Bytes counted for a memory storage, the default block size of OpenCV.
+     */
+    private static final int STORAGE_BYTES = 65408;
+
+    private static volatile boolean tracking = Boolean
+            .getBoolean("tracking.nativeMemory");
+
+    /**
+     * The outstanding allocations by address.
+     */
+    private static final ConcurrentMap<Long, Allocation> allocations = new ConcurrentHashMap<Long, Allocation>();
+
+    private NativeMemory() {
+    }
+
+    /**
+     * Enable or disable the tracking. Disabling forgets all outstanding allocations.
+     *
+     * @param enable
+     */
+    public static void setTracking(boolean enable) {
+        tracking = enable;
+        if (!enable) {
+            allocations.clear();
+        }
+    }
+
+    /**
+     * Return if the allocations are tracked.
+     *
+     * @return <code>true</code> if tracking is enabled.
+     */
+    public static boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Create an image with cvCreateImage.
+     *
+     * @param size
+     * @param depth
+     * @param channels
+     * @return the {@link IplImage}. Release it with {@link #releaseImage(IplImage)}.
+     */
+    public static IplImage createImage(CvSize size, int depth, int channels) {
+        return track(cvCreateImage(size, depth, channels));
+    }
+
+    /**
+     * Clone an image with cvCloneImage.
+     *
+     * @param src
+     * @return the {@link IplImage}. Release it with {@link #releaseImage(IplImage)}.
+     */
+    public static IplImage cloneImage(IplImage src) {
+        return track(cvCloneImage(src));
+    }
+
+    /**
+     * Track an image, which was created by another OpenCV function, e.g. cvDecodeImage.
+     *
+     * @param image
+     * @return the image.
+     */
+    public static IplImage track(IplImage image) {
+        if (tracking && image != null && !image.isNull()) {
+            allocations.put(image.address(), new Allocation("image",
+                    image.imageSize(), callSite()));
+        }
+        return image;
+    }
+
+    /**
+     * Release an image with cvReleaseImage. <code>null</code> is ignored.
+     *
+     * @param image
+     */
+    public static void releaseImage(IplImage image) {
+        if (image == null || image.isNull()) {
+            return;
+        }
+        if (tracking) {
+            allocations.remove(image.address());
+        }
+        cvReleaseImage(image);
+    }
+
+    /**
+     * Create a memory storage with the default block size.
+     *
+     * @return the {@link CvMemStorage}. Release it with {@link #releaseStorage(CvMemStorage)}.
+     */
+    public static CvMemStorage createStorage() {
+        CvMemStorage storage = cvCreateMemStorage(0);
+        if (tracking && storage != null && !storage.isNull()) {
+            allocations.put(storage.address(), new Allocation("storage",
+                    STORAGE_BYTES, callSite()));
+        }
+        return storage;
+    }
+
+    /**
+     * Release a memory storage with all its blocks. <code>null</code> is ignored.
+     *
+     * @param storage
+     */
+    public static void releaseStorage(CvMemStorage storage) {
+        if (storage == null || storage.isNull()) {
+            return;
+        }
+        if (tracking) {
+            allocations.remove(storage.address());
+        }
+        cvReleaseMemStorage(storage);
+    }
+
+    /**
+     * Return the number of outstanding allocations.
+     *
+     * @return number of images and storages.
+     */
+    public static int getOutstandingAllocations() {
+        return allocations.size();
+    }
+
+    /**
+     * Return the outstanding native bytes. Storages are counted with one block.
+     *
+     * @return bytes.
+     */
+    public static long getOutstandingBytes() {
+        long bytes = 0;
+        for (Allocation allocation : allocations.values()) {
+            bytes += allocation.bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Return the outstanding allocations grouped by call site, the biggest first.
+     *
+     * @return the report as {@link String}.
+     */
+    public static String report() {
+        Map<String, long[]> sites = new TreeMap<String, long[]>();
+        for (Allocation allocation : allocations.values()) {
+            String key = allocation.kind + " " + allocation.site;
+            long[] sum = sites.get(key);
+            if (sum == null) {
+                sum = new long[2];
+                sites.put(key, sum);
+            }
+            sum[0]++;
+            sum[1] += allocation.bytes;
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append("Native memory: ").append(allocations.size())
+                .append(" allocations, ").append(getOutstandingBytes() / 1024)
+                .append(" KB outstanding").append(String.format("%n"));
+        while (!sites.isEmpty()) {
+            Map.Entry<String, long[]> biggest = null;
+            for (Map.Entry<String, long[]> entry : sites.entrySet()) {
+                if (biggest == null || entry.getValue()[1] > biggest.getValue()[1]) {
+                    biggest = entry;
+                }
+            }
+            report.append(String.format("  %8d KB %6d x %s%n",
+                    biggest.getValue()[1] / 1024, biggest.getValue()[0],
+                    biggest.getKey()));
+            sites.remove(biggest.getKey());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Fail if there are outstanding allocations, e.g. at the end of a test run.
+     *
+     * @throws IllegalStateException
+     *             with the {@link #report()}, if native memory is not released.
+     */
+    public static void checkNoLeaks() {
+        if (!allocations.isEmpty()) {
+            throw new IllegalStateException("Native memory leak. " + report());
+        }
+    }
+
+    /**
+     * Return the first caller outside of this class and the {@link ImagePool}.
+     */
+    private static String callSite() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String name = element.getClassName();
+            if (!name.equals(NativeMemory.class.getName())
+                    && !name.equals(ImagePool.class.getName())) {
+                return element.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * A tracked allocation.
+     */
+    private static class Allocation {
+
+        private final String kind;
+
+        private final long bytes;
+
+        private final String site;
+
+        private Allocation(String kind, long bytes, String site) {
+            this.kind = kind;
+            this.bytes = bytes;
+            this.site = site;
+        }
+    }
+}
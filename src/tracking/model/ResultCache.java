@@ -0,0 +1,252 @@
+package tracking.model;
+
+import java.awt.Point;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+import tracking.model.plugins.CacheablePlugin;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Cache of the results of a {@link CacheablePlugin}: the {@link StreetObject}s it found in every
+ * frame of a video. The cache is keyed by the fingerprint of the video and the configuration of
+ * the plugin, see {@link #key(String, CacheablePlugin)}. So a plugin, whose configuration did not
+ * change since the last run on the video, is not run again.
+ * <p>
+ * A cache are two files in the cache folder, named after its key: KEY.results with the objects of
+ * the frames in frame order and KEY.images, a {@link DetectionStore} with their images. The
+ * {@link CacheFiles} write them under temporary names and rename them in {@link #finish()}, so an
+ * aborted run leaves no cache behind.
+ *
+ * @author Philipp
+ */
+public class ResultCache {
+
+    /**
+     * Marks a results file.
+     */
+    private static final int MAGIC = 0x47505243;
+
+    /**
+     * Version of the file format, part of the key.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Suffix of the results file.
+     */
+    public static final String RESULTS = ".results";
+
+    /**
+     * Suffix of the images file.
+     */
+    public static final String IMAGES = ".images";
+
+    private String key;
+
+    private CacheFiles files;
+
+    private DataOutputStream out;
+
+    private DataInputStream in;
+
+    private DetectionStore images;
+
+    /**
+     * The next frame with objects in the read cache, {@link Integer#MAX_VALUE} after the last
+     * one.
+     */
+    private int nextFrame;
+
+    private ResultCache(File folder, String key) {
+        this.key = key;
+        this.files = new CacheFiles(folder, key, RESULTS, IMAGES);
+    }
+
+    /**
+     * Return the key of the cache of a plugin. It contains the class, the id and the
+     * configuration of the plugin.
+     *
+     * @param video
+     *            the {@link Fingerprint#video(File)} of the video.
+     * @param plugin
+     *            the {@link CacheablePlugin}.
+     * @return the key.
+     */
+    public static String key(String video, CacheablePlugin plugin) {
+        return Fingerprint.of(video, plugin.getClass().getName(),
+                "id=" + plugin.getPluginID(), plugin.getConfigFingerprint(),
+                "version=" + VERSION);
+    }
+
+    /**
+     * Check if a complete cache exists.
+     *
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache.
+     * @return <code>true</code> if the cache can be opened.
+     */
+    public static boolean exists(File folder, String key) {
+        return new CacheFiles(folder, key, RESULTS, IMAGES).exist();
+    }
+
+    /**
+     * Create a new cache, an existing cache with the same key is replaced in {@link #finish()}.
+     *
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache.
+     * @return the {@link ResultCache} to write the results.
+     * @throws IOException
+     *             if the files can not be created.
+     */
+    public static ResultCache create(File folder, String key)
+            throws IOException {
+        ResultCache cache = new ResultCache(folder, key);
+        cache.files.create(MAGIC, VERSION);
+        cache.out = cache.files.getOutput();
+        cache.images = cache.files.getStore();
+        return cache;
+    }
+
+    /**
+     * Open a complete cache.
+     *
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache.
+     * @return the {@link ResultCache} to read the results.
+     * @throws IOException
+     *             if the cache does not exist or has the wrong format.
+     */
+    public static ResultCache open(File folder, String key) throws IOException {
+        ResultCache cache = new ResultCache(folder, key);
+        cache.files.open(MAGIC, VERSION);
+        cache.in = cache.files.getInput();
+        cache.images = cache.files.getStore();
+        try {
+            cache.advance();
+        } catch (IOException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Append the objects found in a frame. Must be called in frame order, frames without objects
+     * can be left out.
+     *
+     * @param frame
+     *            the frame number.
+     * @param objects
+     *            the found {@link StreetObject}s, their images are written into the cache.
+     * @throws IOException
+     */
+    public void write(int frame, List<StreetObject> objects) throws IOException {
+        if (objects.isEmpty()) {
+            return;
+        }
+        out.writeBoolean(true);
+        out.writeInt(frame);
+        out.writeInt(objects.size());
+        for (StreetObject obj : objects) {
+            IplImage image = obj.getImage();
+            out.writeLong(image == null ? -1 : images.append(image));
+            out.writeUTF(obj.getType().name());
+            out.writeBoolean(obj.getPluginName() != null);
+            if (obj.getPluginName() != null) {
+                out.writeUTF(obj.getPluginName());
+            }
+            out.writeBoolean(obj.getCenter() != null);
+            if (obj.getCenter() != null) {
+                out.writeInt(obj.getCenter().x);
+                out.writeInt(obj.getCenter().y);
+            }
+        }
+    }
+
+    /**
+     * Read the objects found in a frame. Must be called in frame order, the objects of frames
+     * which are not asked for are skipped.
+     *
+     * @param frame
+     *            the frame number.
+     * @return the {@link StreetObject}s with their images in memory, empty if nothing was found.
+     * @throws IOException
+     *             if the cache is broken.
+     */
+    public LinkedList<StreetObject> read(int frame) throws IOException {
+        LinkedList<StreetObject> objects = new LinkedList<StreetObject>();
+        while (nextFrame <= frame) {
+            boolean load = nextFrame == frame;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long position = in.readLong();
+                Type type;
+                try {
+                    type = Type.valueOf(in.readUTF());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown type in result cache "
+                            + key, e);
+                }
+                String plugin = in.readBoolean() ? in.readUTF() : null;
+                Point center = in.readBoolean() ? new Point(in.readInt(),
+                        in.readInt()) : null;
+                if (!load) {
+                    continue;
+                }
+
+                StreetObject obj;
+                if (position >= 0) {
+                    IplImage image = images.load(position);
+                    obj = new StreetObject(image, type);
+                    NativeMemory.releaseImage(image);
+                } else {
+                    obj = new StreetObject();
+                    obj.setType(type);
+                }
+                obj.setPluginName(plugin);
+                obj.setCenter(center);
+                objects.add(obj);
+            }
+            advance();
+        }
+        return objects;
+    }
+
+    /**
+     * Read the number of the next frame with objects.
+     */
+    private void advance() throws IOException {
+        nextFrame = in.readBoolean() ? in.readInt() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Complete a written cache and replace an older cache with the same key.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        out.writeBoolean(false);
+        files.finish();
+    }
+
+    /**
+     * Close the cache. A written cache, which is not finished, is deleted.
+     */
+    public void close() {
+        files.close();
+    }
+}
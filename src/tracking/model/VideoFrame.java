@@ -0,0 +1,115 @@
+package tracking.model;
+
+import tracking.model.plugins.FrameContext;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * A single decoded frame of the video together with its position in the video.
+ *
+ * @author Philipp
+ */
+public class VideoFrame {
+
+    /**
+     * Position of the frame as {@link Integer}.
+     */
+    private int number;
+
+    /**
+     * The time in milliseconds of the frame in the video.
+     */
+    private double timestamp;
+
+    /**
+     * The frames per second rate from the video.
+     */
+    private double videoFPS;
+
+    /**
+     * The frame image. Owned by this object and borrowed from the {@link ImagePool}.
+     */
+    private IplImage image;
+
+    /**
+     * The {@link FrameContext} of the image, shared by all plugins.
+     */
+    private FrameContext context;
+
+    /**
+     * @param number
+     *            the position of the frame.
+     * @param timestamp
+     *            the time in msec.
+     * @param videoFPS
+     *            the frame rate of the video.
+     * @param image
+     *            the image of the frame, borrowed from the {@link ImagePool}. It is given back in
+     *            {@link #release()}.
+     */
+    public VideoFrame(int number, double timestamp, double videoFPS,
+            IplImage image) {
+        this.number = number;
+        this.timestamp = timestamp;
+        this.videoFPS = videoFPS;
+        this.image = image;
+        this.context = new FrameContext(image, number, timestamp, videoFPS);
+    }
+
+    /**
+     * Return the position of the frame.
+     *
+     * @return the frame number.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Return the time of the frame in msec.
+     *
+     * @return the timestamp.
+     */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return the frame rate of the video.
+     *
+     * @return the frames per second.
+     */
+    public double getVideoFPS() {
+        return videoFPS;
+    }
+
+    /**
+     * Return the image of the frame.
+     *
+     * @return the {@link IplImage}.
+     */
+    public IplImage getImage() {
+        return image;
+    }
+
+    /**
+     * Return the context of the frame with the images derived from it.
+     *
+     * @return the {@link FrameContext}, <code>null</code> after the frame is released.
+     */
+    public FrameContext getContext() {
+        return context;
+    }
+
+    /**
+     * Give the image of the frame and the images derived from it back to the {@link ImagePool}.
+     */
+    public void release() {
+        if (context != null) {
+            context.release();
+            context = null;
+        }
+        ImagePool.giveBack(image);
+        image = null;
+    }
+}
@@ -1,25 +1,44 @@
 package tracking.model;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
-import static com.googlecode.javacv.cpp.opencv_core.cvGetSize;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCopy;
 import static com.googlecode.javacv.cpp.opencv_highgui.CV_CAP_PROP_FPS;
 import static com.googlecode.javacv.cpp.opencv_highgui.CV_CAP_PROP_FRAME_COUNT;
 import static com.googlecode.javacv.cpp.opencv_highgui.CV_CAP_PROP_POS_FRAMES;
 import static com.googlecode.javacv.cpp.opencv_highgui.CV_CAP_PROP_POS_MSEC;
+import static com.googlecode.javacv.cpp.opencv_highgui.cvCreateFileCapture;
 import static com.googlecode.javacv.cpp.opencv_highgui.cvGetCaptureProperty;
 import static com.googlecode.javacv.cpp.opencv_highgui.cvQueryFrame;
 import static com.googlecode.javacv.cpp.opencv_highgui.cvReleaseCapture;
 import static com.googlecode.javacv.cpp.opencv_highgui.cvSetCaptureProperty;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import tracking.gui.VideoProcessorFrame;
+import tracking.model.Metrics.Counter;
+import tracking.model.Metrics.Stage;
+import tracking.model.plugins.CacheablePlugin;
+import tracking.model.plugins.FrameContext;
+import tracking.model.plugins.FrameDetection;
 import tracking.model.plugins.ObjectDetectionPlugin;
+import tracking.model.plugins.ParallelDetectionPlugin;
 import tracking.model.plugins.ResultObject;
+import tracking.model.plugins.StatefulPlugin;
 import tracking.model.plugins.StreetObject;
 
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
@@ -27,6 +46,12 @@ import com.googlecode.javacv.cpp.opencv_highgui.CvCapture;
 
 public class VideoProcessor extends Observable implements Runnable {
 
+    /**
+     * Number of detected frames a segment keeps ahead of the tracking step. A segment, whose
+     * buffer is full, waits until the tracking step reaches it.
+     */
+    private static final int SEGMENT_BUFFER = 64;
+
     /**
      * If <code>false</code> drawing in the video frame that is shown in the gui is deactivated.
      */
@@ -57,13 +82,107 @@ public class VideoProcessor extends Observable implements Runnable {
     /**
      * {@link Boolean} to stop the thread.
      */
-    private boolean running;
+    private volatile boolean running;
 
     /**
      * A {@link LinkedList} with the plugins for tracking objects in the video
      */
     private LinkedList<ObjectDetectionPlugin> plugins;
 
+    /**
+     * Number of worker threads for the detection step. If <code>1</code>, every frame is processed
+     * sequentially in the thread which runs the {@link VideoProcessor}.
+     */
+    private int workerThreads;
+
+    /**
+     * Number of threads for the detection step of the plugins on one frame. If <code>1</code>, the
+     * plugins detect one after another.
+     */
+    private int pluginThreads;
+
+    /**
+     * Executor which runs the detection step of the {@link ParallelDetectionPlugin}s on the same
+     * frame concurrently. Only set while the processor runs with more than one plugin thread.
+     */
+    private ExecutorService pluginExecutor;
+
+    /**
+     * Number of segments the video is split into. If more than <code>1</code>, the segments are
+     * decoded and detected concurrently, see {@link #setSegments(int)}.
+     */
+    private int segments;
+
+    /**
+     * The video {@link File}. Needed to open a capture for every segment.
+     */
+    private File videoFile;
+
+    /**
+     * Only every frameStride-th frame is analysed while nothing is found, see
+     * {@link #setFrameStride(int)}.
+     */
+    private int frameStride;
+
+    /**
+     * Number of frames without detections, after which the processor goes back to the frame
+     * stride.
+     */
+    private int strideCooldown;
+
+    /**
+     * Store for the images of the found street objects. <code>null</code> if they are kept in
+     * memory.
+     */
+    private DetectionStore detectionStore;
+
+    /**
+     * <code>true</code> while the frame stride mode analyses every frame.
+     */
+    private boolean strideDense;
+
+    /**
+     * Frames without detections since the frame stride mode analyses every frame.
+     */
+    private int strideEmptyFrames;
+
+    /**
+     * The first frame to process. Greater than <code>0</code>, if a run is resumed.
+     */
+    private int startFrame;
+
+    /**
+     * The checkpoint file, <code>null</code> if no checkpoints are written.
+     */
+    private File checkpointFile;
+
+    /**
+     * Minimum number of frames between two checkpoints.
+     */
+    private int checkpointInterval;
+
+    /**
+     * The frame of the last checkpoint.
+     */
+    private int lastCheckpoint;
+
+    /**
+     * Folder of the {@link ResultCache}s, <code>null</code> if no results are cached.
+     */
+    private File resultCacheFolder;
+
+    /**
+     * The cache of every plugin, which is loaded instead of running the plugin. <code>null</code>
+     * for the plugins which run.
+     */
+    private ResultCache[] cachedResults;
+
+    /**
+     * The cache of every plugin, into which its results are written. <code>null</code> for the
+     * plugins which are not recorded.
+     */
+    private ResultCache[] recordedResults;
+
     /**
      * @param video
      *            a video {@link File}
@@ -75,6 +194,13 @@ public class VideoProcessor extends Observable implements Runnable {
 
         this.plugins = plugins;
         this.drawIntoImage = true;
+        this.workerThreads = 1;
+        this.pluginThreads = 1;
+        this.segments = 1;
+        this.frameStride = 1;
+        this.strideCooldown = 15;
+        this.startFrame = 0;
+        this.lastCheckpoint = -1;
         this.running = true;
         this.actualFrame = 0;
         this.allStreetObjects = new LinkedList<StreetObject>();
@@ -84,7 +210,9 @@ public class VideoProcessor extends Observable implements Runnable {
     }
 
     /**
-     * Grab every frame from the video process it in all plugins one after another.
+     * Grab every frame from the video process it in all plugins one after another. If more than
+     * one worker thread is set, the frames are processed in the pipeline, see
+     * {@link #setWorkerThreads(int)}.
      */
     public void run() {
 
@@ -93,96 +221,1024 @@ public class VideoProcessor extends Observable implements Runnable {
 
         // HIER NUR REFERENZ AUF DEN GRABBER
 
-        IplImage sizeAndDepth = cvQueryFrame(capture);
+        // the first frame is only used for the image properties. Grab it anyway, so the frame
+        // numbers are the same in all processing modes.
+        cvQueryFrame(capture);
 
-        IplImage original = cvCreateImage(cvGetSize(sizeAndDepth),
-                sizeAndDepth.depth(), sizeAndDepth.nChannels());
-        IplImage drawable = cvCreateImage(cvGetSize(sizeAndDepth),
-                sizeAndDepth.depth(), sizeAndDepth.nChannels());
+        if (startFrame > 0) { // resumed, frame i is frame i + 1 of the video
+            cvSetCaptureProperty(capture, CV_CAP_PROP_POS_FRAMES,
+                    startFrame + 1);
+            System.out.println("Resume at frame " + startFrame);
+        }
 
         System.out.println("Strat Processing...");
         System.out.println("Frames to grab: " + lengthInFrames);
+        Metrics.reset();
 
-        // temporary found street objects
-        LinkedList<StreetObject> tempAllStreetObjList;
+        if (pluginThreads > 1) {
+            // the thread which detects a frame runs one plugin itself
+            pluginExecutor = Executors.newFixedThreadPool(pluginThreads - 1);
+        }
 
-        // -2 because lengthInFrames variies +/-2 sometimes..
-        for (int i = 0; i < lengthInFrames - 2 && running; i++) {
-//            Report.startProcess(); // XXX
+        openResultCaches();
+        boolean completed = false;
+        try {
+            if (segments > 1 && canRunSegmented()) {
+                runSegmented();
+            } else if (frameStride > 1 && allPluginsParallel("frame stride")) {
+                runStrided();
+            } else if (workerThreads > 1) {
+                runPipelined();
+            } else {
+                runSequential();
+            }
+            completed = running;
+        } finally {
+            if (pluginExecutor != null) {
+                pluginExecutor.shutdown();
+                pluginExecutor = null;
+            }
+            closeResultCaches(completed);
 
-            IplImage releaserOriginal = original;
-            original = cvCloneImage(cvQueryFrame(capture));
-            cvReleaseImage(releaserOriginal); // could not be referenced. clone image and release
-                                              // the original.
+            // notify observer processor has finished, also after a failure
+            setChanged();
+            notifyObservers(false);
 
-            IplImage releaserDrawable = drawable;
-            drawable = cvCloneImage(original);
-            cvReleaseImage(releaserDrawable);
+            cvReleaseCapture(capture);
+            System.out.print(Metrics.report());
 
-            tempAllStreetObjList = new LinkedList<StreetObject>();
+            // every image of the run should be back in the pool now
+            if (ImagePool.getBorrowedImages() > 0) {
+                System.err.println("Images not given back after processing. "
+                        + ImagePool.report());
+            }
+            ImagePool.clear();
+        }
+    }
+
+    /**
+     * Decode, detect and track every frame one after another in the calling thread.
+     */
+    private void runSequential() {
+
+        // -2 because lengthInFrames variies +/-2 sometimes..
+        for (int i = startFrame; i < lengthInFrames - 2 && running; i++) {
+            VideoFrame frame = grabFrame(capture, i);
+            if (frame == null) { // end of the video
+                break;
+            }
             actualFrame = i;
 
-            // go through all ImageObjectTracker plugins and get the resultObjects.
+            // without plugin threads the plugins process the whole frame one after another
+            FrameDetection[] detections = pluginExecutor != null ? detectFrame(frame)
+                    : null;
+            ResultObject result = processFrame(frame, detections);
+            frame.release();
+
+            publish(result);
+            checkpoint(i);
+        }
+    }
+
+    /**
+     * Decode every frame, but only analyse every frameStride-th frame while nothing is found. The
+     * skipped frames wait in a buffer. If the plugins find something in an analysed frame, the
+     * skipped frames before it are analysed too, so the trackers get all points of the sign. Then
+     * every frame is analysed until the plugins found nothing for strideCooldown frames.
+     * <p>
+     * The tracking step gets every frame in frame order, the frames that stay skipped with the
+     * empty detection of {@link ParallelDetectionPlugin#skipFrame(FrameContext)}.
+     */
+    private void runStrided() {
+
+        LinkedList<VideoFrame> skipped = new LinkedList<VideoFrame>();
+
+        // -2 because lengthInFrames variies +/-2 sometimes..
+        for (int i = startFrame; i < lengthInFrames - 2 && running; i++) {
+
+            VideoFrame frame = grabFrame(capture, i);
+            if (frame == null) { // end of the video
+                break;
+            }
+            if (!strideDense && skipped.size() < frameStride - 1) {
+                skipped.add(frame);
+                continue;
+            }
+
+            FrameDetection[] detections = detectFrame(frame);
+            boolean found = !isEmpty(detections);
+
+            // handle the skipped frames before this frame
+            for (VideoFrame skippedFrame : skipped) {
+                trackAndNotify(skippedFrame,
+                        found ? detectFrame(skippedFrame)
+                                : skipFrame(skippedFrame));
+            }
+            skipped.clear();
+
+            trackAndNotify(frame, detections);
+
+            if (found) {
+                strideDense = true;
+                strideEmptyFrames = 0;
+            } else if (strideDense && ++strideEmptyFrames >= strideCooldown) {
+                strideDense = false;
+                strideEmptyFrames = 0;
+            }
+            // no skipped frames are waiting, so the run can be resumed after this frame
+            checkpoint(i);
+        }
+
+        // the last skipped frames are only tracked
+        for (VideoFrame skippedFrame : skipped) {
+            if (running) {
+                trackAndNotify(skippedFrame, skipFrame(skippedFrame));
+            } else {
+                skippedFrame.release();
+            }
+        }
+    }
+
+    /**
+     * Run the tracking step on the frame, release it and notify the observers with the result.
+     *
+     * @param frame
+     *            the {@link VideoFrame}.
+     * @param detections
+     *            the detections of the frame.
+     */
+    private void trackAndNotify(VideoFrame frame, FrameDetection[] detections) {
+        actualFrame = frame.getNumber();
+        ResultObject result = processFrame(frame, detections);
+        frame.release();
+
+        publish(result);
+    }
+
+    /**
+     * Write a checkpoint after the frame, if a checkpoint file is set and the checkpoint interval
+     * has passed. Must be called after the frame is completely processed and published, so the
+     * images of all found objects are in the {@link DetectionStore}.
+     *
+     * @param frame
+     *            the last completely processed frame.
+     */
+    private void checkpoint(int frame) {
+        if (checkpointFile == null) {
+            return;
+        }
+        int frames = lastCheckpoint >= 0 ? frame - lastCheckpoint : frame
+                - startFrame + 1;
+        if (frames < checkpointInterval) {
+            return;
+        }
+        lastCheckpoint = frame;
+
+        for (StreetObject obj : allStreetObjects) {
+            if (!obj.isStored()) {
+                System.err.println("Street object in frame " + obj.getFrame()
+                        + " is not stored, no checkpoint written.");
+                return;
+            }
+        }
+
+        try {
+            byte[][] states = new byte[plugins.size()][];
+            int index = 0;
             for (ObjectDetectionPlugin plugin : plugins) {
+                if (plugin instanceof StatefulPlugin) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream out = new DataOutputStream(bytes);
+                    ((StatefulPlugin) plugin).writeState(out);
+                    out.flush();
+                    states[index] = bytes.toByteArray();
+                }
+                index++;
+            }
+
+            // the images have to be on the disk before the checkpoint points to them
+            detectionStore.sync();
+            new Checkpoint(frame, detectionStore.length(), strideDense,
+                    strideEmptyFrames, allStreetObjects, states)
+                    .write(checkpointFile);
+        } catch (IOException e) {
+            System.err.println("Could not write checkpoint after frame "
+                    + frame);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Notify the observers with the actual image and the found objects. Afterwards the images of
+     * the found objects are moved into the {@link DetectionStore}, if one is set.
+     *
+     * @param result
+     *            the {@link ResultObject} of the frame.
+     */
+    private void publish(ResultObject result) {
+        Metrics.count(Counter.FRAMES, 1);
+        setChanged();
+        notifyObservers(result);
+
+        if (detectionStore != null && result.getStreetObjects() != null) {
+            for (StreetObject obj : result.getStreetObjects()) {
+                obj.spill(detectionStore);
+            }
+        }
+    }
+
+    /**
+     * Return the empty detections of all plugins for a skipped frame.
+     *
+     * @param frame
+     *            the {@link VideoFrame}.
+     * @return an array with one empty {@link FrameDetection} for each plugin, <code>null</code>
+     *         for plugins whose results are cached.
+     */
+    private FrameDetection[] skipFrame(VideoFrame frame) {
+        FrameDetection[] detections = new FrameDetection[plugins.size()];
+        int index = 0;
+        for (ObjectDetectionPlugin plugin : plugins) {
+            if (!isCached(index)) {
+                detections[index] = ((ParallelDetectionPlugin) plugin)
+                        .skipFrame(frame.getContext());
+            }
+            index++;
+        }
+        return detections;
+    }
+
+    /**
+     * Check if no plugin detected something.
+     *
+     * @param detections
+     *            the detections of a frame.
+     * @return <code>true</code> if all detections are empty.
+     */
+    private static boolean isEmpty(FrameDetection[] detections) {
+        for (FrameDetection detection : detections) {
+            if (detection != null && !detection.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Run the frame pipeline. A decode thread grabs the frames and hands them to a pool of
+     * workers, which run the detection step of all {@link ParallelDetectionPlugin}s. The calling
+     * thread takes the frames in the order they were grabbed, waits for their detections and runs
+     * the tracking step of the plugins. So the stateful part of the plugins sees the frames in the
+     * same order as in the sequential mode.
+     */
+    private void runPipelined() {
+
+        final ExecutorService workers = Executors
+                .newFixedThreadPool(workerThreads);
+
+        // bounded, so the decoder can not run away from the workers
+        final BlockingQueue<PendingFrame> pending = new ArrayBlockingQueue<PendingFrame>(
+                2 * workerThreads);
+
+        Thread decoder = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                boolean interrupted = false;
+                try {
+                    // -2 because lengthInFrames variies +/-2 sometimes..
+                    for (int i = startFrame; i < lengthInFrames - 2
+                            && running; i++) {
+                        final VideoFrame frame = grabFrame(capture, i);
+                        if (frame == null) { // end of the video
+                            break;
+                        }
+                        Future<FrameDetection[]> detections = workers
+                                .submit(new Callable<FrameDetection[]>() {
+
+                                    @Override
+                                    public FrameDetection[] call() {
+                                        return detectFrame(frame);
+                                    }
+                                });
+                        // the tracking thread drains the queue, even after a failure
+                        interrupted |= putUninterruptibly(pending,
+                                new PendingFrame(frame, detections));
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Decoding failed");
+                    e.printStackTrace();
+                    running = false;
+                } finally {
+                    interrupted |= putUninterruptibly(pending, PendingFrame.END);
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "VideoProcessor decoder");
+        decoder.start();
+
+        boolean ended = false;
+        boolean interrupted = false;
+        // the frame taken from the queue, until the tracking step owns it
+        PendingFrame current = null;
+        try {
+            PendingFrame next;
+            while ((next = pending.take()) != PendingFrame.END) {
+                current = next;
+                VideoFrame frame = next.frame;
+                FrameDetection[] detections;
+                try {
+                    detections = next.detections.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Detection failed in frame "
+                            + frame.getNumber());
+                    e.getCause().printStackTrace();
+                    running = false;
+                    current = null;
+                    frame.release();
+                    break;
+                }
+                current = null;
+
+                actualFrame = frame.getNumber();
+                ResultObject result;
+                try {
+                    result = processFrame(frame, detections);
+                } finally {
+                    frame.release();
+                }
+
+                publish(result);
+                checkpoint(actualFrame);
+            }
+            ended = next == PendingFrame.END;
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (!ended) {
+                // stop the decoder and release the frames it already handed over, the later
+                // frames must not be tracked after a gap
+                running = false;
+                if (current != null) {
+                    interrupted |= discard(current);
+                }
+                interrupted |= drainPending(pending);
+            }
+            interrupted |= joinUninterruptibly(decoder);
+            workers.shutdown();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Take the frames of the pipeline up to its end without tracking them, after the tracking
+     * step stopped early. Detections which are still running are awaited, so no frame is
+     * released while a worker reads it. Needs <code>running</code> to be <code>false</code>, so
+     * the decoder stops.
+     *
+     * @param pending
+     *            the queue of the pipeline.
+     * @return <code>true</code> if the thread was interrupted meanwhile.
+     */
+    private static boolean drainPending(BlockingQueue<PendingFrame> pending) {
+        boolean interrupted = false;
+        while (true) {
+            PendingFrame next;
+            try {
+                next = pending.take();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                continue;
+            }
+            if (next == PendingFrame.END) {
+                return interrupted;
+            }
+            interrupted |= discard(next);
+        }
+    }
+
+    /**
+     * Release a frame of the pipeline, which is not tracked, and its detections. A running
+     * detection is awaited, one which did not start yet is cancelled.
+     *
+     * @param pending
+     *            the {@link PendingFrame}.
+     * @return <code>true</code> if the thread was interrupted meanwhile.
+     */
+    private static boolean discard(PendingFrame pending) {
+        boolean interrupted = false;
+        if (!pending.detections.cancel(false)) {
+            while (true) {
+                try {
+                    release(pending.detections.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // a failed detection releases its detections itself
+                    break;
+                }
+            }
+        }
+        pending.frame.release();
+        return interrupted;
+    }
+
+    /**
+     * Take the detected frames of a segment up to its end without tracking them and release
+     * their detections. Needs <code>running</code> to be <code>false</code>, so the segment stops.
+     *
+     * @param queue
+     *            the queue of the segment.
+     * @return <code>true</code> if the thread was interrupted meanwhile.
+     */
+    private static boolean drainDetected(BlockingQueue<DetectedFrame> queue) {
+        boolean interrupted = false;
+        while (true) {
+            DetectedFrame next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                continue;
+            }
+            if (next == DetectedFrame.END) {
+                return interrupted;
+            }
+            release(next.detections);
+        }
+    }
+
+    /**
+     * Release the detections of a frame, which are not tracked.
+     *
+     * @param detections
+     *            the detections, may contain <code>null</code>.
+     */
+    private static void release(FrameDetection[] detections) {
+        for (FrameDetection detection : detections) {
+            if (detection != null) {
+                detection.release();
+            }
+        }
+    }
+
+    /**
+     * Put an element into a queue, even if the thread is interrupted while waiting for space.
+     *
+     * @return <code>true</code> if the thread was interrupted meanwhile.
+     */
+    private static <T> boolean putUninterruptibly(BlockingQueue<T> queue,
+            T element) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(element);
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    /**
+     * Wait for a thread to end, even if the waiting thread is interrupted.
+     *
+     * @return <code>true</code> if the thread was interrupted meanwhile.
+     */
+    private static boolean joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    /**
+     * Split the frames into segments, which are decoded and detected concurrently. Every segment
+     * has its own {@link CvCapture} on the video file, seeked to the first frame of the segment.
+     * The calling thread runs the tracking step of the plugins and takes the segments one after
+     * another in frame order. So the tracks of the plugins continue over the segment boundaries
+     * and a sign near a cut is found only once, like in the sequential mode.
+     * <p>
+     * The frames are released right after the detection, only the small detections wait for the
+     * tracking step. So the plugins get no images in the tracking step and the
+     * {@link ResultObject}s have no draw image.
+     */
+    private void runSegmented() {
+
+        // -2 because lengthInFrames variies +/-2 sometimes..
+        int frames = (int) Math.max(0, Math.ceil(lengthInFrames - 2))
+                - startFrame;
+        int count = Math.max(1, Math.min(segments, frames));
+
+        List<BlockingQueue<DetectedFrame>> queues = new ArrayList<BlockingQueue<DetectedFrame>>();
+        Thread[] decoders = new Thread[count];
+
+        for (int k = 0; k < count; k++) {
+            final int start = startFrame + (int) ((long) frames * k / count);
+            final int end = startFrame + (int) ((long) frames * (k + 1) / count);
+            // the first segment uses the capture of the processor, which is at the first frame
+            final boolean first = k == 0;
+            final BlockingQueue<DetectedFrame> queue = new ArrayBlockingQueue<DetectedFrame>(
+                    SEGMENT_BUFFER);
+            queues.add(queue);
+
+            decoders[k] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    CvCapture segmentCapture = first ? capture : null;
+                    boolean interrupted = false;
+                    try {
+                        if (!first) {
+                            segmentCapture = cvCreateFileCapture(videoFile
+                                    .getPath());
+                            if (segmentCapture == null
+                                    || segmentCapture.isNull()) {
+                                throw new IllegalStateException(
+                                        "Could not open " + videoFile);
+                            }
+                            // frame i of the processor is frame i + 1 of the video, the first
+                            // frame is skipped in run()
+                            cvSetCaptureProperty(segmentCapture,
+                                    CV_CAP_PROP_POS_FRAMES, start + 1);
+                        }
+
+                        for (int i = start; i < end && running; i++) {
+                            VideoFrame frame = grabFrame(segmentCapture, i);
+                            if (frame == null) { // end of the video
+                                break;
+                            }
+                            FrameDetection[] detections;
+                            try {
+                                detections = detectFrame(frame);
+                            } finally {
+                                frame.release();
+                            }
+                            // the tracking thread drains the queue, even after a failure
+                            interrupted |= putUninterruptibly(queue,
+                                    new DetectedFrame(frame, detections));
+                        }
+                    } catch (RuntimeException e) {
+                        System.err.println("Processing of the segment from frame "
+                                + start + " failed");
+                        e.printStackTrace();
+                        running = false;
+                    } finally {
+                        if (!first && segmentCapture != null
+                                && !segmentCapture.isNull()) {
+                            cvReleaseCapture(segmentCapture);
+                        }
+                        interrupted |= putUninterruptibly(queue,
+                                DetectedFrame.END);
+                        if (interrupted) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }, "VideoProcessor segment " + k);
+            decoders[k].start();
+        }
+
+        // the segment the tracking step takes from
+        int k = 0;
+        boolean interrupted = false;
+        try {
+            for (; k < count; k++) {
+                BlockingQueue<DetectedFrame> queue = queues.get(k);
+                DetectedFrame next;
+                while ((next = queue.take()) != DetectedFrame.END) {
+                    if (!running) { // stopped, only release the waiting detections
+                        release(next.detections);
+                        continue;
+                    }
 
-                // local result object
-                ResultObject tempResObject = plugin.process(original, drawable);
+                    actualFrame = next.frame.getNumber();
+                    ResultObject result = processFrame(next.frame,
+                            next.detections);
 
-                // actualize drawable image for next plugin
-                if (tempResObject.getDrawImage() != null) {
+                    publish(result);
+                    checkpoint(actualFrame);
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (k < count) {
+                // stop the segments and release what they already detected, so none of them
+                // waits for space in its queue
+                running = false;
+                for (int j = k; j < count; j++) {
+                    interrupted |= drainDetected(queues.get(j));
+                }
+            }
+            for (Thread decoder : decoders) {
+                interrupted |= joinUninterruptibly(decoder);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Check if the video can be processed in segments. All plugins have to be
+     * {@link ParallelDetectionPlugin}s and the video file has to be set.
+     *
+     * @return <code>true</code> if {@link #runSegmented()} can be used.
+     */
+    private boolean canRunSegmented() {
+        if (videoFile == null) {
+            System.err.println("No video file set, segments are not used.");
+            return false;
+        }
+        return allPluginsParallel("segments");
+    }
+
+    /**
+     * Check if all plugins are {@link ParallelDetectionPlugin}s.
+     *
+     * @param mode
+     *            name of the processing mode for the error message.
+     * @return <code>true</code> if all plugins split detection and tracking.
+     */
+    private boolean allPluginsParallel(String mode) {
+        for (ObjectDetectionPlugin plugin : plugins) {
+            if (!(plugin instanceof ParallelDetectionPlugin)) {
+                System.err.println(plugin.getPluginName()
+                        + " can not detect separately, " + mode
+                        + " is not used.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Open the {@link ResultCache}s of the {@link CacheablePlugin}s, if a cache folder is set. A
+     * plugin with a complete cache for the video and its configuration does not run, its results
+     * are read from the cache. The results of the other plugins are recorded, unless the run is
+     * resumed. With a frame stride no cache is used, because the skipped frames depend on the
+     * detections of all plugins.
+     */
+    private void openResultCaches() {
+        cachedResults = null;
+        recordedResults = null;
+        if (resultCacheFolder == null) {
+            return;
+        }
+        if (videoFile == null) {
+            System.err.println("No video file set, results are not cached.");
+            return;
+        }
+        if (frameStride > 1) {
+            System.err.println("Results are not cached with a frame stride.");
+            return;
+        }
+        if (!resultCacheFolder.isDirectory() && !resultCacheFolder.mkdirs()) {
+            System.err.println("Could not create result cache folder "
+                    + resultCacheFolder);
+            return;
+        }
+        String video;
+        try {
+            video = Fingerprint.video(videoFile);
+        } catch (IOException e) {
+            System.err.println("Could not read video file, results are not cached.");
+            e.printStackTrace();
+            return;
+        }
+
+        cachedResults = new ResultCache[plugins.size()];
+        recordedResults = new ResultCache[plugins.size()];
+        int index = 0;
+        for (ObjectDetectionPlugin plugin : plugins) {
+            if (plugin instanceof CacheablePlugin) {
+                String key = ResultCache.key(video, (CacheablePlugin) plugin);
+                try {
+                    if (ResultCache.exists(resultCacheFolder, key)) {
+                        cachedResults[index] = ResultCache.open(
+                                resultCacheFolder, key);
+                        System.out.println("Results of "
+                                + plugin.getPluginName() + " "
+                                + plugin.getPluginID()
+                                + " are read from the cache.");
+                    } else if (startFrame == 0) {
+                        recordedResults[index] = ResultCache.create(
+                                resultCacheFolder, key);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not open result cache, "
+                            + plugin.getPluginName() + " "
+                            + plugin.getPluginID() + " runs.");
+                    e.printStackTrace();
+                }
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Close the {@link ResultCache}s. The recorded caches are only kept, if the whole video was
+     * processed.
+     *
+     * @param completed
+     *            <code>true</code> if the video was processed to its end.
+     */
+    private void closeResultCaches(boolean completed) {
+        if (cachedResults == null) {
+            return;
+        }
+        for (int i = 0; i < cachedResults.length; i++) {
+            if (cachedResults[i] != null) {
+                cachedResults[i].close();
+            }
+            if (recordedResults[i] != null) {
+                if (completed) {
+                    try {
+                        recordedResults[i].finish();
+                    } catch (IOException e) {
+                        System.err.println("Could not finish result cache of plugin "
+                                + i);
+                        e.printStackTrace();
+                    }
+                }
+                recordedResults[i].close();
+            }
+        }
+        cachedResults = null;
+        recordedResults = null;
+    }
+
+    /**
+     * Check if the results of a plugin are read from its {@link ResultCache}.
+     *
+     * @param index
+     *            the index of the plugin.
+     * @return <code>true</code> if the plugin does not run.
+     */
+    private boolean isCached(int index) {
+        return cachedResults != null && cachedResults[index] != null;
+    }
+
+    /**
+     * Read the results of a plugin for the frame from its {@link ResultCache}.
+     *
+     * @param index
+     *            the index of the plugin.
+     * @param frame
+     *            the {@link VideoFrame}.
+     * @return the {@link StreetObject}s of the frame.
+     */
+    private LinkedList<StreetObject> readCachedResults(int index,
+            VideoFrame frame) {
+        try {
+            return cachedResults[index].read(frame.getNumber());
+        } catch (IOException e) {
+            // the plugin did not run for the frames before, so it can not take over
+            throw new IllegalStateException(
+                    "Could not read result cache of plugin " + index + ".", e);
+        }
+    }
+
+    /**
+     * Write the results of a plugin for the frame into its {@link ResultCache}. If that fails, the
+     * results of the plugin are not recorded any more.
+     *
+     * @param index
+     *            the index of the plugin.
+     * @param frame
+     *            the {@link VideoFrame}.
+     * @param objects
+     *            the {@link StreetObject}s the plugin found in the frame.
+     */
+    private void recordResults(int index, VideoFrame frame,
+            List<StreetObject> objects) {
+        try {
+            recordedResults[index].write(frame.getNumber(), objects);
+        } catch (IOException e) {
+            System.err.println("Could not write result cache, results of plugin "
+                    + index + " are not recorded.");
+            e.printStackTrace();
+            recordedResults[index].close();
+            recordedResults[index] = null;
+        }
+    }
+
+    /**
+     * Grab the next frame from the capture.
+     *
+     * @param videoCapture
+     *            the {@link CvCapture} to grab from.
+     * @param number
+     *            the position of the frame.
+     * @return the {@link VideoFrame} or <code>null</code> at the end of the video. Has to be
+     *         released.
+     */
+    private VideoFrame grabFrame(CvCapture videoCapture, int number) {
+        long start = Metrics.start();
+        IplImage grabbed = cvQueryFrame(videoCapture);
+        if (grabbed == null || grabbed.isNull()) {
+            return null;
+        }
+        // could not be referenced. copy image, the capture owns the original.
+        IplImage image = ImagePool.borrowClone(grabbed);
+        Metrics.end(Stage.DECODE, start);
+        return new VideoFrame(number, cvGetCaptureProperty(videoCapture,
+                CV_CAP_PROP_POS_MSEC), cvGetCaptureProperty(videoCapture,
+                CV_CAP_PROP_FPS), image);
+    }
 
-                    // deallocate the reference from the image in drawable
-                    IplImage releaserDra = drawable;
-                    // clone image to release the tempResultObject
-                    drawable = cvCloneImage(tempResObject.getDrawImage());
-                    cvReleaseImage(releaserDra);
-                    tempResObject.releaseImage();
+    /**
+     * Run the detection step of all {@link ParallelDetectionPlugin}s on the frame. Called from the
+     * worker threads. If plugin threads are set, the plugins detect concurrently and the calling
+     * thread waits for the slowest one.
+     *
+     * @param frame
+     *            the {@link VideoFrame}.
+     * @return an array with one {@link FrameDetection} for each plugin, <code>null</code> for
+     *         plugins which are not a {@link ParallelDetectionPlugin} or whose results are cached.
+     */
+    private FrameDetection[] detectFrame(VideoFrame frame) {
+        FrameDetection[] detections = new FrameDetection[plugins.size()];
+        final FrameContext context = frame.getContext();
+        ExecutorService executor = pluginExecutor;
+
+        if (executor == null) {
+            int index = 0;
+            for (ObjectDetectionPlugin plugin : plugins) {
+                if (plugin instanceof ParallelDetectionPlugin && !isCached(index)) {
+                    detections[index] = ((ParallelDetectionPlugin) plugin)
+                            .detectFrame(context);
                 }
+                index++;
+            }
+            return detections;
+        }
 
-                // store StreetObjects
-                LinkedList<StreetObject> tempStreetObjects = tempResObject
-                        .getStreetObjects();
+        // fan out all plugins but the first one, the calling thread detects the first one itself
+        @SuppressWarnings("unchecked")
+        Future<FrameDetection>[] futures = new Future[plugins.size()];
+        int own = -1;
+        int index = 0;
+        for (ObjectDetectionPlugin plugin : plugins) {
+            if (plugin instanceof ParallelDetectionPlugin && !isCached(index)) {
+                final ParallelDetectionPlugin parallel = (ParallelDetectionPlugin) plugin;
+                if (own < 0) {
+                    own = index;
+                } else {
+                    futures[index] = executor
+                            .submit(new Callable<FrameDetection>() {
 
-                if (tempStreetObjects != null && !tempStreetObjects.isEmpty()) {
-                    // set the actual frame porsition in every street object.
-                    for (StreetObject obj : tempStreetObjects) {
-                        obj.setFrame(i);
-                        obj.setTimestamp(cvGetCaptureProperty(capture,
-                                CV_CAP_PROP_POS_MSEC));
-                        obj.setVideoFPS(cvGetCaptureProperty(capture,
-                                CV_CAP_PROP_FPS));
+                                @Override
+                                public FrameDetection call() {
+                                    return parallel.detectFrame(context);
+                                }
+                            });
+                }
+            }
+            index++;
+        }
+
+        Throwable failure = null;
+        if (own >= 0) {
+            try {
+                detections[own] = ((ParallelDetectionPlugin) plugins.get(own))
+                        .detectFrame(context);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        // wait for all plugins, even if one failed, because they read the frame
+        boolean interrupted = false;
+        for (int i = 0; i < futures.length; i++) {
+            if (futures[i] == null) {
+                continue;
+            }
+            while (true) {
+                try {
+                    detections[i] = futures[i].get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
                     }
-                    tempAllStreetObjList.addAll(tempStreetObjects);
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
 
+        if (failure != null) {
+            for (FrameDetection detection : detections) {
+                if (detection != null) {
+                    detection.release();
                 }
             }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new IllegalStateException("Plugin detection failed.",
+                    failure);
+        }
+        return detections;
+    }
 
-            ResultObject result;
+    /**
+     * Process the frame in all plugins one after another and collect the found street objects.
+     * Must be called in frame order. If the image of the frame is already released, only the
+     * tracking step of the plugins runs and nothing is drawn.
+     *
+     * @param frame
+     *            the {@link VideoFrame}.
+     * @param detections
+     *            the detections from {@link #detectFrame(VideoFrame)} or <code>null</code>, if all
+     *            plugins have to process the whole frame.
+     * @return the {@link ResultObject} for the observers.
+     */
+    private ResultObject processFrame(VideoFrame frame,
+            FrameDetection[] detections) {
+
+        IplImage original = frame.getImage();
+        IplImage drawable = original == null ? null : ImagePool
+                .borrowClone(original);
 
-            if (drawIntoImage) {
-                result = new ResultObject(tempAllStreetObjList, drawable);
+        // temporary found street objects
+        LinkedList<StreetObject> tempAllStreetObjList = new LinkedList<StreetObject>();
 
+        // go through all ImageObjectTracker plugins and get the resultObjects.
+        int index = 0;
+        for (ObjectDetectionPlugin plugin : plugins) {
+
+            // local result object
+            ResultObject tempResObject;
+            if (isCached(index)) {
+                tempResObject = new ResultObject(readCachedResults(index,
+                        frame), null);
+            } else if (detections != null && detections[index] != null) {
+                tempResObject = ((ParallelDetectionPlugin) plugin).trackFrame(
+                        detections[index], original, drawable);
+            } else if (frame.getContext() != null) {
+                tempResObject = plugin.process(frame.getContext(), drawable);
             } else {
-                result = new ResultObject(tempAllStreetObjList, original);
+                tempResObject = plugin.process(original, drawable);
             }
 
-            // add found street objects to allStreetObjects list
-            allStreetObjects.addAll(tempAllStreetObjList);
+            // actualize drawable image for next plugin
+            if (tempResObject.getDrawImage() != null) {
+                // copy into the drawable, so the image of the tempResultObject can be given back
+                cvCopy(tempResObject.getDrawImage(), drawable);
+                tempResObject.releaseImage();
+            }
 
-            // notify observer with the actual image and the found objects
-            setChanged();
-            notifyObservers(result);
-            // Report.endProcess(); // XXX
+            // store StreetObjects
+            LinkedList<StreetObject> tempStreetObjects = tempResObject
+                    .getStreetObjects();
+
+            if (tempStreetObjects != null && !tempStreetObjects.isEmpty()) {
+                // set the actual frame porsition in every street object.
+                for (StreetObject obj : tempStreetObjects) {
+                    obj.setFrame(frame.getNumber());
+                    obj.setTimestamp(frame.getTimestamp());
+                    obj.setVideoFPS(frame.getVideoFPS());
+                }
+                tempAllStreetObjList.addAll(tempStreetObjects);
+
+                if (recordedResults != null && recordedResults[index] != null) {
+                    recordResults(index, frame, tempStreetObjects);
+                }
+            }
+            index++;
         }
 
-        // notify observer processor has finished
-        setChanged();
-        notifyObservers(false);
+        ResultObject result;
 
-        cvReleaseCapture(capture);
-        cvReleaseImage(original);
-        cvReleaseImage(drawable);
+        if (drawIntoImage) {
+            result = new ResultObject(tempAllStreetObjList, drawable);
 
+        } else {
+            result = new ResultObject(tempAllStreetObjList, original);
+        }
+        ImagePool.giveBack(drawable);
+
+        // add found street objects to allStreetObjects list
+        allStreetObjects.addAll(tempAllStreetObjList);
+
+        return result;
     }
 
     /**
@@ -223,6 +1279,233 @@ public class VideoProcessor extends Observable implements Runnable {
         return plugins;
     }
 
+    /**
+     * Set the number of worker threads for the detection step. With more than one thread the
+     * detection step of the {@link ParallelDetectionPlugin}s runs concurrently for several frames.
+     * The found {@link StreetObject}s are the same as with one thread.
+     * 
+     * @param threads
+     *            number of threads, <code>1</code> for sequential processing.
+     */
+    public void setWorkerThreads(int threads) {
+        workerThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Return the number of worker threads for the detection step.
+     * 
+     * @return the number of threads.
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Set the number of threads for the detection step of the plugins on one frame. With more
+     * than one thread all {@link ParallelDetectionPlugin}s detect the same frame concurrently and
+     * draw their results one after another in the tracking step. Must be set before the processor
+     * is started.
+     * 
+     * @param threads
+     *            number of threads, <code>1</code> to run the plugins one after another.
+     */
+    public void setPluginThreads(int threads) {
+        pluginThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Return the number of threads for the detection step of the plugins on one frame.
+     * 
+     * @return the number of threads.
+     */
+    public int getPluginThreads() {
+        return pluginThreads;
+    }
+
+    /**
+     * Set the number of segments for long videos. With more than one segment, the video is split
+     * into this number of frame ranges, which are decoded and detected concurrently. The tracking
+     * still runs in frame order, so the found {@link StreetObject}s are the same as in the
+     * sequential mode, apart from seeking inaccuracies of the video codec. Only works if all
+     * plugins are {@link ParallelDetectionPlugin}s and the video file is set. No images are shown
+     * in this mode.
+     * 
+     * @param segments
+     *            number of segments, <code>1</code> to process the video in one piece.
+     */
+    public void setSegments(int segments) {
+        this.segments = Math.max(1, segments);
+    }
+
+    /**
+     * Return the number of segments.
+     * 
+     * @return the number of segments.
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * Set the frame stride. With a stride greater than <code>1</code>, only every stride-th frame
+     * is analysed while the plugins find nothing. When they find something, the skipped frames
+     * before are analysed too and every frame is analysed until nothing is found for the stride
+     * cooldown. Only works if all plugins are {@link ParallelDetectionPlugin}s. The frame stride
+     * is used instead of the worker threads, the segments are used instead of the frame stride.
+     * 
+     * @param stride
+     *            the stride, <code>1</code> to analyse every frame.
+     */
+    public void setFrameStride(int stride) {
+        this.frameStride = Math.max(1, stride);
+    }
+
+    /**
+     * Return the frame stride.
+     * 
+     * @return the stride.
+     */
+    public int getFrameStride() {
+        return frameStride;
+    }
+
+    /**
+     * Set the number of frames without detections, after which the frame stride is used again.
+     * 
+     * @param frames
+     *            number of frames.
+     */
+    public void setStrideCooldown(int frames) {
+        this.strideCooldown = Math.max(1, frames);
+    }
+
+    /**
+     * Return the number of frames without detections, after which the frame stride is used
+     * again.
+     * 
+     * @return number of frames.
+     */
+    public int getStrideCooldown() {
+        return strideCooldown;
+    }
+
+    /**
+     * Set the {@link DetectionStore} for the images of the found {@link StreetObject}s. The images
+     * are written into the store after the observers got them and are released. Without a store
+     * all images are kept in memory.
+     * 
+     * @param store
+     *            the {@link DetectionStore} or <code>null</code>.
+     */
+    public void setDetectionStore(DetectionStore store) {
+        this.detectionStore = store;
+    }
+
+    /**
+     * Return the {@link DetectionStore} for the images of the found {@link StreetObject}s.
+     * 
+     * @return the {@link DetectionStore} or <code>null</code>, if the images are kept in memory.
+     */
+    public DetectionStore getDetectionStore() {
+        return detectionStore;
+    }
+
+    /**
+     * Cache the results of the {@link CacheablePlugin}s in a folder, see {@link ResultCache}. A
+     * plugin whose configuration did not change since the last run on the same video does not run
+     * again, its results are read from the cache. Only the changed plugins detect and track. Needs
+     * the video file, see {@link #setVideoFile(File)}.
+     * 
+     * @param folder
+     *            the cache folder, <code>null</code> to cache nothing.
+     */
+    public void setResultCache(File folder) {
+        this.resultCacheFolder = folder;
+    }
+
+    /**
+     * Return the folder of the {@link ResultCache}s.
+     * 
+     * @return the folder, <code>null</code> if nothing is cached.
+     */
+    public File getResultCache() {
+        return resultCacheFolder;
+    }
+
+    /**
+     * Write checkpoints while processing, so a run can be resumed with {@link #resume(File)} after
+     * a crash. Needs a {@link DetectionStore}. The plugins are only resumed with their state, if
+     * they are {@link StatefulPlugin}s.
+     * 
+     * @param file
+     *            the checkpoint file or <code>null</code> for no checkpoints.
+     * @param interval
+     *            minimum number of frames between two checkpoints.
+     */
+    public void setCheckpoint(File file, int interval) {
+        if (file != null && detectionStore == null) {
+            throw new IllegalStateException(
+                    "Checkpoints need a detection store.");
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = Math.max(1, interval);
+    }
+
+    /**
+     * Resume a run from a checkpoint. The {@link DetectionStore} of the crashed run has to be set,
+     * images written after the checkpoint are removed from it. The found street objects and the
+     * state of the plugins are restored and the processing starts with the frame after the
+     * checkpoint. The plugins must be the same as in the crashed run. Must be called before the
+     * processor is started.
+     * 
+     * @param file
+     *            the checkpoint file.
+     * @throws IOException
+     *             if the checkpoint can not be read or does not fit the plugins.
+     */
+    public void resume(File file) throws IOException {
+        if (detectionStore == null) {
+            throw new IllegalStateException("Resuming needs a detection store.");
+        }
+        Checkpoint checkpoint = Checkpoint.read(file, detectionStore);
+
+        byte[][] states = checkpoint.getPluginStates();
+        if (states.length != plugins.size()) {
+            throw new IOException("Checkpoint has " + states.length
+                    + " plugins, but the processor has " + plugins.size());
+        }
+        int index = 0;
+        for (ObjectDetectionPlugin plugin : plugins) {
+            if (states[index] != null) {
+                if (!(plugin instanceof StatefulPlugin)) {
+                    throw new IOException(plugin.getPluginName()
+                            + " can not restore its state.");
+                }
+                ((StatefulPlugin) plugin).readState(new DataInputStream(
+                        new ByteArrayInputStream(states[index])));
+            }
+            index++;
+        }
+
+        detectionStore.truncate(checkpoint.getStoreLength());
+        allStreetObjects = checkpoint.getStreetObjects();
+        strideDense = checkpoint.isStrideDense();
+        strideEmptyFrames = checkpoint.getStrideEmptyFrames();
+        startFrame = checkpoint.getFrame() + 1;
+        actualFrame = startFrame;
+        lastCheckpoint = checkpoint.getFrame();
+    }
+
+    /**
+     * Set the video {@link File}, from which the segments are read.
+     * 
+     * @param video
+     *            the video file of the capture.
+     */
+    public void setVideoFile(File video) {
+        this.videoFile = video;
+    }
+
     /**
      * Enable global drawing.
      * 
@@ -241,4 +1524,46 @@ public class VideoProcessor extends Observable implements Runnable {
     public boolean getDrawIntoImage() {
         return drawIntoImage;
     }
+
+    /**
+     * A grabbed frame waiting in the pipeline for its detections.
+     */
+    private static class PendingFrame {
+
+        /**
+         * Marks the end of the video.
+         */
+        private static final PendingFrame END = new PendingFrame(null, null);
+
+        private final VideoFrame frame;
+
+        private final Future<FrameDetection[]> detections;
+
+        private PendingFrame(VideoFrame frame,
+                Future<FrameDetection[]> detections) {
+            this.frame = frame;
+            this.detections = detections;
+        }
+    }
+
+    /**
+     * A frame of a segment together with its detections. The image of the frame is already
+     * released.
+     */
+    private static class DetectedFrame {
+
+        /**
+         * Marks the end of a segment.
+         */
+        private static final DetectedFrame END = new DetectedFrame(null, null);
+
+        private final VideoFrame frame;
+
+        private final FrameDetection[] detections;
+
+        private DetectedFrame(VideoFrame frame, FrameDetection[] detections) {
+            this.frame = frame;
+            this.detections = detections;
+        }
+    }
 }
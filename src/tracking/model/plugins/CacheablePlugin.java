@@ -0,0 +1,20 @@
+package tracking.model.plugins;
+
+/**
+ * An {@link ObjectDetectionPlugin} whose results only depend on the video and its configuration.
+ * The {@link tracking.model.VideoProcessor} keeps the results of such a plugin in a
+ * {@link tracking.model.ResultCache} and loads them instead of running the plugin again, as long
+ * as the video and the configuration are the same.
+ *
+ * @author Philipp
+ */
+public interface CacheablePlugin extends ObjectDetectionPlugin {
+
+    /**
+     * Return a fingerprint of the effective configuration. Every value which changes the found
+     * objects has to be part of it, values which only change the speed should not.
+     *
+     * @return the fingerprint, see {@link tracking.model.Fingerprint}.
+     */
+    public String getConfigFingerprint();
+}
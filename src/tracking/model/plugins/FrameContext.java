@@ -0,0 +1,176 @@
+package tracking.model.plugins;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import tracking.model.ImagePool;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * A video frame together with the images derived from it. All plugins, which process the frame,
+ * get the same context, so a derived image is computed by the first plugin which asks for it and
+ * reused by all others. Thread safe: plugins may ask for the same image concurrently, it is still
+ * computed only once.
+ * <p>
+ * The original and the derived images must not be modified. They are valid until the context is
+ * released.
+ *
+ * @author Philipp
+ */
+public class FrameContext {
+
+    /**
+     * The video frame.
+     */
+    private final IplImage original;
+
+    /**
+     * Position of the frame in the video, -1 if not known.
+     */
+    private final int number;
+
+    /**
+     * The time of the frame in msec.
+     */
+    private final double timestamp;
+
+    /**
+     * The frame rate of the video.
+     */
+    private final double videoFPS;
+
+    /**
+     * The derived images of the frame.
+     */
+    private final ConcurrentMap<ImageDerivation, FutureTask<IplImage>> images = new ConcurrentHashMap<ImageDerivation, FutureTask<IplImage>>();
+
+    /**
+     * @param original
+     *            the video frame. It stays owned by the caller.
+     */
+    public FrameContext(IplImage original) {
+        this(original, -1, 0, 0);
+    }
+
+    /**
+     * @param original
+     *            the video frame. It stays owned by the caller.
+     * @param number
+     *            the position of the frame in the video.
+     * @param timestamp
+     *            the time of the frame in msec.
+     * @param videoFPS
+     *            the frame rate of the video.
+     */
+    public FrameContext(IplImage original, int number, double timestamp,
+            double videoFPS) {
+        this.original = original;
+        this.number = number;
+        this.timestamp = timestamp;
+        this.videoFPS = videoFPS;
+    }
+
+    /**
+     * Return the video frame.
+     *
+     * @return the original {@link IplImage}.
+     */
+    public IplImage getOriginal() {
+        return original;
+    }
+
+    /**
+     * Return the position of the frame in the video.
+     *
+     * @return the frame number, -1 if not known.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Return the time of the frame in msec.
+     *
+     * @return the timestamp.
+     */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return the frame rate of the video.
+     *
+     * @return the frames per second.
+     */
+    public double getVideoFPS() {
+        return videoFPS;
+    }
+
+    /**
+     * Return the derived image. It is computed on the first call for this frame.
+     *
+     * @param derivation
+     *            the {@link ImageDerivation}.
+     * @return the derived {@link IplImage}. Must not be modified or released.
+     */
+    public IplImage getImage(final ImageDerivation derivation) {
+        FutureTask<IplImage> task = images.get(derivation);
+        if (task == null) {
+            FutureTask<IplImage> created = new FutureTask<IplImage>(
+                    new Callable<IplImage>() {
+
+                        @Override
+                        public IplImage call() {
+                            return derivation.derive(original);
+                        }
+                    });
+            task = images.putIfAbsent(derivation, created);
+            if (task == null) {
+                task = created;
+                task.run();
+            }
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Could not derive image.",
+                    e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Give all derived images back to the {@link ImagePool}. Call it after all plugins are done
+     * with the frame.
+     */
+    public void release() {
+        for (FutureTask<IplImage> task : images.values()) {
+            try {
+                if (task.isDone()) {
+                    ImagePool.giveBack(task.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                // nothing was derived
+            }
+        }
+        images.clear();
+    }
+}
@@ -0,0 +1,27 @@
+package tracking.model.plugins;
+
+/**
+ * Raw, not yet tracked result of the detection step of a {@link ParallelDetectionPlugin} for one
+ * video frame. The content is only known to the plugin that created it.
+ *
+ * @author Philipp
+ */
+public interface FrameDetection {
+
+    /**
+     * Release all native resources (e.g. image crops) held by this detection. Called if the
+     * detection is discarded without being handed to
+     * {@link ParallelDetectionPlugin#trackFrame(FrameDetection, com.googlecode.javacv.cpp.opencv_core.IplImage, com.googlecode.javacv.cpp.opencv_core.IplImage)}
+     * .
+     */
+    public void release();
+
+    /**
+     * Return if nothing was detected in the frame. The {@link tracking.model.VideoProcessor}
+     * analyses every frame again, as soon as one plugin detects something.
+     *
+     * @return <code>true</code> if the frame contains no objects for the tracking step.
+     */
+    public boolean isEmpty();
+
+}
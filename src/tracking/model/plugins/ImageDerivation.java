@@ -0,0 +1,26 @@
+package tracking.model.plugins;
+
+import tracking.model.ImagePool;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Computes an image from the original frame, e.g. a greyscale or a downscaled copy. A
+ * {@link FrameContext} computes every derivation only once per frame, derivations are equal if
+ * they give the same image, so they are the key of the cache. Derivations with parameters have to
+ * implement <code>equals</code> and <code>hashCode</code>.
+ *
+ * @author Philipp
+ */
+public interface ImageDerivation {
+
+    /**
+     * Compute the derived image. Must be thread safe.
+     *
+     * @param original
+     *            the video frame. Must not be modified.
+     * @return the derived image, borrowed from the {@link ImagePool}. It is given back when the
+     *         {@link FrameContext} is released.
+     */
+    public IplImage derive(IplImage original);
+}
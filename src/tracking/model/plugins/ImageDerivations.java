@@ -0,0 +1,82 @@
+package tracking.model.plugins;
+
+import static com.googlecode.javacv.cpp.opencv_core.IPL_DEPTH_8U;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_BGR2GRAY;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_INTER_AREA;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvCvtColor;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvResize;
+
+import tracking.model.ImagePool;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Common {@link ImageDerivation}s for all plugins.
+ *
+ * @author Philipp
+ */
+public class ImageDerivations {
+
+    /**
+     * The frame as 8 bit greyscale image.
+     */
+    public static final ImageDerivation GRAY = new ImageDerivation() {
+
+        @Override
+        public IplImage derive(IplImage original) {
+            IplImage gray = ImagePool.borrow(original.width(),
+                    original.height(), IPL_DEPTH_8U, 1);
+            cvCvtColor(original, gray, CV_BGR2GRAY);
+            return gray;
+        }
+    };
+
+    private ImageDerivations() {
+    }
+
+    /**
+     * Return the derivation of a downscaled copy of the frame.
+     *
+     * @param divisor
+     *            width and height are divided by it, e.g. 2 for half the size.
+     * @return the {@link ImageDerivation}.
+     */
+    public static ImageDerivation scaled(int divisor) {
+        return new Scaled(divisor);
+    }
+
+    /**
+     * Downscaled copy of the frame. Equal for the same divisor.
+     */
+    private static class Scaled implements ImageDerivation {
+
+        private final int divisor;
+
+        private Scaled(int divisor) {
+            if (divisor < 1) {
+                throw new IllegalArgumentException("Divisor must be at least 1.");
+            }
+            this.divisor = divisor;
+        }
+
+        @Override
+        public IplImage derive(IplImage original) {
+            IplImage scaled = ImagePool.borrow(
+                    Math.max(1, original.width() / divisor),
+                    Math.max(1, original.height() / divisor),
+                    original.depth(), original.nChannels());
+            cvResize(original, scaled, CV_INTER_AREA);
+            return scaled;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Scaled && ((Scaled) obj).divisor == divisor;
+        }
+
+        @Override
+        public int hashCode() {
+            return divisor;
+        }
+    }
+}
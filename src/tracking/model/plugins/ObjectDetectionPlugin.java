@@ -62,6 +62,19 @@ public interface ObjectDetectionPlugin {
      */
     public ResultObject process(IplImage original, IplImage drawable);
 
+    /**
+     * Process the frame of the {@link FrameContext} like {@link #process(IplImage, IplImage)}.
+     * Images derived from the frame, e.g. a greyscale copy, should be taken from the context, so
+     * they are computed only once for all plugins.
+     * 
+     * @param context
+     *            the {@link FrameContext} with the original image.
+     * @param drawable
+     *            the image in which the plugin can draw.
+     * @return the {@link ResultObject}.
+     */
+    public ResultObject process(FrameContext context, IplImage drawable);
+
     /**
      * Set the {@link Boolean} that allows the plugin to draw into an {@link IplImage}.
      * 
@@ -77,4 +90,10 @@ public interface ObjectDetectionPlugin {
      */
     public boolean getDrawIntoImage();
 
+    /**
+     * Release the native memory of the plugin, e.g. images and memory storages. Called when the
+     * plugin is not used anymore.
+     */
+    public void release();
+
 }
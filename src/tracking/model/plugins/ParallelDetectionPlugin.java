@@ -0,0 +1,59 @@
+package tracking.model.plugins;
+
+import tracking.model.VideoProcessor;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * An {@link ObjectDetectionPlugin} whose processing is split into a stateless detection step and a
+ * stateful tracking step. The {@link VideoProcessor} may run the detection step of several frames
+ * concurrently, the tracking step is always called strictly in frame order.
+ * <p>
+ * {@link #process(IplImage, IplImage)} must give the same result as
+ * <code>trackFrame(detectFrame(new FrameContext(original)), original, drawable)</code>.
+ *
+ * @author Philipp
+ */
+public interface ParallelDetectionPlugin extends ObjectDetectionPlugin {
+
+    /**
+     * Detect objects in the frame. This method must be thread safe, it is called from several
+     * threads at the same time. It may only read the original and the derived images of the
+     * context.
+     *
+     * @param context
+     *            the {@link FrameContext} of the video frame, shared by all plugins.
+     * @return the {@link FrameDetection} which is handed to
+     *         {@link #trackFrame(FrameDetection, IplImage, IplImage)} later.
+     */
+    public FrameDetection detectFrame(FrameContext context);
+
+    /**
+     * Return the detection for a frame which is not analysed, e.g. when the
+     * {@link VideoProcessor} skips frames. It has to be empty, the tracking step still gets it in
+     * frame order.
+     *
+     * @param context
+     *            the {@link FrameContext} of the video frame. Its images are not needed.
+     * @return an empty {@link FrameDetection}.
+     */
+    public FrameDetection skipFrame(FrameContext context);
+
+    /**
+     * Process the detections of one frame. Called in frame order from a single thread. Works like
+     * {@link #process(IplImage, IplImage)}.
+     *
+     * @param detection
+     *            the {@link FrameDetection} of this frame, created by
+     *            {@link #detectFrame(FrameContext)}.
+     * @param original
+     *            the video frame. <code>null</code>, if the frame is already released.
+     * @param drawable
+     *            the image in which the plugin can draw. <code>null</code>, if the frame is
+     *            already released.
+     * @return the {@link ResultObject}.
+     */
+    public ResultObject trackFrame(FrameDetection detection, IplImage original,
+            IplImage drawable);
+
+}
@@ -0,0 +1,32 @@
+package tracking.model.plugins;
+
+import javax.swing.JDialog;
+
+import com.googlecode.javacv.cpp.opencv_highgui.CvCapture;
+
+/**
+ * The application an {@link ObjectDetectionPlugin} runs in. The gui implements it to give the
+ * plugins the chosen video and their editors. Plugins must work without a host, e.g. in the batch
+ * processing.
+ * 
+ * @author Philipp
+ */
+public interface PluginHost {
+
+    /**
+     * Return the capture of the chosen video.
+     * 
+     * @return the {@link CvCapture} or <code>null</code>, if no video is chosen yet.
+     */
+    public CvCapture getVideoCapture();
+
+    /**
+     * Create the editor {@link JDialog} for the plugin.
+     * 
+     * @param plugin
+     *            the {@link ObjectDetectionPlugin} to edit.
+     * @return the editor {@link JDialog} or <code>null</code>, if there is no editor for the
+     *         plugin.
+     */
+    public JDialog createEditorDialog(ObjectDetectionPlugin plugin);
+}
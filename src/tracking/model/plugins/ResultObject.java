@@ -1,10 +1,9 @@
 package tracking.model.plugins;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
-
 import java.util.LinkedList;
 
+import tracking.model.ImagePool;
+
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
 
 /**
@@ -21,11 +20,16 @@ public class ResultObject {
     public ResultObject(LinkedList<StreetObject> streetObjects,
             IplImage drawImage) {
         this.streetObjects = streetObjects;
-        this.draImage = cvCloneImage(drawImage);
+        this.draImage = drawImage == null ? null : ImagePool
+                .borrowClone(drawImage);
     }
 
+    /**
+     * Give the draw image back to the {@link ImagePool}. Must be called exactly once.
+     */
     public void releaseImage() {
-        cvReleaseImage(draImage);
+        ImagePool.giveBack(draImage);
+        draImage = null;
     }
 
     public LinkedList<StreetObject> getStreetObjects() {
@@ -0,0 +1,34 @@
+package tracking.model.plugins;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * An {@link ObjectDetectionPlugin} which keeps state between the frames, e.g. open tracks. The
+ * {@link tracking.model.VideoProcessor} writes the state into its checkpoints and restores it,
+ * when a run is resumed.
+ * 
+ * @author Philipp
+ */
+public interface StatefulPlugin extends ObjectDetectionPlugin {
+
+    /**
+     * Write the state after the last processed frame.
+     * 
+     * @param out
+     *            the stream to write to.
+     * @throws IOException
+     */
+    public void writeState(DataOutputStream out) throws IOException;
+
+    /**
+     * Restore the state written by {@link #writeState(DataOutputStream)}. The next processed
+     * frame is the frame after the checkpoint.
+     * 
+     * @param in
+     *            the stream to read from.
+     * @throws IOException
+     */
+    public void readState(DataInputStream in) throws IOException;
+}
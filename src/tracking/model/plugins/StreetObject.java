@@ -1,13 +1,14 @@
 package tracking.model.plugins;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvGetImageROI;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvGetRectSubPix;
 
 import java.awt.Point;
+import java.io.IOException;
+
+import tracking.model.DetectionStore;
+import tracking.model.NativeMemory;
 
 import com.googlecode.javacv.cpp.opencv_core.CvPoint2D32f;
 import com.googlecode.javacv.cpp.opencv_core.CvRect;
@@ -16,10 +17,22 @@ import com.googlecode.javacv.cpp.opencv_core.IplImage;
 public class StreetObject {
 
     /**
-     * An image from the detected object
+     * An image from the detected object. <code>null</code> while the image is only in the
+     * {@link DetectionStore}.
      */
     private IplImage image;
 
+    /**
+     * The store with the image of the object, <code>null</code> if the image is only kept in
+     * memory.
+     */
+    private DetectionStore store;
+
+    /**
+     * Position of the image in the store.
+     */
+    private long storePosition = -1;
+
     /**
      * In which frame of the video the object is located
      */
@@ -97,8 +110,9 @@ public class StreetObject {
         // only save the roi region of the image
         CvRect roi = cvGetImageROI(trafficsignimage);
 
-        this.image = cvCreateImage(cvSize(roi.width(), roi.height()),
-                trafficsignimage.depth(), trafficsignimage.nChannels());
+        this.image = NativeMemory.createImage(
+                cvSize(roi.width(), roi.height()), trafficsignimage.depth(),
+                trafficsignimage.nChannels());
 
         // save the ROI area of trafficsignimage into image
         cvGetRectSubPix(trafficsignimage, image, new CvPoint2D32f(
@@ -132,8 +146,9 @@ public class StreetObject {
         // only save the roi region of the image
         CvRect roi = cvGetImageROI(trafficsignimage);
 
-        this.image = cvCreateImage(cvSize(roi.width(), roi.height()),
-                trafficsignimage.depth(), trafficsignimage.nChannels());
+        this.image = NativeMemory.createImage(
+                cvSize(roi.width(), roi.height()), trafficsignimage.depth(),
+                trafficsignimage.nChannels());
 
         // save the ROI area of trafficsignimage into image
         cvGetRectSubPix(trafficsignimage, image, new CvPoint2D32f(
@@ -155,21 +170,88 @@ public class StreetObject {
         this.frame = -1;
         this.timestamp = -1;
         this.videoFPS = -1;
-        this.image = cvCloneImage(trafficsignimage);
+        this.image = NativeMemory.cloneImage(trafficsignimage);
         this.plugin = null;
         this.center = null;
         this.type = type;
     }
 
     /**
-     * Return the {@link IplImage} of the {@link StreetObject}
+     * Return the {@link IplImage} of the {@link StreetObject}. If the image is in the
+     * {@link DetectionStore}, it is loaded and kept until {@link #releaseImage()} is called.
      * 
-     * @return the {@link IplImage}
+     * @return the {@link IplImage}, <code>null</code> if it could not be loaded.
      */
-    public IplImage getImage() {
+    public synchronized IplImage getImage() {
+        if (image == null && store != null) {
+            try {
+                image = store.load(storePosition);
+            } catch (IOException e) {
+                System.err.println("Could not load image of street object in frame "
+                        + frame);
+                e.printStackTrace();
+            }
+        }
         return image;
     }
 
+    /**
+     * Write the image into the {@link DetectionStore} and release it. It is loaded again by
+     * {@link #getImage()}. If writing fails, the image stays in memory.
+     * 
+     * @param store
+     *            the {@link DetectionStore}.
+     */
+    public synchronized void spill(DetectionStore store) {
+        if (this.store != null || image == null) {
+            return;
+        }
+        try {
+            storePosition = store.append(image);
+            this.store = store;
+            NativeMemory.releaseImage(image);
+            image = null;
+        } catch (IOException e) {
+            System.err.println("Could not store image of street object in frame "
+                    + frame);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Set the position of the image in the {@link DetectionStore}, e.g. when the object is
+     * restored from a checkpoint. An image in memory is released.
+     * 
+     * @param store
+     *            the {@link DetectionStore}.
+     * @param position
+     *            the position from {@link DetectionStore#append(IplImage)}.
+     */
+    public synchronized void setStored(DetectionStore store, long position) {
+        releaseImage();
+        this.store = store;
+        this.storePosition = position;
+    }
+
+    /**
+     * Return the position of the image in the {@link DetectionStore}.
+     * 
+     * @return the position, -1 if the image is not stored.
+     */
+    public long getStorePosition() {
+        return storePosition;
+    }
+
+    /**
+     * Return if the image is in a {@link DetectionStore}. The image of a stored object should be
+     * released after usage.
+     * 
+     * @return <code>true</code> if the image is stored.
+     */
+    public boolean isStored() {
+        return store != null;
+    }
+
     /**
      * Return the timestamp of the street object in ms as double.
      * 
@@ -187,6 +269,15 @@ public class StreetObject {
         }
     }
 
+    /**
+     * Return the timestamp in msec as it was set.
+     * 
+     * @return timestamp, -1 if not set.
+     */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
     /**
      * Return timestamp of the street object in sec as Integer.
      * 
@@ -291,8 +382,9 @@ public class StreetObject {
         // only save the roi region of the image
         CvRect roi = cvGetImageROI(image);
 
-        this.image = cvCreateImage(cvSize(roi.width(), roi.height()),
-                image.depth(), image.nChannels());
+        this.image = NativeMemory.createImage(
+                cvSize(roi.width(), roi.height()), image.depth(),
+                image.nChannels());
 
         // save the ROI area of trafficsignimage into image
         cvGetRectSubPix(image, image,
@@ -318,9 +410,13 @@ public class StreetObject {
     }
 
     /**
-     * Release the local {@link IplImage} image.
+     * Release the local {@link IplImage} image. If the image is in the {@link DetectionStore}, it
+     * can be loaded again with {@link #getImage()}.
      */
-    public void releaseImage() {
-        cvReleaseImage(this.image);
+    public synchronized void releaseImage() {
+        if (image != null) {
+            NativeMemory.releaseImage(this.image);
+            image = null;
+        }
     }
 }
@@ -0,0 +1,152 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.CV_WHOLE_SEQ;
+import static com.googlecode.javacv.cpp.opencv_core.cvCountNonZero;
+import static com.googlecode.javacv.cpp.opencv_core.cvResetImageROI;
+import static com.googlecode.javacv.cpp.opencv_core.cvSetImageROI;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_CLOCKWISE;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvArcLength;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvContourArea;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvConvexHull2;
+
+import tracking.model.Metrics.Counter;
+
+import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.CvRect;
+import com.googlecode.javacv.cpp.opencv_core.CvSeq;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Cascade of cheap tests on a contour, which rejects blobs before the expensive Hough shape
+ * detection. The checks run from the cheapest to the most expensive and the first failing check
+ * rejects the blob:
+ * <ol>
+ * <li>aspect ratio of the bounding box, the longer side by the shorter side</li>
+ * <li>fill ratio, the contour area by the area of the bounding box</li>
+ * <li>compactness, 4 pi area / perimeter^2, 1 for a circle, 0.6 for a triangle</li>
+ * <li>convexity, the contour area by the area of its convex hull</li>
+ * <li>color coverage, the part of the bounding box, which is in the color ranges of the filter
+ * </li>
+ * </ol>
+ * A threshold of 0 disables its check. An instance holds a copy of the thresholds and can be used
+ * by one thread at a time.
+ *
+ * @author Philipp
+ */
+public class BlobFilter {
+
+    /**
+     * The checks of the cascade in the order they are tested, with the {@link Counter} of the
+     * rejected blobs.
+     */
+    public static enum Check {
+        ASPECT(Counter.REJECTED_ASPECT),
+        FILL(Counter.REJECTED_FILL),
+        COMPACTNESS(Counter.REJECTED_COMPACTNESS),
+        CONVEXITY(Counter.REJECTED_CONVEXITY),
+        COLOR(Counter.REJECTED_COLOR);
+
+        private final Counter counter;
+
+        private Check(Counter counter) {
+            this.counter = counter;
+        }
+
+        /**
+         * Return the {@link Counter} of the blobs rejected by this check.
+         *
+         * @return
+         */
+        public Counter getCounter() {
+            return counter;
+        }
+    }
+
+    private final double maxAspect;
+
+    private final double minFill;
+
+    private final double minCompactness;
+
+    private final double minConvexity;
+
+    private final double minColor;
+
+    /**
+     * Create a filter with the thresholds of the checks.
+     *
+     * @param values
+     *            maximum aspect ratio, minimum fill ratio, minimum compactness, minimum convexity
+     *            and minimum color coverage. 0 disables a check.
+     */
+    public BlobFilter(double[] values) {
+        this.maxAspect = values[0];
+        this.minFill = values[1];
+        this.minCompactness = values[2];
+        this.minConvexity = values[3];
+        this.minColor = values[4];
+    }
+
+    /**
+     * Test a blob.
+     *
+     * @param contour
+     *            the contour of the blob
+     * @param box
+     *            the bounding box of the contour
+     * @param mask
+     *            the filtered image, which is not blurred, for the color coverage. The ROI is set
+     *            while counting and reset afterwards.
+     * @param storage
+     *            memory storage for the convex hull
+     * @return the failed {@link Check} or <code>null</code>, if the blob passed all checks.
+     */
+    public Check test(CvSeq contour, CvRect box, IplImage mask,
+            CvMemStorage storage) {
+        double width = box.width();
+        double height = box.height();
+        if (width == 0 || height == 0) {
+            return Check.ASPECT;
+        }
+
+        if (maxAspect > 0
+                && Math.max(width, height) / Math.min(width, height) > maxAspect) {
+            return Check.ASPECT;
+        }
+
+        double area = 0;
+        if (minFill > 0 || minCompactness > 0 || minConvexity > 0) {
+            area = Math.abs(cvContourArea(contour, CV_WHOLE_SEQ, 0));
+        }
+
+        if (minFill > 0 && area / (width * height) < minFill) {
+            return Check.FILL;
+        }
+
+        if (minCompactness > 0) {
+            double perimeter = cvArcLength(contour, CV_WHOLE_SEQ, 1);
+            if (perimeter == 0
+                    || 4 * Math.PI * area / (perimeter * perimeter) < minCompactness) {
+                return Check.COMPACTNESS;
+            }
+        }
+
+        if (minConvexity > 0) {
+            CvSeq hull = cvConvexHull2(contour, storage, CV_CLOCKWISE, 1);
+            double hullArea = Math.abs(cvContourArea(hull, CV_WHOLE_SEQ, 0));
+            if (hullArea == 0 || area / hullArea < minConvexity) {
+                return Check.CONVEXITY;
+            }
+        }
+
+        if (minColor > 0) {
+            cvSetImageROI(mask, box);
+            int inRange = cvCountNonZero(mask);
+            cvResetImageROI(mask);
+            if (inRange / (width * height) < minColor) {
+                return Check.COLOR;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvGetImageROI;
+
+import java.nio.ByteBuffer;
+
+import com.googlecode.javacv.cpp.opencv_core.CvRect;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Quality of the crop of a sign, the trackers keep the crop with the best score of a track. The
+ * biggest crop is often the most blurred one, when the sign passes the camera. So the score is the
+ * product of
+ * <ul>
+ * <li>size, the square root of the area</li>
+ * <li>sharpness, the variance of the Laplacian of the gray crop, mapped to 0..1 with
+ * var / (var + {@link #SHARPNESS_HALF})</li>
+ * <li>centredness, 0.5 for a crop at the border of the frame, which is often cut, up to 1 for a
+ * crop with a margin of a quarter of its size</li>
+ * </ul>
+ * The crop is read in plain Java from the ROI of the frame, without native allocations.
+ *
+ * @author Philipp
+ */
+public class CropScore {
+
+    /**
+     * Variance of the Laplacian, which gives half of the sharpness. Blurred crops are below, sharp
+     * crops above.
+     */
+    public static final double SHARPNESS_HALF = 100;
+
+    private CropScore() {
+    }
+
+    /**
+     * Score the ROI of a frame.
+     *
+     * @param frame
+     *            the frame with the crop as ROI, 8 bit with 1 or 3 channels (BGR).
+     * @return the score, 0 for an empty ROI.
+     */
+    public static double score(IplImage frame) {
+        CvRect roi = cvGetImageROI(frame);
+        int width = roi.width();
+        int height = roi.height();
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+
+        double size = Math.sqrt(width * height);
+
+        int margin = Math.min(Math.min(roi.x(), roi.y()), Math.min(
+                frame.width() - roi.x() - width, frame.height() - roi.y()
+                        - height));
+        double centred = 0.5 + 0.5 * Math.min(1.0,
+                Math.max(0, margin) / (0.25 * Math.max(width, height)));
+
+        double variance = laplacianVariance(frame, roi);
+        double sharpness = variance / (variance + SHARPNESS_HALF);
+
+        return size * sharpness * centred;
+    }
+
+    /**
+     * Variance of the 4-neighbour Laplacian of the gray ROI, without the border pixels of the ROI.
+     */
+    static double laplacianVariance(IplImage frame, CvRect roi) {
+        int width = roi.width();
+        int height = roi.height();
+        if (width < 3 || height < 3) {
+            return 0;
+        }
+
+        // gray values of the ROI
+        int channels = frame.nChannels();
+        int step = frame.widthStep();
+        ByteBuffer buffer = frame.getByteBuffer();
+        byte[] row = new byte[width * channels];
+        int[] gray = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            buffer.position((roi.y() + y) * step + roi.x() * channels);
+            buffer.get(row);
+            for (int x = 0; x < width; x++) {
+                if (channels >= 3) {
+                    int i = x * channels;
+                    // BGR, integer weights of the luma
+                    gray[y * width + x] = (29 * (row[i] & 0xff) + 150
+                            * (row[i + 1] & 0xff) + 77 * (row[i + 2] & 0xff)) >> 8;
+                } else {
+                    gray[y * width + x] = row[x * channels] & 0xff;
+                }
+            }
+        }
+
+        double sum = 0;
+        double squares = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                int laplacian = gray[i - 1] + gray[i + 1] + gray[i - width]
+                        + gray[i + width] - 4 * gray[i];
+                sum += laplacian;
+                squares += laplacian * laplacian;
+            }
+        }
+        int n = (width - 2) * (height - 2);
+        double mean = sum / n;
+        return squares / n - mean * mean;
+    }
+}
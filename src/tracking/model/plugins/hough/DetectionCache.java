@@ -0,0 +1,250 @@
+package tracking.model.plugins.hough;
+
+import java.awt.Point;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+
+import tracking.model.CacheFiles;
+import tracking.model.DetectionStore;
+import tracking.model.NativeMemory;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Cache of the raw detections of a {@link HoughSignRecognition}, so the tracking step can run
+ * again without decoding and detecting the video, e.g. with other tracker values. For every
+ * tracked frame the cache holds its position in the video and its {@link TrackingPoint}s with
+ * center, type, size of the bounding box, {@link CropScore} and the position of the crop.
+ * <p>
+ * A cache are two files in the cache folder, named after its key: KEY.frames with the frames and
+ * KEY.crops, a {@link DetectionStore} with the crops. The {@link CacheFiles} write them under
+ * temporary names and rename them in {@link #finish()}, so an aborted run leaves no cache behind.
+ *
+ * @author Philipp
+ */
+public class DetectionCache {
+
+    /**
+     * Marks a frames file.
+     */
+    private static final int MAGIC = 0x47504443;
+
+    /**
+     * Version of the file format, part of the key.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Suffix of the frames file.
+     */
+    public static final String FRAMES = ".frames";
+
+    /**
+     * Suffix of the crops file.
+     */
+    public static final String CROPS = ".crops";
+
+    private String key;
+
+    private CacheFiles files;
+
+    private DataOutputStream out;
+
+    private DataInputStream in;
+
+    private DetectionStore crops;
+
+    /**
+     * The types by their index in the file.
+     */
+    private Type[] types;
+
+    /**
+     * Number of written or read frames.
+     */
+    private int frames;
+
+    private DetectionCache(File folder, String key) {
+        this.key = key;
+        this.files = new CacheFiles(folder, key, FRAMES, CROPS);
+    }
+
+    /**
+     * Check if a complete cache exists.
+     *
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache, see
+     *            {@link HoughSignRecognition#getCacheKey(String, String)}.
+     * @return <code>true</code> if the cache can be opened.
+     */
+    public static boolean exists(File folder, String key) {
+        return new CacheFiles(folder, key, FRAMES, CROPS).exist();
+    }
+
+    /**
+     * Create a new cache, an existing cache with the same key is replaced in {@link #finish()}.
+     *
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache.
+     * @return the {@link DetectionCache} to write the frames.
+     * @throws IOException
+     *             if the files can not be created.
+     */
+    public static DetectionCache create(File folder, String key)
+            throws IOException {
+        DetectionCache cache = new DetectionCache(folder, key);
+        cache.files.create(MAGIC, VERSION);
+        cache.out = cache.files.getOutput();
+        cache.crops = cache.files.getStore();
+        cache.types = Type.values();
+        try {
+            cache.out.writeByte(cache.types.length);
+            for (Type type : cache.types) {
+                cache.out.writeUTF(type.name());
+            }
+        } catch (IOException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Open a complete cache.
+     *
+     * @param folder
+     *            the cache folder.
+     * @param key
+     *            the key of the cache.
+     * @return the {@link DetectionCache} to read the frames.
+     * @throws IOException
+     *             if the cache does not exist or has the wrong format.
+     */
+    public static DetectionCache open(File folder, String key)
+            throws IOException {
+        DetectionCache cache = new DetectionCache(folder, key);
+        cache.files.open(MAGIC, VERSION);
+        cache.in = cache.files.getInput();
+        cache.crops = cache.files.getStore();
+        try {
+            cache.types = new Type[cache.in.readUnsignedByte()];
+            for (int i = 0; i < cache.types.length; i++) {
+                try {
+                    cache.types[i] = Type.valueOf(cache.in.readUTF());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown type in detection cache "
+                            + key, e);
+                }
+            }
+        } catch (IOException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Append the tracking points of the next tracked frame. The crops are encoded into the crops
+     * file, the tracking points keep their images.
+     *
+     * @param detection
+     *            the {@link HoughFrameDetection} before it is tracked.
+     * @throws IOException
+     */
+    public void writeFrame(HoughFrameDetection detection) throws IOException {
+        out.writeBoolean(true);
+        out.writeInt(detection.getNumber());
+        out.writeDouble(detection.getTimestamp());
+        out.writeDouble(detection.getVideoFPS());
+        out.writeShort(detection.getTrackingPoints().size());
+        for (TrackingPoint point : detection.getTrackingPoints()) {
+            IplImage image = point.getImage();
+            out.writeInt((int) point.getX());
+            out.writeInt((int) point.getY());
+            out.writeByte(point.getType().ordinal());
+            out.writeShort(image.width());
+            out.writeShort(image.height());
+            out.writeDouble(point.getScore());
+            out.writeLong(crops.append(image));
+        }
+        frames++;
+    }
+
+    /**
+     * Read the next frame with the crops of its tracking points.
+     *
+     * @return the {@link HoughFrameDetection} of the frame, <code>null</code> after the last
+     *         frame.
+     * @throws IOException
+     *             if the cache is broken.
+     */
+    public HoughFrameDetection readFrame() throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        HoughFrameDetection detection = new HoughFrameDetection(in.readInt(),
+                in.readDouble(), in.readDouble());
+        try {
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                Point center = new Point(in.readInt(), in.readInt());
+                Type type = types[in.readUnsignedByte()];
+                int width = in.readUnsignedShort();
+                int height = in.readUnsignedShort();
+                double score = in.readDouble();
+                IplImage image = crops.load(in.readLong());
+                if (image.width() != width || image.height() != height) {
+                    NativeMemory.releaseImage(image);
+                    throw new IOException("Crop of frame "
+                            + detection.getNumber() + " has the wrong size.");
+                }
+                // the box is not needed, the trackers only use the center
+                detection.addTrackingPoint(new TrackingPoint(center, type,
+                        image, score));
+            }
+        } catch (IOException | RuntimeException e) {
+            detection.release();
+            if (e instanceof EOFException) {
+                throw new IOException("Detection cache " + key
+                        + " ends in frame " + detection.getNumber(), e);
+            }
+            throw e;
+        }
+        frames++;
+        return detection;
+    }
+
+    /**
+     * Complete a written cache and replace an older cache with the same key.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        out.writeBoolean(false);
+        files.finish();
+    }
+
+    /**
+     * Close the cache. A written cache, which is not finished, is deleted.
+     */
+    public void close() {
+        files.close();
+    }
+
+    /**
+     * Return the number of written or read frames.
+     *
+     * @return the frames.
+     */
+    public int getFrames() {
+        return frames;
+    }
+}
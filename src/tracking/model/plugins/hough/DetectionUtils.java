@@ -1,6 +1,5 @@
 package tracking.model.plugins.hough;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvGetImageROI;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvGetRectSubPix;
@@ -8,6 +7,7 @@ import static com.googlecode.javacv.cpp.opencv_imgproc.cvGetRectSubPix;
 import java.awt.Point;
 import java.util.LinkedList;
 
+import tracking.model.NativeMemory;
 import tracking.model.plugins.StreetObject;
 
 import com.googlecode.javacv.cpp.opencv_core.CvPoint2D32f;
@@ -43,8 +43,8 @@ public class DetectionUtils {
         // get the roi region of the image
         CvRect roi = cvGetImageROI(src);
 
-        IplImage dst = cvCreateImage(cvSize(roi.width(), roi.height()),
-                src.depth(), src.nChannels());
+        IplImage dst = NativeMemory.createImage(
+                cvSize(roi.width(), roi.height()), src.depth(), src.nChannels());
 
         // save the ROI area of src to dst
         cvGetRectSubPix(src, dst,
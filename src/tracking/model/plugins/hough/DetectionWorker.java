@@ -0,0 +1,89 @@
+package tracking.model.plugins.hough;
+
+import java.util.LinkedList;
+
+import tracking.model.NativeMemory;
+import tracking.model.plugins.hough.colorfilter.ColorFilter;
+
+import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.CvScalar;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Mutable state of one detection run of the {@link HoughSignRecognition}. A worker is only used
+ * by one thread at a time, so frames can be detected concurrently with one worker per thread.
+ *
+ * @author Philipp
+ */
+class DetectionWorker {
+
+    /**
+     * The {@link ColorFilter} with the images of the worker.
+     */
+    private ColorFilter cFilter;
+
+    /**
+     * Memory storage for cvFindContours method. Cleared for every frame.
+     */
+    private CvMemStorage mem;
+
+    /**
+     * The {@link ShapeDetection} for the blobs, which are detected in the calling thread.
+     */
+    private ShapeDetection shapeDetection;
+
+    /**
+     * Create a new worker for frames with the size of the original image.
+     *
+     * @param original
+     *            a video frame.
+     * @param lowScalars
+     * @param highScalars
+     */
+    DetectionWorker(IplImage original, LinkedList<CvScalar> lowScalars,
+            LinkedList<CvScalar> highScalars) {
+        this.cFilter = new ColorFilter(original);
+        this.cFilter.setLows(lowScalars);
+        this.cFilter.setHighs(highScalars);
+        this.mem = NativeMemory.createStorage();
+        this.shapeDetection = new ShapeDetection();
+    }
+
+    /**
+     * Return the {@link ColorFilter} of the worker.
+     *
+     * @return
+     */
+    ColorFilter getColorFilter() {
+        return cFilter;
+    }
+
+    /**
+     * Return the memory storage for the contours.
+     *
+     * @return
+     */
+    CvMemStorage getStorage() {
+        return mem;
+    }
+
+    /**
+     * Return the {@link ShapeDetection} of the worker.
+     *
+     * @return
+     */
+    ShapeDetection getShapeDetection() {
+        return shapeDetection;
+    }
+
+    /**
+     * Release the images of the color filter, the memory storage and the shape detection.
+     */
+    void release() {
+        cFilter.release();
+        NativeMemory.releaseStorage(mem);
+        shapeDetection.release();
+        mem = null;
+        shapeDetection = null;
+    }
+}
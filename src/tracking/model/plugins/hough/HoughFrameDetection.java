@@ -0,0 +1,200 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.CV_AA;
+import static com.googlecode.javacv.cpp.opencv_core.CV_FONT_HERSHEY_SIMPLEX;
+import static com.googlecode.javacv.cpp.opencv_core.cvInitFont;
+import static com.googlecode.javacv.cpp.opencv_core.cvPoint;
+import static com.googlecode.javacv.cpp.opencv_core.cvPutText;
+import static com.googlecode.javacv.cpp.opencv_core.cvRectangle;
+
+import java.awt.Rectangle;
+import java.util.LinkedList;
+
+import tracking.model.plugins.FrameContext;
+import tracking.model.plugins.FrameDetection;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.CvFont;
+import com.googlecode.javacv.cpp.opencv_core.CvScalar;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * The detections of the {@link HoughSignRecognition} in one frame: the {@link TrackingPoint}s for
+ * the {@link SignTracker} and the checked blobs, which are drawn into the output image.
+ *
+ * @author Philipp
+ */
+public class HoughFrameDetection implements FrameDetection {
+
+    /**
+     * Tracking points of the recognized signs.
+     */
+    private LinkedList<TrackingPoint> trackingPoints;
+
+    /**
+     * Bounding boxes of all blobs checked in the shape detection.
+     */
+    private LinkedList<Rectangle> blobs;
+
+    /**
+     * The recognized {@link Type} of each blob in blobs.
+     */
+    private LinkedList<Type> blobTypes;
+
+    /**
+     * Position of the frame in the video, -1 if not known.
+     */
+    private int number;
+
+    /**
+     * The time of the frame in msec.
+     */
+    private double timestamp;
+
+    /**
+     * The frame rate of the video.
+     */
+    private double videoFPS;
+
+    /**
+     * Create an empty {@link HoughFrameDetection} for a frame at an unknown position.
+     */
+    public HoughFrameDetection() {
+        this(-1, 0, 0);
+    }
+
+    /**
+     * Create an empty {@link HoughFrameDetection} for the frame of the context.
+     *
+     * @param context
+     *            the {@link FrameContext} with the position of the frame.
+     */
+    public HoughFrameDetection(FrameContext context) {
+        this(context.getNumber(), context.getTimestamp(), context
+                .getVideoFPS());
+    }
+
+    /**
+     * Create an empty {@link HoughFrameDetection}, e.g. for a frame read from the
+     * {@link DetectionCache}.
+     *
+     * @param number
+     *            the position of the frame in the video.
+     * @param timestamp
+     *            the time of the frame in msec.
+     * @param videoFPS
+     *            the frame rate of the video.
+     */
+    public HoughFrameDetection(int number, double timestamp, double videoFPS) {
+        this.trackingPoints = new LinkedList<TrackingPoint>();
+        this.blobs = new LinkedList<Rectangle>();
+        this.blobTypes = new LinkedList<Type>();
+        this.number = number;
+        this.timestamp = timestamp;
+        this.videoFPS = videoFPS;
+    }
+
+    /**
+     * Return the position of the frame in the video.
+     *
+     * @return the frame number, -1 if not known.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Return the time of the frame in msec.
+     *
+     * @return the timestamp.
+     */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return the frame rate of the video.
+     *
+     * @return the frames per second.
+     */
+    public double getVideoFPS() {
+        return videoFPS;
+    }
+
+    /**
+     * Add a blob that went through the shape detection.
+     *
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param type
+     *            the recognized {@link Type}, {@link Type#NOT_SPECIFIED} if it is no sign.
+     */
+    public void addBlob(int x, int y, int width, int height, Type type) {
+        blobs.add(new Rectangle(x, y, width, height));
+        blobTypes.add(type);
+    }
+
+    /**
+     * Add the {@link TrackingPoint} of a recognized sign.
+     *
+     * @param point
+     */
+    public void addTrackingPoint(TrackingPoint point) {
+        trackingPoints.add(point);
+    }
+
+    /**
+     * Return the tracking points of the recognized signs.
+     *
+     * @return the {@link LinkedList} of {@link TrackingPoint}s.
+     */
+    public LinkedList<TrackingPoint> getTrackingPoints() {
+        return trackingPoints;
+    }
+
+    /**
+     * Draw rectangles around all checked blobs and write the type above recognized signs.
+     *
+     * @param drawable
+     *            the rgb {@link IplImage} to draw in.
+     */
+    public void draw(IplImage drawable) {
+        CvFont font = null; // font for text printing
+        for (int i = 0; i < blobs.size(); i++) {
+            Rectangle box = blobs.get(i);
+            Type type = blobTypes.get(i);
+            boolean detected = type != Type.NOT_SPECIFIED;
+
+            if (detected) {
+                if (font == null) {
+                    font = new CvFont(10);
+                    cvInitFont(font, CV_FONT_HERSHEY_SIMPLEX, 1.0, 1.0, 0, 2,
+                            CV_AA);
+                }
+                // write text above recognized signs
+                cvPutText(drawable, type.name(), cvPoint(box.x, box.y - 5),
+                        font, CvScalar.RED);
+            }
+
+            // draw recangles around the blobs
+            cvRectangle(drawable, cvPoint(box.x, box.y), cvPoint(box.x
+                    + box.width, box.y + box.height),
+                    detected ? CvScalar.RED : CvScalar.GREEN, 1, 0, 0);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return trackingPoints.isEmpty();
+    }
+
+    @Override
+    public void release() {
+        for (TrackingPoint point : trackingPoints) {
+            point.releaseImage();
+        }
+        trackingPoints.clear();
+    }
+}
@@ -1,13 +1,7 @@
 package tracking.model.plugins.hough;
 
-import static com.googlecode.javacv.cpp.opencv_core.CV_AA;
-import static com.googlecode.javacv.cpp.opencv_core.CV_FONT_HERSHEY_SIMPLEX;
-import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
-import static com.googlecode.javacv.cpp.opencv_core.cvInitFont;
+import static com.googlecode.javacv.cpp.opencv_core.cvClearMemStorage;
 import static com.googlecode.javacv.cpp.opencv_core.cvPoint;
-import static com.googlecode.javacv.cpp.opencv_core.cvPutText;
-import static com.googlecode.javacv.cpp.opencv_core.cvRectangle;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
 import static com.googlecode.javacv.cpp.opencv_core.cvResetImageROI;
 import static com.googlecode.javacv.cpp.opencv_core.cvSetImageROI;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
@@ -17,23 +11,41 @@ import static com.googlecode.javacv.cpp.opencv_imgproc.blur;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvBoundingRect;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvFindContours;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.swing.JDialog;
 
-import tracking.gui.MainFrame;
-import tracking.gui.plugins.hough.colorfilter.ColorFilterPanel;
-import tracking.gui.plugins.hough.colorfilter.HoughEditorFrame;
+import tracking.model.Fingerprint;
+import tracking.model.ImagePool;
+import tracking.model.Metrics;
+import tracking.model.Metrics.Counter;
+import tracking.model.Metrics.Stage;
+import tracking.model.plugins.CacheablePlugin;
+import tracking.model.plugins.FrameContext;
+import tracking.model.plugins.FrameDetection;
 import tracking.model.plugins.ObjectDetectionPlugin;
+import tracking.model.plugins.ParallelDetectionPlugin;
+import tracking.model.plugins.PluginHost;
+import tracking.model.plugins.StatefulPlugin;
 import tracking.model.plugins.ResultObject;
 import tracking.model.plugins.StreetObject;
 import tracking.model.plugins.StreetObject.Type;
+import tracking.model.plugins.hough.ShapeDetection.CircleEngine;
+import tracking.model.plugins.hough.ShapeDetection.PolygonEngine;
 import tracking.model.plugins.hough.colorfilter.ColorFilter;
+import tracking.model.plugins.hough.colorfilter.SaturatedImage;
 
 import com.googlecode.javacpp.Loader;
 import com.googlecode.javacv.cpp.opencv_core.CvContour;
-import com.googlecode.javacv.cpp.opencv_core.CvFont;
-import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
 import com.googlecode.javacv.cpp.opencv_core.CvRect;
 import com.googlecode.javacv.cpp.opencv_core.CvScalar;
 import com.googlecode.javacv.cpp.opencv_core.CvSeq;
@@ -46,7 +58,8 @@ import com.googlecode.javacv.cpp.opencv_highgui.CvCapture;
  * 
  * @author Philipp
  */
-public class HoughSignRecognition implements ObjectDetectionPlugin {
+public class HoughSignRecognition implements ParallelDetectionPlugin,
+        StatefulPlugin, CacheablePlugin {
 
     /**
      * An ID {@link Integer} to identify the plugin.
@@ -74,19 +87,15 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
     private LinkedList<CvScalar> lowScalars;
 
     /**
-     * {@link ColorFilter}
+     * The {@link PluginHost} to check if the video is set yet and to get the video file.
+     * <code>null</code> if the plugin runs without gui.
      */
-    private ColorFilter cFilter;
+    private PluginHost host;
 
     /**
-     * The {@link MainFrame} to check if the video is set yet and to get the video file.
+     * {@link PointTracker} to track the signs
      */
-    private MainFrame frame;
-
-    /**
-     * {@link SignTracker} to track the signs
-     */
-    private SignTracker signTracking;
+    private PointTracker signTracking;
 
     // Set the default values here.
     /**
@@ -198,26 +207,117 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
     private int[][] blobDetectionMinMax = { { 5, 1000 }, { 10, 10000 },
             { 200, 40000 } };
 
+    /**
+     * The engine of the circle detection.
+     */
+    private volatile CircleEngine circleEngine = CircleEngine.HOUGH_CIRCLES;
+
+    /**
+     * The mode of the sign tracker. A change is taken before the first frame is tracked.
+     */
+    private volatile PointTracker.Mode trackerMode = PointTracker.Mode.FIRST_HIT;
+
+    /**
+     * The engine of the polygon detection.
+     */
+    private volatile PolygonEngine polygonEngine = PolygonEngine.HOUGH_LINES;
+
+    /**
+     * Parameters of {@link PolygonEngine#CONTOUR}.
+     * <code> double accuracy as part of the perimeter, double angleThreshold in degrees </code>
+     */
+    private double[] polygonApproxValue = { 0.04, 12.0 };
+
+    /**
+     * Min/Max value for the polygon approximation.
+     */
+    private double[][] polygonApproxMinMax = { { 0.005, 0.2 }, { 1.0, 45.0 } };
+
+    /**
+     * Thresholds of the {@link BlobFilter}, 0 disables a check. All checks are off by default, so
+     * every blob goes to the shape detection like before the filter.
+     * <code> double maxAspect, double minFill, double minCompactness, double minConvexity, double minColor </code>
+     */
+    private double[] blobFilterValue = { 0.0, 0.0, 0.0, 0.0, 0.0 };
+
+    /**
+     * Min/Max value for the blob filter.
+     */
+    private double[][] blobFilterMinMax = { { 0.0, 10.0 }, { 0.0, 1.0 },
+            { 0.0, 1.0 }, { 0.0, 1.0 }, { 0.0, 1.0 } };
+
     /**
      * Local boolan allow drawing into the image shown in the user interface.
      */
     private boolean drawIntoImage = true;
 
+    /**
+     * Number of stripes of the color filters, see {@link ColorFilter#setStripes(int)}.
+     */
+    private volatile int filterStripes = 1;
+
+    /**
+     * Number of tasks, which detect the shapes of the blobs of one frame concurrently.
+     */
+    private volatile int blobThreads = 1;
+
+    /**
+     * Idle {@link DetectionWorker}s. A worker is taken out of this queue while a frame is detected
+     * with it.
+     */
+    private ConcurrentLinkedQueue<DetectionWorker> idleWorkers = new ConcurrentLinkedQueue<DetectionWorker>();
+
+    /**
+     * <code>true</code> after the sign tracker got the values of the editor.
+     */
+    private boolean trackerInitialized = false;
+
+    /**
+     * Idle {@link ShapeDetection}s of the blob tasks, see
+     * {@link #detectShapes(IplImage, List, List, DetectionWorker)}.
+     */
+    private ConcurrentLinkedQueue<ShapeDetection> idleShapeDetections = new ConcurrentLinkedQueue<ShapeDetection>();
+
+    /**
+     * The fork-join pool for the blob tasks of all plugins.
+     */
+    private static ForkJoinPool blobPool;
+
+    /**
+     * The cache which records the detections of the tracked frames, <code>null</code> if nothing
+     * is recorded.
+     */
+    private DetectionCache detectionCache;
+
     /**
      * Constructor for the {@link HoughSignRecognition} class
      * 
-     * @param frame
-     *            the {@link MainFrame} to get the video file
+     * @param host
+     *            the {@link PluginHost} to get the video file, <code>null</code> if the plugin runs
+     *            without gui.
      */
-    public HoughSignRecognition(MainFrame frame) {
-        this.frame = frame;
+    public HoughSignRecognition(PluginHost host) {
+        this.host = host;
         this.highScalars = new LinkedList<CvScalar>();
         this.lowScalars = new LinkedList<CvScalar>();
-        this.signTracking = new SignTracker(signTrackerValue[0],
-                signTrackerValue[1], signTrackerValue[2]);
+        this.signTracking = createTracker(trackerMode);
 
     }
 
+    /**
+     * Create a tracker with the values of the sign tracker.
+     */
+    private PointTracker createTracker(PointTracker.Mode mode) {
+        switch (mode) {
+        case PREDICTIVE:
+            return new PredictiveSignTracker(signTrackerValue[0],
+                    signTrackerValue[1], signTrackerValue[2]);
+        default:
+            return new SignTracker(signTrackerValue[0], signTrackerValue[1],
+                    signTrackerValue[2]);
+        }
+    }
+
     /**
      * Filter the image and do Hough Transformation for finding Signs. Save the found signs in a
      * {@link LinkedList} of {@link StreetObject}s. Draw "Hough-Cicles and Lines" in the
@@ -232,130 +332,198 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
      */
     @Override
     public ResultObject process(IplImage original, IplImage drawable) {
+        FrameContext context = new FrameContext(original);
+        try {
+            return process(context, drawable);
+        } finally {
+            context.release();
+        }
+    }
 
-        // Report.startFrame(); // XXX
+    @Override
+    public ResultObject process(FrameContext context, IplImage drawable) {
+        return trackFrame(detectFrame(context), context.getOriginal(),
+                drawable);
+    }
+
+    /**
+     * Filter the image and detect the sign shapes in it. Thread safe: every calling thread works
+     * with its own {@link DetectionWorker}. The pushed image, which is filtered, is taken from the
+     * context, so it is computed only once for all plugins.
+     * 
+     * @param context
+     *            the {@link FrameContext} with the image which goes through the image filters and
+     *            Hough-Transformation.
+     * @return the {@link HoughFrameDetection} with the tracking points of the found signs.
+     */
+    @Override
+    public FrameDetection detectFrame(FrameContext context) {
 
         /*
          * Filter all images into one filteredimage and detect objects with the hough transformation
          * algorithms in the detect method
          */
+        IplImage original = context.getOriginal();
+        IplImage pushed = context.getImage(new SaturatedImage(filterStripes));
+
+        // Initialize new worker with its own ColorFilter if there is no idle one.
+        DetectionWorker worker = idleWorkers.poll();
+        if (worker == null) {
+            worker = new DetectionWorker(original, lowScalars, highScalars);
+        }
+
+        try {
+            ColorFilter cFilter = worker.getColorFilter();
+            cFilter.setStripes(filterStripes);
+            cFilter.filter(1, pushed);
+            return detect(context, cFilter.getImage(), worker);
+        } finally {
+            idleWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Return an empty detection. The {@link PointTracker} counts the skipped frame anyway.
+     * 
+     * @param context
+     *            the {@link FrameContext} of the skipped frame.
+     * @return an empty {@link HoughFrameDetection}.
+     */
+    @Override
+    public FrameDetection skipFrame(FrameContext context) {
+        return new HoughFrameDetection(context);
+    }
+
+    /**
+     * Add the detections of the frame to the {@link PointTracker} and draw the checked blobs. Must
+     * be called in frame order. If a {@link DetectionCache} is set, the detections are recorded
+     * before they are tracked. Detections read from a cache are tracked with <code>null</code> as
+     * frame.
+     * 
+     * @param detection
+     *            the {@link HoughFrameDetection} of the frame.
+     * @param original
+     *            the frame.
+     * @param drawable
+     *            the image in which lines and circles are drawn
+     * @return {@link ResultObject} that contains a {@link LinkedList} of {@link StreetObject}s and
+     *         an {@link IplImage}. Should be released in the calling method.
+     */
+    @Override
+    public ResultObject trackFrame(FrameDetection detection,
+            IplImage original, IplImage drawable) {
+
+        HoughFrameDetection houghDetection = (HoughFrameDetection) detection;
 
-        // Initialize new ColorFilter if not done yet.
-        if (cFilter == null) {
+        // Take the values of the editor before the first frame is tracked.
+        if (!trackerInitialized) {
+            if (signTracking.getMode() != trackerMode) {
+                signTracking.clear();
+                signTracking = createTracker(trackerMode);
+            }
             signTracking.setValues(signTrackerValue[0], signTrackerValue[1],
                     signTrackerValue[2]);
+            trackerInitialized = true;
+        }
+
+        if (detectionCache != null) {
+            try {
+                detectionCache.writeFrame(houghDetection);
+            } catch (IOException e) {
+                System.err.println("Could not write the detection cache, recording stopped.");
+                e.printStackTrace();
+                detectionCache.close();
+                detectionCache = null;
+            }
+        }
 
-            cFilter = new ColorFilter(original);
-            cFilter.setLows(lowScalars);
-            cFilter.setHighs(highScalars);
+        // add track point list to sign tracking
+        // A reference to this list will be given to the ResultObject
+        long start = Metrics.start();
+        LinkedList<StreetObject> streetObjects = signTracking
+                .addTrackpoints(houghDetection.getTrackingPoints());
+        Metrics.end(Stage.SIGN_TRACKER, start);
+        if (!streetObjects.isEmpty()) {
+            for (StreetObject obj : streetObjects) {
+                obj.setPluginName(this.getPluginName() + " "
+                        + this.getPluginID());
+            }
+        }
+
+        // only give reference to streetObjects
+        ResultObject res;
+        if (drawIntoImage && drawable != null) { // return the original drawableImage, when drawing is deactivated. So
+                             // the drawings from other plugins are shown anyway.
+            IplImage workDrawable = ImagePool.borrowClone(drawable);
+            houghDetection.draw(workDrawable);
+            res = new ResultObject(streetObjects, workDrawable);
+            ImagePool.giveBack(workDrawable);
         } else {
-            // setze neues originalbild vor den filter
-            cFilter.setImage(original);
+            res = new ResultObject(streetObjects, drawable);
         }
 
-        cFilter.filter(1);
-        return detect(original, cFilter.getImage(), drawable);
-
-        // // objects are initialized. So all old streetobjects and their saved images should be
-        // // deleted by the garbage collector
-        // LinkedList<StreetObject> objects = new LinkedList<StreetObject>();
-        //
-        // IplImage draw = cvCloneImage(drawable);
-        //
-        // ResultObject tmpResult = new ResultObject(
-        // new LinkedList<StreetObject>(), draw);
-        //
-        // // filter the original image with all given scalars
-        // for (int index = 0; index < lowScalars.size(); index++) {
-        // cFilter.setLowScalar(lowScalars.get(index));
-        // cFilter.setHighScalar(highScalars.get(index));
-        // cFilter.filter();
-        //
-        // // detect objects in the image
-        // IplImage releaseTmp = tmpResult.getDrawImage();
-        // tmpResult = detect(cFilter.getImage(), draw);
-        // cvReleaseImage(releaseTmp);
-        //
-        // // add detected StreetObjects to list
-        // objects.addAll(tmpResult.getStreetObjects());
-        //
-        // // deallocalize the old reference in draw
-        // IplImage releaseDraw = draw;
-        // draw = tmpResult.getDrawImage();
-        // cvReleaseImage(releaseDraw);
-        // }
-        //
-        // // make new resultobject to return it to the video processor
-        // IplImage releaseTmp = tmpResult.getDrawImage();
-        // tmpResult = new ResultObject(objects, draw);
-        // cvReleaseImage(releaseTmp);
-        // // release the draw image, because is not longer needed
-        // cvReleaseImage(draw);
-        //
-        // // the image of the tmpResult should be released in the calling method
-        // return tmpResult;
-    }
-
-    /**
-     * A sequence of sequences of points that represent pixels that are directly connected to each
-     * other.
-     */
-    private CvSeq contours;
-    /**
-     * Sequence for iteraring over the sequences of contours.
-     */
-    private CvSeq ptr;
-    /**
-     * Memory storage for cvFindContours method.
-     */
-    private CvMemStorage mem = CvMemStorage.create();
-    /**
-     * Rectangular box around the pixels that are directly connected to each other.
-     */
-    private CvRect boundbox;
-
-    private boolean detected = false;
+        return res;
+    }
 
     /**
+     * @param context
+     *            the {@link FrameContext} with the original rgb {@link IplImage}
      * @param sourceImage
      *            the filtered greyscale {@link IplImage} with depth 1
-     * @param drawableImage
-     *            the drawable rgb {@link IplImage} with depth 3
-     * @return
+     * @param worker
+     *            the {@link DetectionWorker} of the calling thread
+     * @return the {@link HoughFrameDetection} of the frame.
      */
-    private ResultObject detect(IplImage original, IplImage sourceImage,
-            IplImage drawableImage) {
+    private HoughFrameDetection detect(FrameContext context,
+            IplImage sourceImage, DetectionWorker worker) {
+        IplImage original = context.getOriginal();
+
+        // copy sourceImage for blur and contour detection. The sourceImage belongs to the worker,
+        // so it is used directly for the shape detection of the blobs.
+        IplImage originalImage = ImagePool.borrowClone(original);
+        IplImage workImage = ImagePool.borrowClone(sourceImage);
 
-        // clone sourceImage for blur and contour detection
-        IplImage originalImage = cvCloneImage(original);
-        IplImage workImage = cvCloneImage(sourceImage);
-        IplImage workImageROI = cvCloneImage(sourceImage);
-        IplImage workDrawable = cvCloneImage(drawableImage);
+        long start = Metrics.start();
 
         // blur to get a better blob result in cvFindContours, use global cvContourBlur values
         blur(workImage, workImage,
                 cvSize(cvContourValue[0], cvContourValue[1]), cvPoint(0, 0), 0);
 
-        // initialize new CvSeqences
-        contours = new CvSeq();
+        /*
+         * A sequence of sequences of points that represent pixels that are directly connected to
+         * each other.
+         */
+        CvSeq contours = new CvSeq();
         // iterator for contours
-        ptr = new CvSeq();
+        CvSeq ptr = new CvSeq();
 
-        // find Blobs and load them into contours sequenz
-        cvFindContours(workImage, mem, contours,
+        // find Blobs and load them into contours sequenz. The storage of the worker still holds
+        // the contours of its last frame.
+        cvClearMemStorage(worker.getStorage());
+        cvFindContours(workImage, worker.getStorage(), contours,
                 Loader.sizeof(CvContour.class), CV_RETR_CCOMP,
                 CV_CHAIN_APPROX_SIMPLE, cvPoint(0, 0));
+        Metrics.end(Stage.CONTOURS, start);
 
-        // initialize new list for tracking points to track the signs.
-        LinkedList<TrackingPoint> trackingPoints = new LinkedList<TrackingPoint>();
+        // initialize new detection for the tracking points to track the signs.
+        HoughFrameDetection detection = new HoughFrameDetection(context);
 
         if (!contours.isNull()) {
 
             int blobCounter = 0; // counter for maximum blobs
+            int blobsFound = 0;
+            int blobsRejected = 0;
+            int[] filtered = new int[BlobFilter.Check.values().length];
+            ArrayList<CvRect> blobs = new ArrayList<CvRect>();
+            ArrayList<CvSeq> blobContours = new ArrayList<CvSeq>();
+            BlobFilter blobFilter = new BlobFilter(blobFilterValue.clone());
+            start = Metrics.start();
 
             // go throug all blobs in countour sequenz
             for (ptr = contours; ptr != null; ptr = ptr.h_next()) {
-                boundbox = cvBoundingRect(ptr, 0);
+                blobsFound++;
+                // Rectangular box around the pixels that are directly connected to each other.
+                CvRect boundbox = cvBoundingRect(ptr, 0);
                 int square = boundbox.height() * boundbox.width();
 
                 // check if size is in range
@@ -366,114 +534,163 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
                     if (blobCounter > blobDetectionValue[0]) {
                         break;
                     }
-                    // set region of interest only on found blobs
-                    cvSetImageROI(workImageROI, boundbox);
-
-                    // Report.start(); // XXX
-
-                    StreetObject.Type type = ShapeDetection.detect(
-                            workImageROI, trackCircleBlurValue[0],
-                            trackCircleBlurValue[1], trackCircleValue[0],
-                            trackCircleValue[1], trackCircleValue[2],
-                            trackCircleValue[3], trackCircleValue[4],
-                            trackCircleValue[5], trackPolygonBlurValue[0],
-                            trackPolygonBlurValue[1], trackPolygonValue[0],
-                            trackPolygonValue[1], trackPolygonValue[2],
-                            shapedetectionValue[0], shapedetectionValue[1],
-                            shapedetectionValue[2]);
-
-                    // add the location and type of the sign to the tracking points list
-                    if (type != Type.NOT_SPECIFIED) { // use original image for segmentation
-
-                        // if (type == Type.SIGN_TRIANGLE // XXX
-                        // || type == Type.SIGN_RECTANGLE
-                        // || type == Type.SIGN_OCTAGON) {
-                        // Report.endLine(boundbox.width() * boundbox.height());
-                        // } else if (type == Type.SIGN_CIRCLE) {
-                        // Report.endCircle(boundbox.width()
-                        // * boundbox.height());
-                        // }
-
-                        cvSetImageROI(originalImage, boundbox);
-                        trackingPoints.add(new TrackingPoint(DetectionUtils
-                                .getCenter(boundbox), type, originalImage));
-                        cvResetImageROI(originalImage);
-
-                        // write text above recognized signs
-                        CvFont font = new CvFont(10); // font for text printing
-                        cvInitFont(font, CV_FONT_HERSHEY_SIMPLEX, 1.0, 1.0, 0,
-                                2, CV_AA);
-                        cvPutText(workDrawable, type.name(),
-                                cvPoint(boundbox.x(), boundbox.y() - 5), // print text into image
-                                font, CvScalar.RED);
-
-                        detected = true;
-
+                    // cheap checks of the contour before the Hough transformations
+                    BlobFilter.Check failed = blobFilter.test(ptr, boundbox,
+                            sourceImage, worker.getStorage());
+                    if (failed != null) {
+                        filtered[failed.ordinal()]++;
+                        continue;
                     }
-                    // else {
-                    // Report.endNot(boundbox.width() * boundbox.height()); // XXX
-                    // }
-
-                    cvRectangle(
-                            // draw recangles around the blobs
-                            workDrawable,
-                            cvPoint(boundbox.x(), boundbox.y()),
-                            cvPoint(boundbox.x() + boundbox.width(),
-                                    boundbox.y() + boundbox.height()),
-                            detected ? CvScalar.RED : CvScalar.GREEN, 1, 0, 0);
-
-                    detected = false;
-
-                    /*
-                     * for exporting testimages while tracking
-                     */
-                    // if (detected) {
-                    // cvSaveImage(
-                    // "C:\\Users\\Philipp\\Desktop\\Bilder\\"
-                    // + counter + System.currentTimeMillis()
-                    // + ".jpg", workDrawable);
-                    // counter++;
-                    // detected = false;
-                    // }
-
+                    blobs.add(boundbox);
+                    blobContours.add(ptr);
                 }// ---- if between min max ----
             } // ---- for loop in countours ----
+            Metrics.end(Stage.BLOB_FILTER, start);
+
+            // the shapes are detected on the unblurred source image
+            Type[] types = detectShapes(sourceImage, blobs, blobContours,
+                    worker);
+
+            for (int i = 0; i < blobs.size(); i++) {
+                CvRect boundbox = blobs.get(i);
+                Type type = types[i];
+
+                // add the location and type of the sign to the tracking points list
+                if (type != Type.NOT_SPECIFIED) { // use original image for segmentation
+
+                    cvSetImageROI(originalImage, boundbox);
+                    detection.addTrackingPoint(new TrackingPoint(DetectionUtils
+                            .getCenter(boundbox), type, originalImage));
+                    cvResetImageROI(originalImage);
+                } else {
+                    blobsRejected++;
+                }
+
+                // remember the blob, the rectangles are drawn in the tracking step
+                detection.addBlob(boundbox.x(), boundbox.y(), boundbox.width(),
+                        boundbox.height(), type);
+            }
 
-            // Report.endFrame(blobCounter); // XXX
+            Metrics.count(Counter.BLOBS_FOUND, blobsFound);
+            Metrics.count(Counter.BLOBS_CHECKED, blobs.size());
+            Metrics.count(Counter.BLOBS_REJECTED, blobsRejected);
+            for (BlobFilter.Check check : BlobFilter.Check.values()) {
+                Metrics.count(check.getCounter(), filtered[check.ordinal()]);
+            }
 
         } // ---- if (! contours.isNull()) ----
 
-        // add track point list to sign tracking
-        // A reference to this list will be given to the ResultObject
-        LinkedList<StreetObject> streetObjects = signTracking
-                .addTrackpoints(trackingPoints);
-        if (!streetObjects.isEmpty()) {
-            for (StreetObject obj : streetObjects) {
-                obj.setPluginName(this.getPluginName() + " "
-                        + this.getPluginID());
-            }
-        }
+        // give back all local images
+        ImagePool.giveBack(workImage);
+        ImagePool.giveBack(originalImage);
 
-        // only give reference to streetObjects
-        ResultObject res;
-        if (drawIntoImage) { // return the original drawableImage, when drawing is deactivated. So
-                             // the drawings from other plugins are shown anyway.
-            res = new ResultObject(streetObjects, workDrawable);
-        } else {
-            res = new ResultObject(streetObjects, drawableImage);
+        return detection;
+    }
+
+    /**
+     * Detect the shapes of the blobs. With more than one blob thread the blobs are distributed
+     * over the fork-join pool, every task works with its own {@link ShapeDetection} from the idle
+     * queue. The source image is only read. The result is in the order of the blobs, so it does
+     * not depend on the number of threads.
+     * 
+     * @param sourceImage
+     *            the filtered greyscale {@link IplImage}
+     * @param blobs
+     *            the bounding boxes of the blobs
+     * @param contours
+     *            the contours of the blobs, they are only read
+     * @param worker
+     *            the {@link DetectionWorker} of the calling thread
+     * @return the {@link Type} of every blob.
+     */
+    private Type[] detectShapes(final IplImage sourceImage,
+            final List<CvRect> blobs, final List<CvSeq> contours,
+            DetectionWorker worker) {
+        final Type[] types = new Type[blobs.size()];
+        final int tasks = Math.min(blobThreads, blobs.size());
+
+        // one copy of the values for all blobs of the frame
+        final int[] circleBlur = trackCircleBlurValue.clone();
+        final int[] circle = trackCircleValue.clone();
+        final int[] polygonBlur = trackPolygonBlurValue.clone();
+        final int[] polygon = trackPolygonValue.clone();
+        final double[] shape = shapedetectionValue.clone();
+        final double[] approx = polygonApproxValue.clone();
+        final PolygonEngine engine = polygonEngine;
+        final CircleEngine circles = circleEngine;
+
+        if (tasks <= 1) {
+            ShapeDetection shapeDetection = worker.getShapeDetection();
+            shapeDetection.setValues(circleBlur, circle, polygonBlur, polygon,
+                    shape);
+            shapeDetection.setPolygonEngine(engine, approx);
+            shapeDetection.setCircleEngine(circles);
+            for (int i = 0; i < types.length; i++) {
+                types[i] = shapeDetection.detect(sourceImage, blobs.get(i),
+                        contours.get(i));
+            }
+            return types;
         }
 
-        // release all local images
-        cvReleaseImage(workImage);
-        cvReleaseImage(workImageROI);
-        cvReleaseImage(workDrawable);
-        cvReleaseImage(originalImage);
+        getBlobPool().invoke(new RecursiveAction() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                List<RecursiveAction> actions = new ArrayList<RecursiveAction>();
+                for (int t = 0; t < tasks; t++) {
+                    final int first = t;
+                    actions.add(new RecursiveAction() {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected void compute() {
+                            ShapeDetection shapeDetection = idleShapeDetections
+                                    .poll();
+                            if (shapeDetection == null) {
+                                shapeDetection = new ShapeDetection();
+                            }
+                            try {
+                                shapeDetection.setValues(circleBlur, circle,
+                                        polygonBlur, polygon, shape);
+                                shapeDetection
+                                        .setPolygonEngine(engine, approx);
+                                shapeDetection.setCircleEngine(circles);
+                                // every task takes every n-th blob, so big and small blobs of
+                                // one region are spread over the tasks
+                                for (int i = first; i < types.length; i += tasks) {
+                                    types[i] = shapeDetection.detect(
+                                            sourceImage, blobs.get(i),
+                                            contours.get(i));
+                                }
+                            } finally {
+                                idleShapeDetections.add(shapeDetection);
+                            }
+                        }
+                    });
+                }
+                invokeAll(actions);
+            }
+        });
+        return types;
+    }
 
-        return res;
+    /**
+     * Return the fork-join pool for the blobs of all plugins, created with the first parallel
+     * blob detection.
+     */
+    private static synchronized ForkJoinPool getBlobPool() {
+        if (blobPool == null) {
+            blobPool = new ForkJoinPool(Runtime.getRuntime()
+                    .availableProcessors());
+        }
+        return blobPool;
     }
 
     /**
-     * Return lowScalars. Called in the {@link ColorFilterPanel}.
+     * Return lowScalars. Called in the ColorFilterPanel.
      * 
      * @return the {@link LinkedList} lowScalars
      */
@@ -482,7 +699,7 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
     }
 
     /**
-     * Return highScalars. Called in the {@link ColorFilterPanel}.
+     * Return highScalars. Called in the ColorFilterPanel.
      * 
      * @return
      */
@@ -491,7 +708,7 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
     }
 
     /**
-     * Set lowScalars and highScalars. Called in the {@link ColorFilterPanel}.
+     * Set lowScalars and highScalars. Called in the ColorFilterPanel.
      * 
      * @param lowScalars
      * @param highScalars
@@ -503,12 +720,12 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
     }
 
     /**
-     * Return the chosen video file. Called in the {@link ColorFilterPanel}.
+     * Return the chosen video file. Called in the ColorFilterPanel.
      * 
-     * @return
+     * @return the {@link CvCapture} or <code>null</code>, if there is no video.
      */
     public CvCapture getVideoCapture() {
-        return frame.getVideoCapture();
+        return host == null ? null : host.getVideoCapture();
     }
 
     /**
@@ -655,6 +872,115 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
         return blobDetectionMinMax;
     }
 
+    /**
+     * Return the values of the polygon approximation.
+     * 
+     * @return
+     */
+    public double[] getPolygonApproxValue() {
+        return polygonApproxValue;
+    }
+
+    /**
+     * Return min max values for the polygon approximation.
+     * 
+     * @return
+     */
+    public double[][] getPolygonApproxMinMax() {
+        return polygonApproxMinMax;
+    }
+
+    /**
+     * Return the engine of the circle detection.
+     * 
+     * @return the {@link CircleEngine}
+     */
+    public CircleEngine getCircleEngine() {
+        return circleEngine;
+    }
+
+    /**
+     * Select the engine of the circle detection.
+     * 
+     * @param engine
+     *            {@link CircleEngine#HOUGH_CIRCLES} (default) or
+     *            {@link CircleEngine#RADIAL_SYMMETRY}.
+     */
+    public void setCircleEngine(CircleEngine engine) {
+        circleEngine = engine;
+    }
+
+    /**
+     * Return the mode of the sign tracker.
+     * 
+     * @return the {@link PointTracker.Mode}
+     */
+    public PointTracker.Mode getTrackerMode() {
+        return trackerMode;
+    }
+
+    /**
+     * Select the mode of the sign tracker. It is taken before the first frame is tracked, a
+     * running tracker keeps its mode.
+     * 
+     * @param mode
+     *            {@link PointTracker.Mode#FIRST_HIT} (default) or
+     *            {@link PointTracker.Mode#PREDICTIVE}.
+     */
+    public void setTrackerMode(PointTracker.Mode mode) {
+        trackerMode = mode;
+    }
+
+    /**
+     * Return the engine of the polygon detection.
+     * 
+     * @return the {@link PolygonEngine}
+     */
+    public PolygonEngine getPolygonEngine() {
+        return polygonEngine;
+    }
+
+    /**
+     * Select the engine of the polygon detection.
+     * 
+     * @param engine
+     *            {@link PolygonEngine#HOUGH_LINES} (default) or {@link PolygonEngine#CONTOUR}.
+     */
+    public void setPolygonEngine(PolygonEngine engine) {
+        polygonEngine = engine;
+    }
+
+    /**
+     * Set the values of {@link PolygonEngine#CONTOUR}.
+     * 
+     * @param accuracy
+     *            maximum distance of the polygon to the contour as part of the perimeter
+     * @param angleThreshold
+     *            maximum difference of the inner angles to the regular polygon in degrees
+     */
+    public void setPolygonApproxValue(double accuracy, double angleThreshold) {
+        polygonApproxValue[0] = accuracy;
+        polygonApproxValue[1] = angleThreshold;
+    }
+
+    /**
+     * Return the thresholds of the blob filter.
+     * 
+     * @return
+     */
+    public double[] getBlobFilterValue() {
+        return blobFilterValue;
+    }
+
+    /**
+     * Return min max values for the blob filter.
+     * 
+     * @return
+     */
+    public double[][] getBlobFilterMinMax() {
+        return blobFilterMinMax;
+    }
+
     /**
      * Set blur values for blob detection.
      * 
@@ -777,6 +1103,217 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
         blobDetectionValue[2] = maxBlobSize;
     }
 
+    /**
+     * Set the thresholds of the {@link BlobFilter}. 0 disables a check.
+     * 
+     * @param maxAspect
+     *            maximum ratio of the longer to the shorter side of the bounding box
+     * @param minFill
+     *            minimum ratio of the contour area to the bounding box area
+     * @param minCompactness
+     *            minimum 4 pi area / perimeter^2
+     * @param minConvexity
+     *            minimum ratio of the contour area to the area of its convex hull
+     * @param minColor
+     *            minimum part of the bounding box in the color ranges
+     */
+    public void setBlobFilterValue(double maxAspect, double minFill,
+            double minCompactness, double minConvexity, double minColor) {
+        blobFilterValue[0] = maxAspect;
+        blobFilterValue[1] = minFill;
+        blobFilterValue[2] = minCompactness;
+        blobFilterValue[3] = minConvexity;
+        blobFilterValue[4] = minColor;
+    }
+
+    /**
+     * Load the settings of the plugin from {@link Properties}, e.g. for the batch processing. Keys
+     * that are missing keep their value. The values are comma separated, the scalars are
+     * separated by semicolons.
+     * 
+     * @param settings
+     *            the {@link Properties} written by {@link #storeSettings(Properties)}.
+     * @throws IllegalArgumentException
+     *             if a value has the wrong format.
+     */
+    public void loadSettings(Properties settings) {
+        readValues(settings, "cvContour", cvContourValue);
+        readValues(settings, "trackCircleBlur", trackCircleBlurValue);
+        readValues(settings, "trackCircle", trackCircleValue);
+        readValues(settings, "trackPolygonBlur", trackPolygonBlurValue);
+        readValues(settings, "trackPolygon", trackPolygonValue);
+        readValues(settings, "signTracker", signTrackerValue);
+        readValues(settings, "blobDetection", blobDetectionValue);
+
+        readValues(settings, "shapeDetection", shapedetectionValue);
+        readValues(settings, "blobFilter", blobFilterValue);
+        readValues(settings, "polygonApprox", polygonApproxValue);
+
+        String engine = settings.getProperty("polygonEngine");
+        if (engine != null) {
+            try {
+                polygonEngine = PolygonEngine.valueOf(engine.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown polygonEngine "
+                        + engine + ".");
+            }
+        }
+        engine = settings.getProperty("circleEngine");
+        if (engine != null) {
+            try {
+                circleEngine = CircleEngine.valueOf(engine.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown circleEngine "
+                        + engine + ".");
+            }
+        }
+        String mode = settings.getProperty("trackerMode");
+        if (mode != null) {
+            try {
+                trackerMode = PointTracker.Mode.valueOf(mode.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown trackerMode "
+                        + mode + ".");
+            }
+        }
+
+        String lows = settings.getProperty("lowScalars");
+        String highs = settings.getProperty("highScalars");
+        if (lows != null && highs != null) {
+            LinkedList<CvScalar> lowList = readScalars("lowScalars", lows);
+            LinkedList<CvScalar> highList = readScalars("highScalars", highs);
+            if (lowList.size() != highList.size()) {
+                throw new IllegalArgumentException(
+                        "lowScalars and highScalars must have the same size.");
+            }
+            setScalarLists(lowList, highList);
+        }
+    }
+
+    /**
+     * Store the settings of the plugin in {@link Properties}.
+     * 
+     * @param settings
+     *            the {@link Properties} to fill.
+     */
+    public void storeSettings(Properties settings) {
+        settings.setProperty("cvContour", writeValues(cvContourValue));
+        settings.setProperty("trackCircleBlur",
+                writeValues(trackCircleBlurValue));
+        settings.setProperty("trackCircle", writeValues(trackCircleValue));
+        settings.setProperty("trackPolygonBlur",
+                writeValues(trackPolygonBlurValue));
+        settings.setProperty("trackPolygon", writeValues(trackPolygonValue));
+        settings.setProperty("signTracker", writeValues(signTrackerValue));
+        settings.setProperty("blobDetection", writeValues(blobDetectionValue));
+
+        settings.setProperty("shapeDetection", writeValues(shapedetectionValue));
+        settings.setProperty("blobFilter", writeValues(blobFilterValue));
+        settings.setProperty("polygonApprox", writeValues(polygonApproxValue));
+        settings.setProperty("polygonEngine", polygonEngine.name());
+        settings.setProperty("circleEngine", circleEngine.name());
+        settings.setProperty("trackerMode", trackerMode.name());
+
+        settings.setProperty("lowScalars", writeScalars(lowScalars));
+        settings.setProperty("highScalars", writeScalars(highScalars));
+    }
+
+    /**
+     * Read comma separated int values into the array, if the key exists.
+     */
+    private static void readValues(Properties settings, String key,
+            int[] values) {
+        String value = settings.getProperty(key);
+        if (value == null) {
+            return;
+        }
+        String[] split = splitValues(key, value, values.length);
+        for (int i = 0; i < split.length; i++) {
+            values[i] = Integer.parseInt(split[i]);
+        }
+    }
+
+    /**
+     * Read comma separated double values into the array, if the key exists.
+     */
+    private static void readValues(Properties settings, String key,
+            double[] values) {
+        String value = settings.getProperty(key);
+        if (value == null) {
+            return;
+        }
+        String[] split = splitValues(key, value, values.length);
+        for (int i = 0; i < split.length; i++) {
+            values[i] = Double.parseDouble(split[i]);
+        }
+    }
+
+    /**
+     * Split comma separated values and check their number.
+     */
+    private static String[] splitValues(String key, String value, int length) {
+        String[] split = value.trim().split("\\s*,\\s*");
+        if (split.length != length) {
+            throw new IllegalArgumentException(key + " needs " + length
+                    + " values, but has " + split.length + ".");
+        }
+        return split;
+    }
+
+    /**
+     * Return the int values comma separated.
+     */
+    private static String writeValues(int[] values) {
+        String result = "";
+        for (int i = 0; i < values.length; i++) {
+            result += (i > 0 ? "," : "") + values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Return the double values comma separated.
+     */
+    private static String writeValues(double[] values) {
+        String result = "";
+        for (int i = 0; i < values.length; i++) {
+            result += (i > 0 ? "," : "") + values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Read semicolon separated scalars with four comma separated values each.
+     */
+    private static LinkedList<CvScalar> readScalars(String key, String value) {
+        LinkedList<CvScalar> scalars = new LinkedList<CvScalar>();
+        if (value.trim().isEmpty()) {
+            return scalars;
+        }
+        for (String scalar : value.split(";")) {
+            String[] split = splitValues(key, scalar, 4);
+            scalars.add(new CvScalar(Double.parseDouble(split[0]), Double
+                    .parseDouble(split[1]), Double.parseDouble(split[2]),
+                    Double.parseDouble(split[3])));
+        }
+        return scalars;
+    }
+
+    /**
+     * Return the scalars semicolon separated.
+     */
+    private static String writeScalars(LinkedList<CvScalar> scalars) {
+        String result = "";
+        for (CvScalar scalar : scalars) {
+            if (!result.isEmpty()) {
+                result += ";";
+            }
+            result += scalar.getVal(0) + "," + scalar.getVal(1) + ","
+                    + scalar.getVal(2) + "," + scalar.getVal(3);
+        }
+        return result;
+    }
+
     @Override
     public int getPluginID() {
         return pluginID;
@@ -795,12 +1332,61 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
 
     @Override
     public ObjectDetectionPlugin clonePlugin() {
-        HoughSignRecognition hsr = new HoughSignRecognition(frame);
+        HoughSignRecognition hsr = new HoughSignRecognition(host);
         hsr.setPluginID(pluginID);
         hsr.setScalarLists(lowScalars, highScalars);
         return hsr;
     }
 
+    /**
+     * Release the color filters, memory storages and shape detections of the idle workers and
+     * blob tasks and the images of the open tracks. The plugin must not detect frames at the same
+     * time.
+     */
+    @Override
+    public void release() {
+        DetectionWorker worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            worker.release();
+        }
+        ShapeDetection shapeDetection;
+        while ((shapeDetection = idleShapeDetections.poll()) != null) {
+            shapeDetection.release();
+        }
+        signTracking.clear();
+    }
+
+    /**
+     * Write the mode and the state of the {@link PointTracker}.
+     */
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeBoolean(trackerInitialized);
+        out.writeUTF(signTracking.getMode().name());
+        signTracking.writeState(out);
+    }
+
+    /**
+     * Restore the state of the {@link PointTracker}. The tracker is replaced, if the state was
+     * written by a tracker with another mode.
+     */
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        trackerInitialized = in.readBoolean();
+        PointTracker.Mode mode;
+        try {
+            mode = PointTracker.Mode.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown tracker mode in the state.", e);
+        }
+        if (signTracking.getMode() != mode) {
+            signTracking.clear();
+            signTracking = createTracker(mode);
+        }
+        trackerMode = mode;
+        signTracking.readState(in);
+    }
+
     @Override
     public boolean isEditable() {
         return IS_EDITABLE;
@@ -808,7 +1394,7 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
 
     @Override
     public JDialog getEditorDialog() {
-        return new HoughEditorFrame(this);
+        return host == null ? null : host.createEditorDialog(this);
     }
 
     @Override
@@ -820,4 +1406,106 @@ public class HoughSignRecognition implements ObjectDetectionPlugin {
     public boolean getDrawIntoImage() {
         return drawIntoImage;
     }
+
+    /**
+     * Set the number of horizontal stripes, which the color filter of a frame processes
+     * concurrently. Use more than 1 only if less frames than cores are detected at the same time.
+     * 
+     * @param stripes
+     *            number of stripes, 1 for no parallel color filtering.
+     */
+    public void setFilterStripes(int stripes) {
+        filterStripes = Math.max(1, stripes);
+    }
+
+    /**
+     * Return the number of stripes of the color filter.
+     * 
+     * @return number of stripes.
+     */
+    public int getFilterStripes() {
+        return filterStripes;
+    }
+
+    /**
+     * Set the number of tasks, which detect the shapes of the blobs of one frame concurrently.
+     * Like the stripes only useful if less frames than cores are detected at the same time. The
+     * result does not depend on the number.
+     * 
+     * @param threads
+     *            number of tasks, 1 for detecting the blobs in the calling thread.
+     */
+    public void setBlobThreads(int threads) {
+        blobThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Return the number of blob tasks.
+     * 
+     * @return number of tasks.
+     */
+    public int getBlobThreads() {
+        return blobThreads;
+    }
+
+    /**
+     * The fingerprint of all settings of {@link #storeSettings(Properties)}: the values of the
+     * detection and the tracker, the engines and the color ranges. The stripes and blob threads
+     * only change the speed.
+     */
+    @Override
+    public String getConfigFingerprint() {
+        Properties settings = new Properties();
+        storeSettings(settings);
+        return Fingerprint.settings(settings);
+    }
+
+    /**
+     * Return the fingerprint of the settings of the detection: all settings, but not the values
+     * and the mode of the tracker.
+     * 
+     * @return the fingerprint, see {@link Fingerprint}.
+     */
+    public String getDetectionFingerprint() {
+        Properties settings = new Properties();
+        storeSettings(settings);
+        return Fingerprint.settings(settings, "signTracker", "trackerMode");
+    }
+
+    /**
+     * Return the key of the {@link DetectionCache} of a video. It contains the
+     * {@link #getDetectionFingerprint()}, so a cache can be replayed with other tracker values.
+     * 
+     * @param video
+     *            the {@link Fingerprint#video(java.io.File)} of the video.
+     * @param frames
+     *            fingerprint of the frames which are detected. With a frame stride of the
+     *            {@link tracking.model.VideoProcessor} they depend on the detections of all
+     *            plugins.
+     * @return the key.
+     */
+    public String getCacheKey(String video, String frames) {
+        return Fingerprint.of(video, getDetectionFingerprint(), frames,
+                "version=" + DetectionCache.VERSION);
+    }
+
+    /**
+     * Record the detections of every tracked frame into the cache. If the cache can not be
+     * written, the recording stops and the cache is closed.
+     * 
+     * @param cache
+     *            the {@link DetectionCache}, <code>null</code> to stop the recording.
+     */
+    public void setDetectionCache(DetectionCache cache) {
+        detectionCache = cache;
+    }
+
+    /**
+     * Return the cache which records the detections.
+     * 
+     * @return the {@link DetectionCache}, <code>null</code> if nothing is recorded.
+     */
+    public DetectionCache getDetectionCache() {
+        return detectionCache;
+    }
 }
@@ -0,0 +1,84 @@
+package tracking.model.plugins.hough;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+
+import tracking.model.plugins.StreetObject;
+
+/**
+ * Tracks the {@link TrackingPoint}s of the {@link HoughSignRecognition} over the frames, so that
+ * every sign is only recognized once. The tracker owns the images of the added points.
+ *
+ * @author Philipp
+ */
+public interface PointTracker {
+
+    /**
+     * The available trackers.
+     */
+    public static enum Mode {
+        /**
+         * {@link SignTracker}, builds lines of 3 points and takes the first point on a line.
+         */
+        FIRST_HIT,
+        /**
+         * {@link PredictiveSignTracker}, predicts the tracks with their velocity and assigns the
+         * points of a frame at once.
+         */
+        PREDICTIVE
+    }
+
+    /**
+     * Return the mode of this tracker.
+     *
+     * @return the {@link Mode}
+     */
+    public Mode getMode();
+
+    /**
+     * Add the tracking points of the next frame.
+     *
+     * @param trackingPoints
+     *            a {@link LinkedList} of new found tracking points
+     * @return {@link LinkedList} of the tracked {@link StreetObject}s, which are finished.
+     */
+    public LinkedList<StreetObject> addTrackpoints(
+            LinkedList<TrackingPoint> trackingPoints);
+
+    /**
+     * Set the distances and the frame delay of the tracker.
+     *
+     * @param maxLineDistance
+     * @param maxPointDistance
+     * @param maxFrameDelay
+     *            frames without new point until a track is recognized as a sign.
+     */
+    public void setValues(double maxLineDistance, double maxPointDistance,
+            int maxFrameDelay);
+
+    /**
+     * Write the state of the tracker with the images of the open tracks.
+     *
+     * @param out
+     *            the stream to write to.
+     * @throws IOException
+     */
+    public void writeState(DataOutputStream out) throws IOException;
+
+    /**
+     * Replace the state of the tracker with the state written by
+     * {@link #writeState(DataOutputStream)}.
+     *
+     * @param in
+     *            the stream to read from.
+     * @throws IOException
+     */
+    public void readState(DataInputStream in) throws IOException;
+
+    /**
+     * Remove the open tracks and release their images.
+     */
+    public void clear();
+}
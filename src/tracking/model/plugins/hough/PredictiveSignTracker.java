@@ -0,0 +1,431 @@
+package tracking.model.plugins.hough;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import tracking.model.ImageCodec;
+import tracking.model.NativeMemory;
+import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Tracker with a constant velocity model. Every track predicts its position in the next frame with
+ * an alpha-beta filter, a lightweight Kalman filter with fixed gains. A new point is only compared
+ * with the tracks of its type, whose prediction is within the gate:
+ * <ul>
+ * <li>maxPointDistance around the last position for a track with one point, its velocity is not
+ * known yet</li>
+ * <li>maxLineDistance per frame since the last point around the prediction for the other tracks,
+ * at most maxPointDistance</li>
+ * </ul>
+ * The points of a frame are assigned to the tracks at once with the Hungarian method, so that the
+ * sum of the squared distances to the predictions is minimal. A track without point costs its
+ * squared gate, so two tracks do not fight for the same point. Points without track start a new
+ * track. Fast signs at the border of the frame stay one track, where the {@link SignTracker} starts
+ * a new line.
+ * <p>
+ * A track is recognized as a sign when it gets no point for more than maxFrameDelay frames. It
+ * keeps the image of its points with the best {@link CropScore}.
+ *
+ * @author Philipp
+ */
+public class PredictiveSignTracker implements PointTracker {
+
+    /**
+     * Gain of the position.
+     */
+    private static final double ALPHA = 0.85;
+
+    /**
+     * Gain of the velocity.
+     */
+    private static final double BETA = 0.3;
+
+    /**
+     * Cost of an assignment outside of the gate.
+     */
+    private static final double FORBIDDEN = 1e15;
+
+    /**
+     * The open tracks in the order they were started.
+     */
+    private LinkedList<Track> tracks;
+
+    private double maxLineDistance;
+    private double maxPointDistance;
+    private int maxFrameDelay;
+
+    /**
+     * Constructor for the predictive tracker
+     *
+     * @param maxLineDistance
+     *            the gate around the prediction per frame.
+     * @param maxPointDistance
+     *            the gate of a track with one point and the maximum gate.
+     * @param maxFrameDelay
+     *            maximum frame delay until a track is recognized as a sign.
+     */
+    public PredictiveSignTracker(double maxLineDistance,
+            double maxPointDistance, int maxFrameDelay) {
+        this.maxLineDistance = maxLineDistance;
+        this.maxPointDistance = maxPointDistance;
+        this.maxFrameDelay = maxFrameDelay;
+        this.tracks = new LinkedList<Track>();
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.PREDICTIVE;
+    }
+
+    @Override
+    public LinkedList<StreetObject> addTrackpoints(
+            LinkedList<TrackingPoint> trackingPoints) {
+        TrackingPoint[] points = trackingPoints
+                .toArray(new TrackingPoint[trackingPoints.size()]);
+        Track[] assigned = assign(points);
+
+        for (int j = 0; j < points.length; j++) {
+            if (assigned[j] != null) {
+                assigned[j].update(points[j]);
+            } else {
+                tracks.add(new Track(points[j]));
+            }
+        }
+
+        LinkedList<StreetObject> objects = new LinkedList<StreetObject>();
+        for (Iterator<Track> it = tracks.iterator(); it.hasNext();) {
+            Track track = it.next();
+            if (track.delay > maxFrameDelay) {
+                objects.add(new StreetObject(track.image, track.type));
+                NativeMemory.releaseImage(track.image);
+                it.remove();
+            }
+        }
+
+        for (Track track : tracks) {
+            track.delay++;
+        }
+        return objects;
+    }
+
+    /**
+     * Find the track for every point.
+     *
+     * @param points
+     * @return the {@link Track} of every point, <code>null</code> if it starts a new track.
+     */
+    private Track[] assign(TrackingPoint[] points) {
+        Track[] assigned = new Track[points.length];
+        if (points.length == 0 || tracks.isEmpty()) {
+            return assigned;
+        }
+
+        // gating: only the tracks and points with a candidate take part in the assignment
+        List<Track> rows = new ArrayList<Track>();
+        int[] column = new int[points.length];
+        int[] pointOf = new int[points.length];
+        Arrays.fill(column, -1);
+        int columns = 0;
+        List<double[]> distances = new ArrayList<double[]>();
+        for (Track track : tracks) {
+            double gate = gate(track);
+            double x = track.x + track.vx * track.frames();
+            double y = track.y + track.vy * track.frames();
+            double[] row = null;
+            for (int j = 0; j < points.length; j++) {
+                if (points[j].getType() != track.type) {
+                    continue;
+                }
+                double d = points[j].distance(x, y);
+                if (d <= gate) {
+                    if (row == null) {
+                        row = new double[points.length];
+                        Arrays.fill(row, -1);
+                    }
+                    row[j] = d;
+                    if (column[j] < 0) {
+                        pointOf[columns] = j;
+                        column[j] = columns++;
+                    }
+                }
+            }
+            if (row != null) {
+                rows.add(track);
+                distances.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return assigned;
+        }
+
+        // one extra column per track for "no point"
+        int n = rows.size();
+        double[][] cost = new double[n][columns + n];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(cost[i], FORBIDDEN);
+            double[] row = distances.get(i);
+            for (int j = 0; j < points.length; j++) {
+                if (row[j] >= 0) {
+                    cost[i][column[j]] = row[j] * row[j];
+                }
+            }
+            double gate = gate(rows.get(i));
+            cost[i][columns + i] = gate * gate;
+        }
+
+        int[] match = solveAssignment(cost);
+        for (int i = 0; i < n; i++) {
+            if (match[i] < columns) {
+                assigned[pointOf[match[i]]] = rows.get(i);
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * The radius around the prediction of a track, in which its next point has to be.
+     */
+    private double gate(Track track) {
+        if (track.hits < 2) {
+            return maxPointDistance;
+        }
+        return Math.min(maxPointDistance, maxLineDistance * track.frames());
+    }
+
+    /**
+     * Solve the assignment problem with the Hungarian method in O(rows^2 * columns).
+     *
+     * @param cost
+     *            the cost matrix, not more rows than columns.
+     * @return the column of every row.
+     */
+    static int[] solveAssignment(double[][] cost) {
+        int n = cost.length;
+        int m = cost[0].length;
+        // potentials and matching with 1 based indices, column 0 is the row to insert
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] rowOf = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            rowOf[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = rowOf[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double current = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (current < minv[j]) {
+                            minv[j] = current;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[rowOf[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (rowOf[j0] != 0);
+
+            // augment along the path
+            do {
+                int j1 = way[j0];
+                rowOf[j0] = rowOf[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] match = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (rowOf[j] != 0) {
+                match[rowOf[j] - 1] = j - 1;
+            }
+        }
+        return match;
+    }
+
+    @Override
+    public void setValues(double maxLineDistance, double maxPointDistance,
+            int maxFrameDelay) {
+        this.maxFrameDelay = maxFrameDelay;
+        this.maxLineDistance = maxLineDistance;
+        this.maxPointDistance = maxPointDistance;
+    }
+
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeDouble(maxLineDistance);
+        out.writeDouble(maxPointDistance);
+        out.writeInt(maxFrameDelay);
+
+        out.writeInt(tracks.size());
+        for (Track track : tracks) {
+            out.writeDouble(track.x);
+            out.writeDouble(track.y);
+            out.writeDouble(track.vx);
+            out.writeDouble(track.vy);
+            out.writeUTF(track.type.name());
+            out.writeInt(track.hits);
+            out.writeInt(track.delay);
+            out.writeDouble(track.score);
+            byte[] bytes = ImageCodec.encode(track.image);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        clear();
+
+        maxLineDistance = in.readDouble();
+        maxPointDistance = in.readDouble();
+        maxFrameDelay = in.readInt();
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Track track = new Track();
+            track.x = in.readDouble();
+            track.y = in.readDouble();
+            track.vx = in.readDouble();
+            track.vy = in.readDouble();
+            track.type = Type.valueOf(in.readUTF());
+            track.hits = in.readInt();
+            track.delay = in.readInt();
+            track.score = in.readDouble();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            track.image = ImageCodec.decode(bytes);
+            tracks.add(track);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Track track : tracks) {
+            NativeMemory.releaseImage(track.image);
+        }
+        tracks.clear();
+    }
+
+    /**
+     * Return the number of open tracks.
+     *
+     * @return
+     */
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    /**
+     * A track with position, velocity per frame and the best image of its points.
+     */
+    private static class Track {
+
+        private double x;
+        private double y;
+        private double vx;
+        private double vy;
+
+        private Type type;
+
+        private IplImage image;
+
+        /**
+         * {@link CropScore} of the image.
+         */
+        private double score;
+
+        /**
+         * Number of points of the track.
+         */
+        private int hits;
+
+        /**
+         * Frames since the last point.
+         */
+        private int delay;
+
+        private Track() {
+        }
+
+        /**
+         * Frames since the last point, at least 1. The frame delay is incremented after every
+         * frame.
+         */
+        private int frames() {
+            return Math.max(1, delay);
+        }
+
+        /**
+         * Start a track with its first point. The track takes the image of the point.
+         */
+        private Track(TrackingPoint point) {
+            this.x = point.getX();
+            this.y = point.getY();
+            this.type = point.getType();
+            this.image = point.getImage();
+            this.score = point.getScore();
+            this.hits = 1;
+        }
+
+        /**
+         * Add the next point of the track.
+         */
+        private void update(TrackingPoint point) {
+            int frames = frames();
+            if (hits == 1) {
+                vx = (point.getX() - x) / frames;
+                vy = (point.getY() - y) / frames;
+                x = point.getX();
+                y = point.getY();
+            } else {
+                double px = x + vx * frames;
+                double py = y + vy * frames;
+                double rx = point.getX() - px;
+                double ry = point.getY() - py;
+                x = px + ALPHA * rx;
+                y = py + ALPHA * ry;
+                vx += BETA * rx / frames;
+                vy += BETA * ry / frames;
+            }
+
+            // keep the image with the better score
+            if (score < point.getScore()) {
+                NativeMemory.releaseImage(image);
+                image = point.getImage();
+                score = point.getScore();
+            } else {
+                point.releaseImage();
+            }
+            hits++;
+            delay = 0;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package tracking.model.plugins.hough;
+
+import static com.googlecode.javacv.cpp.opencv_core.cvGetImageROI;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.googlecode.javacv.cpp.opencv_core.CvRect;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Circle detection for small blobs of the binary filter mask in plain Java, in the spirit of the
+ * fast radial symmetry transform. Every boundary pixel of the mask votes along its gradient, in
+ * both directions, for all centers in the radius range. So the center of a disc or a ring collects
+ * the votes of the whole circle, while straight edges only smear their votes along lines. The
+ * gradient is taken from the box filtered mask, which gives much better directions than the
+ * binary mask. The best center is verified by the boundary pixels around one radius: they have to
+ * cover nearly all directions, which a polygon only does at its corners.
+ * <p>
+ * The mask is copied row by row into an array and all buffers are reused, so a blob needs no
+ * native call besides reading its rows. An instance is not thread safe.
+ *
+ * @author Philipp
+ */
+public class RadialSymmetry {
+
+    /**
+     * Default minimum part of the directions, which has to be covered by the circle.
+     */
+    public static final double DEFAULT_MIN_COVERAGE = 0.9;
+
+    /**
+     * Number of direction bins for the coverage.
+     */
+    private static final int DIRECTIONS = 32;
+
+    /**
+     * Radius of the box filter for the gradients.
+     */
+    private static final int SMOOTH = 2;
+
+    private double minCoverage = DEFAULT_MIN_COVERAGE;
+
+    /**
+     * The mask of the ROI, one byte per pixel.
+     */
+    private byte[] pixels = new byte[0];
+
+    /**
+     * Integral image of the mask with one extra row and column.
+     */
+    private int[] sums = new int[0];
+
+    /**
+     * The votes for the centers.
+     */
+    private int[] votes = new int[0];
+
+    /**
+     * Positions and gradient directions of the boundary pixels.
+     */
+    private int[] edgeX = new int[0];
+
+    private int[] edgeY = new int[0];
+
+    private float[] edgeDX = new float[0];
+
+    private float[] edgeDY = new float[0];
+
+    /**
+     * Histogram of the boundary distances to the center.
+     */
+    private int[] distances = new int[0];
+
+    private boolean[] covered = new boolean[DIRECTIONS];
+
+    /**
+     * Set the minimum part of the directions, which has to be covered by the circle.
+     *
+     * @param coverage
+     *            0 to 1.
+     */
+    public void setMinCoverage(double coverage) {
+        minCoverage = coverage;
+    }
+
+    /**
+     * Search a circle in the ROI of a single channel mask.
+     *
+     * @param roiImage
+     *            single channel {@link IplImage} with depth 8, 0 is background.
+     * @param minRadius
+     *            minimum radius, at least 2.
+     * @param maxRadius
+     *            maximum radius, 0 for half of the longer side of the ROI.
+     * @return <code>true</code> if there is a circle.
+     */
+    public boolean detect(IplImage roiImage, int minRadius, int maxRadius) {
+        CvRect roi = cvGetImageROI(roiImage);
+        int width = roi.width();
+        int height = roi.height();
+        if (width < 5 || height < 5) {
+            return false;
+        }
+        readMask(roiImage, roi);
+        return detect(width, height, minRadius, maxRadius);
+    }
+
+    /**
+     * Search a circle in the pixel array.
+     */
+    private boolean detect(int width, int height, int minRadius, int maxRadius) {
+        int rMin = Math.max(2, minRadius);
+        int rMax = Math.max(width, height) / 2 + 2;
+        if (maxRadius > 0) {
+            rMax = Math.min(rMax, maxRadius);
+        }
+        if (rMax < rMin) {
+            return false;
+        }
+
+        integrate(width, height);
+        int edges = findEdges(width, height);
+        if (edges < 2 * Math.PI * rMin) {
+            return false;
+        }
+
+        // vote along the gradients
+        int size = width * height;
+        if (votes.length < size) {
+            votes = new int[size];
+        } else {
+            Arrays.fill(votes, 0, size, 0);
+        }
+        for (int e = 0; e < edges; e++) {
+            for (int r = rMin; r <= rMax; r++) {
+                vote(Math.round(edgeX[e] + edgeDX[e] * r),
+                        Math.round(edgeY[e] + edgeDY[e] * r), width, height);
+                vote(Math.round(edgeX[e] - edgeDX[e] * r),
+                        Math.round(edgeY[e] - edgeDY[e] * r), width, height);
+            }
+        }
+
+        // the center with the most votes in its 3x3 neighbourhood
+        int bestVotes = 0;
+        int cx = 0;
+        int cy = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                int sum = votes[i - width - 1] + votes[i - width]
+                        + votes[i - width + 1] + votes[i - 1] + votes[i]
+                        + votes[i + 1] + votes[i + width - 1]
+                        + votes[i + width] + votes[i + width + 1];
+                if (sum > bestVotes) {
+                    bestVotes = sum;
+                    cx = x;
+                    cy = y;
+                }
+            }
+        }
+        if (bestVotes == 0) {
+            return false;
+        }
+
+        // the radius with the most boundary pixels around it
+        if (distances.length < rMax + 2) {
+            distances = new int[rMax + 2];
+        } else {
+            Arrays.fill(distances, 0);
+        }
+        for (int e = 0; e < edges; e++) {
+            int d = distance(e, cx, cy);
+            if (d < distances.length) {
+                distances[d]++;
+            }
+        }
+        int radius = 0;
+        int bestCount = 0;
+        for (int r = rMin; r <= rMax; r++) {
+            int count = 0;
+            int band = band(r);
+            for (int d = Math.max(0, r - band); d <= r + band
+                    && d < distances.length; d++) {
+                count += distances[d];
+            }
+            if (count > bestCount) {
+                bestCount = count;
+                radius = r;
+            }
+        }
+        if (radius == 0) {
+            return false;
+        }
+
+        // the boundary pixels of this radius have to surround the center
+        Arrays.fill(covered, false);
+        int band = band(radius);
+        int directions = 0;
+        for (int e = 0; e < edges; e++) {
+            if (Math.abs(distance(e, cx, cy) - radius) <= band) {
+                double angle = Math.atan2(edgeY[e] - cy, edgeX[e] - cx);
+                int bin = (int) ((angle + Math.PI) / (2 * Math.PI) * DIRECTIONS)
+                        % DIRECTIONS;
+                if (!covered[bin]) {
+                    covered[bin] = true;
+                    directions++;
+                }
+            }
+        }
+        return directions >= minCoverage * DIRECTIONS;
+    }
+
+    /**
+     * Allowed distance of a boundary pixel to the radius.
+     */
+    private static int band(int radius) {
+        return Math.max(1, (int) Math.round(radius * 0.06));
+    }
+
+    private int distance(int e, int cx, int cy) {
+        int dx = edgeX[e] - cx;
+        int dy = edgeY[e] - cy;
+        return (int) Math.round(Math.sqrt(dx * dx + dy * dy));
+    }
+
+    /**
+     * Copy the rows of the ROI into the pixel array.
+     */
+    private void readMask(IplImage image, CvRect roi) {
+        int width = roi.width();
+        int height = roi.height();
+        if (pixels.length < width * height) {
+            pixels = new byte[width * height];
+        }
+        ByteBuffer buffer = image.getByteBuffer();
+        int step = image.widthStep();
+        for (int y = 0; y < height; y++) {
+            buffer.position((roi.y() + y) * step + roi.x());
+            buffer.get(pixels, y * width, width);
+        }
+    }
+
+    /**
+     * Build the integral image of the mask for the box filter.
+     */
+    private void integrate(int width, int height) {
+        int stride = width + 1;
+        if (sums.length < stride * (height + 1)) {
+            sums = new int[stride * (height + 1)];
+        }
+        Arrays.fill(sums, 0, stride, 0);
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            int row = (y + 1) * stride;
+            sums[row] = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += value(y * width + x);
+                sums[row + x + 1] = sums[row - stride + x + 1] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Box filtered mask at x, y. Outside of the ROI is background.
+     */
+    private int smooth(int x, int y, int width, int height) {
+        int x0 = Math.max(0, x - SMOOTH);
+        int y0 = Math.max(0, y - SMOOTH);
+        int x1 = Math.min(width, x + SMOOTH + 1);
+        int y1 = Math.min(height, y + SMOOTH + 1);
+        if (x0 >= x1 || y0 >= y1) {
+            return 0;
+        }
+        int stride = width + 1;
+        return sums[y1 * stride + x1] - sums[y0 * stride + x1]
+                - sums[y1 * stride + x0] + sums[y0 * stride + x0];
+    }
+
+    /**
+     * Find the boundary pixels of the mask, pixels of the mask with a background pixel as
+     * 4-neighbour, and store their position and the direction of the smoothed gradient.
+     *
+     * @return the number of boundary pixels.
+     */
+    private int findEdges(int width, int height) {
+        int edges = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                if (value(i) == 0) {
+                    continue;
+                }
+                if (x > 0 && y > 0 && x < width - 1 && y < height - 1
+                        && value(i - 1) != 0 && value(i + 1) != 0
+                        && value(i - width) != 0 && value(i + width) != 0) {
+                    continue; // inside the mask
+                }
+                int gx = smooth(x + 1, y - 1, width, height) + 2
+                        * smooth(x + 1, y, width, height)
+                        + smooth(x + 1, y + 1, width, height)
+                        - smooth(x - 1, y - 1, width, height) - 2
+                        * smooth(x - 1, y, width, height)
+                        - smooth(x - 1, y + 1, width, height);
+                int gy = smooth(x - 1, y + 1, width, height) + 2
+                        * smooth(x, y + 1, width, height)
+                        + smooth(x + 1, y + 1, width, height)
+                        - smooth(x - 1, y - 1, width, height) - 2
+                        * smooth(x, y - 1, width, height)
+                        - smooth(x + 1, y - 1, width, height);
+                if (gx == 0 && gy == 0) {
+                    continue;
+                }
+                if (edges == edgeX.length) {
+                    growEdges();
+                }
+                float length = (float) Math.sqrt(gx * gx + gy * gy);
+                edgeX[edges] = x;
+                edgeY[edges] = y;
+                edgeDX[edges] = gx / length;
+                edgeDY[edges] = gy / length;
+                edges++;
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * 1 for a pixel of the mask, 0 for background.
+     */
+    private int value(int i) {
+        return pixels[i] != 0 ? 1 : 0;
+    }
+
+    private void vote(int x, int y, int width, int height) {
+        if (x >= 0 && y >= 0 && x < width && y < height) {
+            votes[y * width + x]++;
+        }
+    }
+
+    private void growEdges() {
+        int length = Math.max(256, edgeX.length * 2);
+        edgeX = Arrays.copyOf(edgeX, length);
+        edgeY = Arrays.copyOf(edgeY, length);
+        edgeDX = Arrays.copyOf(edgeDX, length);
+        edgeDY = Arrays.copyOf(edgeDY, length);
+    }
+}
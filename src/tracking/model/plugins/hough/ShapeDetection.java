@@ -1,13 +1,21 @@
 package tracking.model.plugins.hough;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateMemStorage;
+import static com.googlecode.javacv.cpp.opencv_core.CV_WHOLE_SEQ;
+import static com.googlecode.javacv.cpp.opencv_core.cvClearMemStorage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateImageHeader;
 import static com.googlecode.javacv.cpp.opencv_core.cvGetSeqElem;
+import static com.googlecode.javacv.cpp.opencv_core.cvGetSize;
 import static com.googlecode.javacv.cpp.opencv_core.cvPoint;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImageHeader;
+import static com.googlecode.javacv.cpp.opencv_core.cvSetData;
+import static com.googlecode.javacv.cpp.opencv_core.cvSetImageROI;
 import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.CV_HOUGH_GRADIENT;
 import static com.googlecode.javacv.cpp.opencv_imgproc.CV_HOUGH_STANDARD;
+import static com.googlecode.javacv.cpp.opencv_imgproc.CV_POLY_APPROX_DP;
 import static com.googlecode.javacv.cpp.opencv_imgproc.blur;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvApproxPoly;
+import static com.googlecode.javacv.cpp.opencv_imgproc.cvArcLength;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvCanny;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvHoughCircles;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvHoughLines2;
@@ -17,40 +25,241 @@ import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.Vector;
 
+import tracking.model.Metrics;
+import tracking.model.Metrics.Stage;
+import tracking.model.NativeMemory;
 import tracking.model.plugins.StreetObject;
 import tracking.model.plugins.StreetObject.Type;
 
+import com.googlecode.javacpp.Loader;
+import com.googlecode.javacv.cpp.opencv_core.CvContour;
 import com.googlecode.javacv.cpp.opencv_core.CvMemStorage;
+import com.googlecode.javacv.cpp.opencv_core.CvPoint;
 import com.googlecode.javacv.cpp.opencv_core.CvPoint2D32f;
+import com.googlecode.javacv.cpp.opencv_core.CvRect;
 import com.googlecode.javacv.cpp.opencv_core.CvSeq;
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
 
+/**
+ * Detect the shape of a blob. Circles are found with one of the {@link CircleEngine}s, polygons
+ * with one of the {@link PolygonEngine}s. An instance holds the scratch state of
+ * one thread: the memory storage for the Hough sequences, an image header for the blobs and a
+ * copy of the detection values. It is not thread safe, use one instance per thread and release it
+ * afterwards. The line cleaning and angle methods are static and thread safe.
+ *
+ * @author Philipp
+ */
 public class ShapeDetection {
 
-    private static CvMemStorage storage = cvCreateMemStorage(0);
+    /**
+     * The ways to detect circles.
+     */
+    public static enum CircleEngine {
+        /**
+         * cvHoughCircles on the blob.
+         */
+        HOUGH_CIRCLES,
+        /**
+         * Gradient voting in Java with reused buffers, see {@link RadialSymmetry}. Only for single
+         * channel images, others use cvHoughCircles.
+         */
+        RADIAL_SYMMETRY;
+    }
+
+    /**
+     * The ways to detect polygons.
+     */
+    public static enum PolygonEngine {
+        /**
+         * Canny and cvHoughLines2 on the blob, the lines are cleaned and their angles verified.
+         * Finds triangles and rectangles.
+         */
+        HOUGH_LINES,
+        /**
+         * Polygonal approximation of the contour of cvFindContours, the vertex count and the
+         * inner angles are verified. Needs no image pass and finds octagons too.
+         */
+        CONTOUR;
+    }
+
+    /**
+     * Memory storage for the Hough sequences, cleared for every blob.
+     */
+    private CvMemStorage storage;
+
+    /**
+     * Header with the data of the image of the last blob, the ROI is set to the blob.
+     */
+    private IplImage view;
+
+    private int[] circleBlur = new int[2];
+
+    private int[] circle = new int[6];
+
+    private int[] polygonBlur = new int[2];
+
+    private int[] polygon = new int[3];
+
+    private double[] shape = new double[3];
+
+    private CircleEngine circleEngine = CircleEngine.HOUGH_CIRCLES;
+
+    /**
+     * Created with the first blob of {@link CircleEngine#RADIAL_SYMMETRY}.
+     */
+    private RadialSymmetry radialSymmetry;
+
+    private PolygonEngine polygonEngine = PolygonEngine.HOUGH_LINES;
+
+    /**
+     * Accuracy of the approximation as part of the perimeter and the angle threshold in degrees
+     * of the contour engine.
+     */
+    private double[] approx = { 0.04, 12.0 };
+
+    /**
+     * Create a shape detection with its own memory storage.
+     */
+    public ShapeDetection() {
+        storage = NativeMemory.createStorage();
+    }
+
+    /**
+     * Copy the values of the detection. The arrays are copied, so they can be changed afterwards
+     * without affecting a running detection.
+     * 
+     * @param circleBlur
+     *            blur x and y before cvHoughCircles
+     * @param circle
+     *            dp, minDist, param1, param2, minRadius and maxRadius of cvHoughCircles
+     * @param polygonBlur
+     *            blur x and y before cvCanny
+     * @param polygon
+     *            line threshold of cvHoughLines2, canny low and high
+     * @param shape
+     *            verify angle threshold, clean lines angle and distance threshold
+     */
+    public void setValues(int[] circleBlur, int[] circle, int[] polygonBlur,
+            int[] polygon, double[] shape) {
+        this.circleBlur = circleBlur.clone();
+        this.circle = circle.clone();
+        this.polygonBlur = polygonBlur.clone();
+        this.polygon = polygon.clone();
+        this.shape = shape.clone();
+    }
+
+    /**
+     * Select the circle engine.
+     * 
+     * @param engine
+     *            the {@link CircleEngine}
+     */
+    public void setCircleEngine(CircleEngine engine) {
+        this.circleEngine = engine;
+    }
 
-    private static CvSeq sequence;
+    /**
+     * Select the polygon engine.
+     * 
+     * @param engine
+     *            the {@link PolygonEngine}
+     * @param approx
+     *            accuracy of the approximation as part of the perimeter and the angle threshold
+     *            in degrees for {@link PolygonEngine#CONTOUR}. The array is copied.
+     */
+    public void setPolygonEngine(PolygonEngine engine, double[] approx) {
+        this.polygonEngine = engine;
+        this.approx = approx.clone();
+    }
+
+    /**
+     * Search for a {@link StreetObject} shape in a region of an image. The image is only read and
+     * its ROI is not changed, so several instances can detect blobs of the same image at the same
+     * time.
+     * 
+     * @param image
+     *            single channel {@link IplImage} with the blobs
+     * @param box
+     *            the region of the blob
+     * @param contour
+     *            the contour of the blob for {@link PolygonEngine#CONTOUR}. It is only read.
+     * @return the {@link StreetObject.Type} of the found shape.
+     *         {@link StreetObject.Type.NOT_SPECIFIED} if no shape is detected.
+     */
+    public StreetObject.Type detect(IplImage image, CvRect box, CvSeq contour) {
+        if (view == null || view.width() != image.width()
+                || view.height() != image.height()
+                || view.depth() != image.depth()
+                || view.nChannels() != image.nChannels()) {
+            releaseView();
+            view = cvCreateImageHeader(cvGetSize(image), image.depth(),
+                    image.nChannels());
+        }
+        cvSetData(view, image.imageData(), image.widthStep());
+        cvSetImageROI(view, box);
+        return detect(view, contour);
+    }
 
     /**
      * Search for {@link StreetObject} shapes and return the {@link StreetObject.Type}.
      * 
      * @param roiImage
-     *            search in this {@link IplImage}
+     *            search in this {@link IplImage}, in its ROI if set.
+     * @param contour
+     *            the contour of the blob for {@link PolygonEngine#CONTOUR}. Without contour the
+     *            Hough lines are used.
      * @return the {@link StreetObject.Type} of the found shape.
      *         {@link StreetObject.Type.NOT_SPECIFIED} if no shape is detected.
      */
-    public static StreetObject.Type detect(IplImage roiImage, int circleBlurX,
-            int circleBlurY, int db, int minDist, int param1, int param2,
-            int minRadius, int maxRadius, int polygonBlurX, int polygonBlurY,
-            int lineThreshold, int cannyLow, int cannyHigh,
-            double verifyAngleThreshold, double cleanLinesAngleThreshold,
-            double cleanLinesDistanceThreshold) {
-        return trackCircle(roiImage, circleBlurX, circleBlurY, db, minDist,
-                param1, param2, minRadius, maxRadius) ? StreetObject.Type.SIGN_CIRCLE
-                : trackPolygon(roiImage, polygonBlurX, polygonBlurY,
-                        lineThreshold, cannyLow, cannyHigh,
-                        verifyAngleThreshold, cleanLinesAngleThreshold,
-                        cleanLinesDistanceThreshold);
+    public StreetObject.Type detect(IplImage roiImage, CvSeq contour) {
+        // the sequences of the last blob are not needed anymore
+        cvClearMemStorage(storage);
+
+        long start = Metrics.start();
+        boolean found;
+        if (circleEngine == CircleEngine.RADIAL_SYMMETRY
+                && roiImage.nChannels() == 1) {
+            if (radialSymmetry == null) {
+                radialSymmetry = new RadialSymmetry();
+            }
+            found = radialSymmetry.detect(roiImage, circle[4], circle[5]);
+        } else {
+            found = trackCircle(roiImage, storage, circleBlur[0],
+                    circleBlur[1], circle[0], circle[1], circle[2], circle[3],
+                    circle[4], circle[5]);
+        }
+        Metrics.end(Stage.TRACK_CIRCLE, start);
+        if (found) {
+            return StreetObject.Type.SIGN_CIRCLE;
+        }
+
+        start = Metrics.start();
+        StreetObject.Type type;
+        if (polygonEngine == PolygonEngine.CONTOUR && contour != null) {
+            type = approximatePolygon(contour, storage, approx[0], approx[1]);
+        } else {
+            type = trackPolygon(roiImage, storage, polygonBlur[0],
+                    polygonBlur[1], polygon[0], polygon[1], polygon[2],
+                    shape[0], shape[1], shape[2]);
+        }
+        Metrics.end(Stage.TRACK_POLYGON, start);
+        return type;
+    }
+
+    /**
+     * Release the memory storage and the image header. The instance can not be used afterwards.
+     */
+    public void release() {
+        releaseView();
+        NativeMemory.releaseStorage(storage);
+        storage = null;
+    }
+
+    private void releaseView() {
+        if (view != null) {
+            cvReleaseImageHeader(view);
+            view = null;
+        }
     }
 
     /**
@@ -59,11 +268,10 @@ public class ShapeDetection {
      * @param roiImage
      * @return
      */
-    private static boolean trackCircle(IplImage roiImage, int circleBlurX,
-            int circleBlurY, int db, int minDist, int param1, int param2,
-            int minRadius, int maxRadius) {
-        storage = CvMemStorage.create();
-        sequence = new CvSeq();
+    private static boolean trackCircle(IplImage roiImage,
+            CvMemStorage storage, int circleBlurX, int circleBlurY, int db,
+            int minDist, int param1, int param2, int minRadius, int maxRadius) {
+        CvSeq sequence = new CvSeq();
 
         // Get the roi image of the given image. This is a new instance.
         IplImage tmpImage = DetectionUtils.getRoiImage(roiImage);
@@ -113,7 +321,7 @@ public class ShapeDetection {
                 minDist, param1, param2, minRadius, maxRadius);
 
         // release the tmpImage, because it's not longer needed.
-        cvReleaseImage(tmpImage);
+        NativeMemory.releaseImage(tmpImage);
 
         // if there is one or more cicles return true, else return false.
         if (sequence.total() != 0) {
@@ -130,7 +338,7 @@ public class ShapeDetection {
      * @return the {@link Type} of the shape
      */
     private static StreetObject.Type trackPolygon(IplImage srcImage,
-            int polygonBlurX, int polygonBlurY, int lineThreshold,
+            CvMemStorage storage, int polygonBlurX, int polygonBlurY, int lineThreshold,
             int cannyLow, int cannyHigh, double verifyAngleThreshold,
             double cleanLinesAngleThreshold, double cleanLinesDistanceThreshold) {
 
@@ -140,7 +348,7 @@ public class ShapeDetection {
         blur(workImage, workImage, cvSize(polygonBlurX, polygonBlurY),
                 cvPoint(0, 0), 0);
         cvCanny(workImage, workImage, cannyLow, cannyHigh, 3);
-        sequence = new CvSeq();
+        CvSeq sequence = new CvSeq();
 
         /**
          * CvSeq* lines = cvHoughLines2(CvArr* image, void* line_storage, int method, double rho,
@@ -191,7 +399,7 @@ public class ShapeDetection {
                 Math.PI / 180, lineThreshold, 0, 0); // standard 150 bei threshold
 
         // release workImage. the only image in this whole class
-        cvReleaseImage(workImage);
+        NativeMemory.releaseImage(workImage);
 
         // list for the lines
         LinkedList<CvPoint2D32f> list = new LinkedList<CvPoint2D32f>();
@@ -217,6 +425,65 @@ public class ShapeDetection {
         return verify(angles, verifyAngleThreshold);
     }
 
+    /**
+     * Approximate the contour with a polygon and classify it by the number of vertices: 3 is a
+     * triangle, 4 a rectangle and 8 an octagon. Every inner angle has to be within the threshold
+     * of the angle of the regular polygon (60, 90 or 135 degrees).
+     * 
+     * @param contour
+     *            the contour of cvFindContours
+     * @param storage
+     *            memory storage for the polygon
+     * @param epsilon
+     *            maximum distance of the polygon to the contour as part of the perimeter
+     * @param threshold
+     *            the angle threshold in degrees
+     * @return the {@link Type} of the polygon
+     */
+    static StreetObject.Type approximatePolygon(CvSeq contour,
+            CvMemStorage storage, double epsilon, double threshold) {
+        double perimeter = cvArcLength(contour, CV_WHOLE_SEQ, 1);
+        CvSeq poly = cvApproxPoly(contour, Loader.sizeof(CvContour.class),
+                storage, CV_POLY_APPROX_DP, epsilon * perimeter, 0);
+
+        int vertices = poly.total();
+        StreetObject.Type type;
+        double expected;
+        if (vertices == 3) {
+            type = Type.SIGN_TRIANGLE;
+            expected = 60;
+        } else if (vertices == 4) {
+            type = Type.SIGN_RECTANGLE;
+            expected = 90;
+        } else if (vertices == 8) {
+            type = Type.SIGN_OCTAGON;
+            expected = 135;
+        } else {
+            return Type.NOT_SPECIFIED;
+        }
+
+        int[] x = new int[vertices];
+        int[] y = new int[vertices];
+        for (int i = 0; i < vertices; i++) {
+            CvPoint point = new CvPoint(cvGetSeqElem(poly, i));
+            x[i] = point.x();
+            y[i] = point.y();
+        }
+
+        for (int i = 0; i < vertices; i++) {
+            int prev = (i + vertices - 1) % vertices;
+            int next = (i + 1) % vertices;
+            // the vertex is the center point
+            double angle = DetectionGeometry.computeAngle(new double[] { x[i],
+                    y[i], 0 }, new double[] { x[prev], y[prev], 0 },
+                    new double[] { x[next], y[next], 0 });
+            if (Math.abs(Math.toDegrees(angle) - expected) > threshold) {
+                return Type.NOT_SPECIFIED;
+            }
+        }
+        return type;
+    }
+
     /**
      * Verfify the shape of the lines to each other
      * 
@@ -298,7 +565,7 @@ public class ShapeDetection {
      *            the maximum distance between the lines
      * @return the list after deleting duplicates
      */
-    private static LinkedList<CvPoint2D32f> cleanLines(
+    static LinkedList<CvPoint2D32f> cleanLines(
             LinkedList<CvPoint2D32f> list, double theta, double rho) {
 
         LinkedList<CvPoint2D32f> result = new LinkedList<CvPoint2D32f>();
@@ -442,7 +709,7 @@ public class ShapeDetection {
      *            distance from (0,0), Point.y is the angle theta.
      * @return
      */
-    private static double[] computeAngles(LinkedList<CvPoint2D32f> list) {
+    static double[] computeAngles(LinkedList<CvPoint2D32f> list) {
         if (list.size() < 2) {
             return null;
         }
@@ -1,36 +1,48 @@
 package tracking.model.plugins.hough;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
-
 import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.LinkedList;
 
+import tracking.model.ImageCodec;
+import tracking.model.NativeMemory;
 import tracking.model.plugins.StreetObject;
+import tracking.model.plugins.StreetObject.Type;
+import tracking.model.plugins.hough.TrackStore.IntList;
 
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
 
 /**
  * Processing the location data of the signs from the {@link HoughSignRecognition} class. Filter
  * points, so that every sign is only recognized once.
+ * <p>
+ * The open points and lines are kept in a {@link TrackStore}. The added {@link TrackingPoint}s are
+ * copied into it and the store takes their images, so tracking a frame does not allocate besides
+ * the found {@link StreetObject}s. A line keeps only the image with the best {@link CropScore} of
+ * its points, the others are released as soon as they lose.
  * 
  * @author Philipp Unger
  */
-public class SignTracker {
-
-    /**
-     * List of sign location points
-     */
-    private LinkedList<TrackingPoint> trackingPoints;
+public class SignTracker implements PointTracker {
 
     /**
-     * List of located lines
+     * Sign location points and located lines.
      */
-    private LinkedList<TrackingLine> trackingLines;
+    private TrackStore store;
 
     private double maxLineDistance;
     private double maxPointDistance;
     private int maxFrameDelay;
 
+    /**
+     * Reused lists for the points of the neighbouring cells.
+     */
+    private final IntList candidates = new IntList();
+    private final IntList thirdCandidates = new IntList();
+
     /**
      * Constructor for sign tracker
      * 
@@ -48,8 +60,12 @@ public class SignTracker {
         this.maxLineDistance = maxLineDistance;
         this.maxPointDistance = maxPointDistance;
         this.maxFrameDelay = maxFrameDelay;
-        this.trackingLines = new LinkedList<TrackingLine>();
-        this.trackingPoints = new LinkedList<TrackingPoint>();
+        this.store = new TrackStore(maxPointDistance);
+    }
+
+    @Override
+    public Mode getMode() {
+        return Mode.FIRST_HIT;
     }
 
     /**
@@ -60,213 +76,331 @@ public class SignTracker {
      * list. This method returns a {@link LinkedList} of {@link StreetObject}
      * 
      * @param trackingPoints
-     *            a {@link LinkedList} of new found tracking points
+     *            a {@link LinkedList} of new found tracking points. The tracker takes their
+     *            images.
      * @return {@link LinkedList} of the tracked {@link StreetObject}
      */
+    @Override
     public LinkedList<StreetObject> addTrackpoints(
             LinkedList<TrackingPoint> trackingPoints) {
-        this.trackingPoints.addAll(trackingPoints);
+        for (TrackingPoint point : trackingPoints) {
+            store.addPoint((int) point.getX(), (int) point.getY(), point
+                    .getType().ordinal(), point.getFrameDelay(), point
+                    .getImage(), point.getScore());
+        }
         dctLinePoint();
         dctPointLine();
         LinkedList<StreetObject> objects = new LinkedList<StreetObject>();
 
-        for (int i = 0; i < trackingLines.size(); i++) {
-            TrackingLine line = trackingLines.get(i);
-            if (line.getFrameDelay() > maxFrameDelay) {
-                objects.add(new StreetObject(line.getImage(), line.getType()));
-                line.releaseImage();
-                trackingLines.remove(i);
-                i--;
+        for (int l = 0; l < store.lines; l++) {
+            if (store.lineDelay[l] > maxFrameDelay) {
+                objects.add(new StreetObject(store.lineImage[l],
+                        TrackStore.TYPES[store.lineType[l]]));
+                NativeMemory.releaseImage(store.lineImage[l]);
             }
         }
-
-        for (int i = 0; i < this.trackingPoints.size(); i++) {
-            TrackingPoint point = this.trackingPoints.get(i);
-            if (point.getFrameDelay() > maxFrameDelay) {
-                objects.add(new StreetObject(point.getImage(), point.getType()));
-                point.releaseImage();
-                this.trackingPoints.remove(i);
-                i--;
+        store.compactLines(maxFrameDelay);
+
+        int p = store.first;
+        while (p != TrackStore.NONE) {
+            int next = store.next[p];
+            if (store.delay[p] > maxFrameDelay) {
+                objects.add(new StreetObject(store.image[p],
+                        TrackStore.TYPES[store.type[p]]));
+                NativeMemory.releaseImage(store.image[p]);
+                store.unlinkPoint(p);
             }
+            p = next;
         }
+        store.compactPoints();
 
         incrementFrameDelay();
         return objects;
     }
 
     /**
-     * Detect lines with 3 points on it with "Take First Hit" method
+     * Detect lines with 3 points on it with "Take First Hit" method. The points are compared in
+     * list order like in a triple loop over the list, but only with the points of the neighbouring
+     * cells: P2 has to be within maxPointDistance of P1 and P3 within maxPointDistance of P2.
      */
     private void dctPointLine() {
-        // trackingPoints is null, when all trackingPoints are tracked in the dctLinePoint method
-        if (trackingPoints == null || trackingPoints.isEmpty()
-                || trackingPoints.size() < 3) {
+        if (store.points < 3) {
             return;
         }
-        // find all lines between each pair of 2 points
-        for (int i = 0; i < trackingPoints.size() - 1; i++) {
-            TrackingPoint P1 = trackingPoints.get(i);
-
-            jfor: for (int j = i + 1; j < trackingPoints.size(); j++) {
-                TrackingPoint P2 = trackingPoints.get(j);
+        int[] x = store.x;
+        int[] y = store.y;
+        int[] type = store.type;
+        int p1 = store.first;
+        while (p1 != TrackStore.NONE) {
+            int next = store.next[p1];
+
+            // find all lines between P1 and the following points
+            store.neighbours(x[p1], y[p1], candidates);
+            jfor: for (int c2 = 0; c2 < candidates.size; c2++) {
+                int p2 = candidates.get(c2);
 
                 // check if the points have a maximum distance of maxPointDistance
-                if (P1.getType() == P2.getType()
-                        && P1.distance(P2) <= maxPointDistance) {
+                if (store.order[p2] > store.order[p1]
+                        && type[p1] == type[p2]
+                        && Point2D.distance(x[p1], y[p1], x[p2], y[p2])
+                            <= maxPointDistance) {
 
                     // check if one of the remaining points is on a line built from 2 other points
-                    for (int j2 = 0; j2 < trackingPoints.size(); j2++) {
+                    store.neighbours(x[p2], y[p2], thirdCandidates);
+                    for (int c3 = 0; c3 < thirdCandidates.size; c3++) {
+                        int p3 = thirdCandidates.get(c3);
 
                         // these points already are on the line
-                        if (j2 != i && j2 != j) {
-                            TrackingPoint P3 = trackingPoints.get(j2);
-
-                            // The type of P3 must be the same as P2 and P1
-                            // The distance of P3 to P2 must be lower than maxPointDistance. P2 is
-                            // the tip of our temporary line: When the sign is only going in one
-                            // direction, the points are sorted in the chronology they appear.
-                            // The distance of P3 to the line(P1,P2) must be lower than
-                            // maxLineDistance.
-                            if (P2.getType() == P3.getType()
-                                    && P3.distance(P2) <= maxPointDistance
-                                    && Line2D.ptLineDist(P1.getX(), P1.getY(),
-                                            P2.getX(), P2.getY(), P3.getX(),
-                                            P3.getY()) <= maxLineDistance) {
-
-                                // the point is on the line. Make a new line.
-                                trackingLines.add(new TrackingLine(P2, P3, P3
-                                        .getType(), getMaxImage(P2, P3)));
-
-                                // release images and remove points, that are now a line, form
-                                // trackingPoints list.
-                                P1.releaseImage();
-                                P2.releaseImage();
-                                P3.releaseImage();
-                                // when a point is removed from the list, one or more indices change
-                                // and i,j and j2 have to be corrected.
-                                trackingPoints.remove(i);
-                                j--;
-                                trackingPoints.remove(j);
-                                if (j2 >= i && j2 < j + 1) {
-                                    j2--;
-                                } else if (j2 >= j + 1) {
-                                    j2 = j2 - 2;
-                                }
-                                trackingPoints.remove(j2);
-                                i--;
-                                break jfor;
+                        if (p3 == p1 || p3 == p2) {
+                            continue;
+                        }
+
+                        // The type of P3 must be the same as P2 and P1
+                        // The distance of P3 to P2 must be lower than maxPointDistance. P2 is
+                        // the tip of our temporary line: When the sign is only going in one
+                        // direction, the points are sorted in the chronology they appear.
+                        // The distance of P3 to the line(P1,P2) must be lower than
+                        // maxLineDistance.
+                        if (type[p2] == type[p3]
+                                && Point2D.distance(x[p3], y[p3], x[p2], y[p2])
+                                    <= maxPointDistance
+                                && Line2D.ptLineDist(x[p1], y[p1], x[p2],
+                                        y[p2], x[p3], y[p3]) <= maxLineDistance) {
+
+                            // the point is on the line. Make a new line with the best image
+                            // of the 3 points and release the other images.
+                            int best = best(best(p1, p2), p3);
+                            store.addLine(x[p2], y[p2], x[p3], y[p3], type[p3],
+                                    0, store.image[best], store.score[best]);
+                            releaseUnless(p1, best);
+                            releaseUnless(p2, best);
+                            releaseUnless(p3, best);
+
+                            // remove the points, that are now a line
+                            store.unlinkPoint(p2);
+                            store.unlinkPoint(p3);
+                            next = store.next[p1];
+                            store.unlinkPoint(p1);
+                            // The list index of P1 is processed again. When P3 was in front of
+                            // P1, the points behind P1 moved by one less, so the first of them
+                            // is skipped.
+                            if (store.order[p3] < store.order[p1]
+                                    && next != TrackStore.NONE) {
+                                next = store.next[next];
                             }
+                            break jfor;
                         }
-                    }// end for j2
+                    }// end for p3
                 } // end if distance P1 P2
-            }// end for j
-        }// end for i
-
-    }
-
-    /**
-     * Return the bigger image of P1 and P2
-     * 
-     * @param P1
-     * @param P2
-     * @return
-     */
-    private IplImage getMaxImage(TrackingPoint P1, TrackingPoint P2) {
-        int x = P1.getImage().height() * P1.getImage().width();
-        int y = P2.getImage().height() * P2.getImage().width();
-
-        if (x < y) {
-            return P2.getImage();
-        } else {
-            return P1.getImage();
+            }// end for p2
+            p1 = next;
         }
     }
 
     /**
-     * Detect point that belongs to a line with "Take First Hit" method
+     * Detect point that belongs to a line with "Take First Hit" method. The points are compared in
+     * list order, but only the points in the cells around the tip of the line.
      */
     private void dctLinePoint() {
 
-        if (trackingLines.isEmpty() || trackingPoints.isEmpty()) {
+        if (store.lines == 0 || store.points == 0) {
             return;
         }
 
         // go through all lines
-        for (int i = 0; i < trackingLines.size(); i++) {
-            TrackingLine line = trackingLines.get(i);
-            // compare with all points
-            for (int j = 0; j < trackingPoints.size(); j++) {
-                TrackingPoint point = trackingPoints.get(j);
-
-                // ****a new point is found
-                // Frame delay of new point must be 0. That means it's a really new point.
-                // The smallest distance of the point to the line must be lower than
-                // maxLineDistance.
-                // The distance from P2, which is the tip of the line, to the new point must be
-                // lower than maxPointDistance.
-                // The StreetObject.Type of the new point must be the same as the Type of the line.
-                if (point.getFrameDelay() == 0
-                        && line.getType() == point.getType()
-                        && line.getP2().distance(point) <= maxPointDistance
-                        && line.ptLineDist(point) <= maxLineDistance) {
-
-                    // set new tip of the line
-                    line.setLine(line.getP2(), point);
-
-                    // set new image for the line if it's bigger than the old one. (better quality)
-                    IplImage old = line.getImage();
-                    IplImage nevv = point.getImage();
-
-                    int x = old.height() * old.width();
-                    int y = nevv.height() * nevv.width();
-                    if (x < y) {
-                        line.setImage(nevv);
-                        cvReleaseImage(old);
+        for (int l = 0; l < store.lines; l++) {
+            // only points behind this position in the list are compared
+            long after = Long.MIN_VALUE;
+            int found;
+            do {
+                found = TrackStore.NONE;
+                int tipX = store.x2[l];
+                int tipY = store.y2[l];
+                store.neighbours(tipX, tipY, candidates);
+                for (int c = 0; c < candidates.size; c++) {
+                    int p = candidates.get(c);
+
+                    // ****a new point is found
+                    // Frame delay of new point must be 0. That means it's a really new point.
+                    // The smallest distance of the point to the line must be lower than
+                    // maxLineDistance.
+                    // The distance from P2, which is the tip of the line, to the new point must
+                    // be lower than maxPointDistance.
+                    // The StreetObject.Type of the new point must be the same as the Type of the
+                    // line.
+                    if (store.order[p] > after
+                            && store.delay[p] == 0
+                            && store.lineType[l] == store.type[p]
+                            && Point2D.distance(tipX, tipY, store.x[p],
+                                    store.y[p]) <= maxPointDistance
+                            && Line2D.ptLineDist(store.x1[l], store.y1[l],
+                                    tipX, tipY, store.x[p], store.y[p])
+                                <= maxLineDistance) {
+                        found = p;
+                        break;
                     }
-                    line.resetFrameDelay();
-                    point.releaseImage();
-                    trackingPoints.remove(j);
-
-                } // end if point recognized
+                }
+
+                if (found != TrackStore.NONE) {
+                    // set new tip of the line. The start is set like TrackingLine.setLine did,
+                    // which takes x2 as y1, to keep the results.
+                    store.x1[l] = tipX;
+                    store.y1[l] = store.x[found];
+                    store.x2[l] = store.x[found];
+                    store.y2[l] = store.y[found];
+
+                    // set new image for the line if its score is better
+                    if (store.lineScore[l] < store.score[found]) {
+                        NativeMemory.releaseImage(store.lineImage[l]);
+                        store.lineImage[l] = store.image[found];
+                        store.lineScore[l] = store.score[found];
+                    } else {
+                        NativeMemory.releaseImage(store.image[found]);
+                    }
+                    store.lineDelay[l] = 0;
 
-            }// end for loop: points
+                    // the search goes on behind the point, which follows the removed one
+                    int skipped = store.next[found];
+                    store.unlinkPoint(found);
+                    if (skipped == TrackStore.NONE) {
+                        break;
+                    }
+                    after = store.order[skipped];
+                }
+            } while (found != TrackStore.NONE);
         }
     }
 
-    // /**
-    // * fromIndex inclusive and toIndex exclusive
-    // */
-    // private LinkedList<TrackingLine> subList(LinkedList<TrackingLine> list,
-    // int fromIndex, int toIndex) {
-    // if (fromIndex < 0 || fromIndex > list.size() || toIndex < fromIndex
-    // || toIndex > list.size() || fromIndex == toIndex) {
-    // return null;
-    // }
-    //
-    // LinkedList<TrackingLine> result = new LinkedList<TrackingLine>();
-    //
-    // for (int i = fromIndex; i < toIndex; i++) {
-    // result.add(list.get(i));
-    // }
-    // return result;
-    // }
+    /**
+     * Return the point with the better score, the first one if they are equal.
+     */
+    private int best(int p, int q) {
+        return store.score[p] < store.score[q] ? q : p;
+    }
 
+    private void releaseUnless(int p, int keep) {
+        if (p != keep) {
+            NativeMemory.releaseImage(store.image[p]);
+        }
+    }
+
+    @Override
     public void setValues(double maxLineDistance, double maxPointDistance,
             int maxFrameDelay) {
         this.maxFrameDelay = maxFrameDelay;
         this.maxLineDistance = maxLineDistance;
         this.maxPointDistance = maxPointDistance;
+        store.setDistance(maxPointDistance);
+    }
+
+    /**
+     * Write the state of the tracker: the values and all open tracking points and lines with their
+     * images.
+     * 
+     * @param out
+     *            the stream to write to.
+     * @throws IOException
+     */
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeDouble(maxLineDistance);
+        out.writeDouble(maxPointDistance);
+        out.writeInt(maxFrameDelay);
+
+        out.writeInt(store.points);
+        for (int p = store.first; p != TrackStore.NONE; p = store.next[p]) {
+            out.writeInt(store.x[p]);
+            out.writeInt(store.y[p]);
+            out.writeUTF(TrackStore.TYPES[store.type[p]].name());
+            out.writeInt(store.delay[p]);
+            out.writeDouble(store.score[p]);
+            writeImage(out, store.image[p]);
+        }
+
+        out.writeInt(store.lines);
+        for (int l = 0; l < store.lines; l++) {
+            out.writeInt(store.x1[l]);
+            out.writeInt(store.y1[l]);
+            out.writeInt(store.x2[l]);
+            out.writeInt(store.y2[l]);
+            out.writeUTF(TrackStore.TYPES[store.lineType[l]].name());
+            out.writeInt(store.lineDelay[l]);
+            out.writeDouble(store.lineScore[l]);
+            writeImage(out, store.lineImage[l]);
+        }
+    }
+
+    /**
+     * Remove the open tracking points and lines and release their images.
+     */
+    @Override
+    public void clear() {
+        store.clear();
+    }
+
+    /**
+     * Replace the state of the tracker with the state written by
+     * {@link #writeState(DataOutputStream)}. The open tracking points and lines are released.
+     * 
+     * @param in
+     *            the stream to read from.
+     * @throws IOException
+     */
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        clear();
+
+        maxLineDistance = in.readDouble();
+        maxPointDistance = in.readDouble();
+        maxFrameDelay = in.readInt();
+        store.setDistance(maxPointDistance);
+
+        int points = in.readInt();
+        for (int i = 0; i < points; i++) {
+            int x = in.readInt();
+            int y = in.readInt();
+            Type type = Type.valueOf(in.readUTF());
+            int delay = in.readInt();
+            double score = in.readDouble();
+            store.addPoint(x, y, type.ordinal(), delay, readImage(in), score);
+        }
+
+        int lines = in.readInt();
+        for (int i = 0; i < lines; i++) {
+            int x1 = in.readInt();
+            int y1 = in.readInt();
+            int x2 = in.readInt();
+            int y2 = in.readInt();
+            Type type = Type.valueOf(in.readUTF());
+            int delay = in.readInt();
+            double score = in.readDouble();
+            store.addLine(x1, y1, x2, y2, type.ordinal(), delay, readImage(in),
+                    score);
+        }
+    }
+
+    private static void writeImage(DataOutputStream out, IplImage image)
+            throws IOException {
+        byte[] bytes = ImageCodec.encode(image);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static IplImage readImage(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ImageCodec.decode(bytes);
     }
 
     /**
      * Increment the frame delays in all tracking points and tracking lines.
      */
     private void incrementFrameDelay() {
-        for (TrackingPoint point : trackingPoints) {
-            point.incrementFrameDelay();
+        for (int p = 0; p < store.slots; p++) {
+            store.delay[p]++;
         }
-        for (TrackingLine line : trackingLines) {
-            line.incrementFrameDelay();
+        for (int l = 0; l < store.lines; l++) {
+            store.lineDelay[l]++;
         }
     }
 
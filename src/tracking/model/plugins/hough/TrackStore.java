@@ -0,0 +1,462 @@
+package tracking.model.plugins.hough;
+
+import java.util.Arrays;
+
+import tracking.model.NativeMemory;
+import tracking.model.plugins.StreetObject.Type;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * The open tracking points and lines of the {@link SignTracker} as struct of arrays: one primitive
+ * array per field and the index of a point or line as handle. Every point and line has one crop,
+ * the best of its points. The arrays only grow, so the tracker allocates nothing once they are big
+ * enough. The fields are package private and used directly by the tracker.
+ * <p>
+ * Points are in a list in the order they were added, with the links in {@link #next} and
+ * {@link #previous}, and in a uniform grid, whose cells are as big as the maximum point distance.
+ * The cells are hashed into buckets, each bucket is a chain of points. Unlinked points stay in
+ * their slot until {@link #compactPoints()} fills the holes with the last slots (swap remove), so
+ * the indices stay valid while the tracker compares the points. The list order does not depend on
+ * the slots, it is kept by the links and the {@link #order} of the points.
+ * <p>
+ * Lines are kept in the order they were added. They are only removed by
+ * {@link #compactLines(int)}, which keeps the order, because the first line gets the first point.
+ *
+ * @author Philipp
+ */
+class TrackStore {
+
+    /**
+     * No point, the end of a list or chain.
+     */
+    static final int NONE = -1;
+
+    /**
+     * The types by ordinal.
+     */
+    static final Type[] TYPES = Type.values();
+
+    // points
+    int[] x;
+    int[] y;
+    int[] type;
+    int[] delay;
+
+    /**
+     * {@link CropScore} of the image, the image with the better score is kept.
+     */
+    double[] score;
+    IplImage[] image;
+
+    /**
+     * Position in the list. Increases with every added point and never changes.
+     */
+    long[] order;
+
+    int[] next;
+    int[] previous;
+
+    /**
+     * Cell of the point and the next point in the chain of its bucket.
+     */
+    private int[] cellX;
+    private int[] cellY;
+    private int[] chain;
+    private boolean[] unlinked;
+
+    /**
+     * Used slots, with the unlinked points.
+     */
+    int slots;
+
+    /**
+     * Points in the list.
+     */
+    int points;
+
+    int first = NONE;
+    private int last = NONE;
+    private long nextOrder;
+
+    private int cellSize;
+    private int[] buckets;
+
+    // lines
+    int[] x1;
+    int[] y1;
+    int[] x2;
+    int[] y2;
+    int[] lineType;
+    int[] lineDelay;
+    double[] lineScore;
+    IplImage[] lineImage;
+    int lines;
+
+    /**
+     * @param distance
+     *            the maximum distance of two points, which are compared.
+     */
+    TrackStore(double distance) {
+        this.cellSize = cellSize(distance);
+        growPoints(64);
+        growLines(16);
+    }
+
+    /**
+     * Append a point to the list. The store takes the image.
+     *
+     * @return the index of the point.
+     */
+    int addPoint(int px, int py, int ordinal, int frameDelay, IplImage crop,
+            double cropScore) {
+        if (slots == x.length) {
+            growPoints(x.length * 2);
+        }
+        int p = slots++;
+        x[p] = px;
+        y[p] = py;
+        type[p] = ordinal;
+        delay[p] = frameDelay;
+        image[p] = crop;
+        score[p] = cropScore;
+        order[p] = nextOrder++;
+        unlinked[p] = false;
+
+        next[p] = NONE;
+        previous[p] = last;
+        if (last == NONE) {
+            first = p;
+        } else {
+            next[last] = p;
+        }
+        last = p;
+        points++;
+
+        cellX[p] = floorDiv(px, cellSize);
+        cellY[p] = floorDiv(py, cellSize);
+        addToBucket(p);
+        return p;
+    }
+
+    /**
+     * Remove a point from the list and the grid. The slot is freed by {@link #compactPoints()},
+     * until then the index and the fields stay valid. The image is not released.
+     *
+     * @param p
+     */
+    void unlinkPoint(int p) {
+        if (previous[p] == NONE) {
+            first = next[p];
+        } else {
+            next[previous[p]] = next[p];
+        }
+        if (next[p] == NONE) {
+            last = previous[p];
+        } else {
+            previous[next[p]] = previous[p];
+        }
+        next[p] = NONE;
+        previous[p] = NONE;
+        unlinked[p] = true;
+        points--;
+
+        int bucket = bucket(cellX[p], cellY[p]);
+        if (buckets[bucket] == p) {
+            buckets[bucket] = chain[p];
+        } else {
+            int q = buckets[bucket];
+            while (chain[q] != p) {
+                q = chain[q];
+            }
+            chain[q] = chain[p];
+        }
+    }
+
+    /**
+     * Free the slots of the unlinked points by moving the last slots into them.
+     */
+    void compactPoints() {
+        int p = 0;
+        while (p < slots) {
+            if (!unlinked[p]) {
+                p++;
+                continue;
+            }
+            int from = --slots;
+            if (from != p) {
+                movePoint(from, p);
+            }
+            image[from] = null;
+        }
+    }
+
+    /**
+     * Collect the points of the 3x3 cells around a location, sorted in list order. These are all
+     * points within the distance of the grid, and some more.
+     *
+     * @param px
+     * @param py
+     * @param result
+     *            the list for the indices, it is cleared first.
+     */
+    void neighbours(int px, int py, IntList result) {
+        result.size = 0;
+        int cx = floorDiv(px, cellSize);
+        int cy = floorDiv(py, cellSize);
+        for (int i = cx - 1; i <= cx + 1; i++) {
+            for (int j = cy - 1; j <= cy + 1; j++) {
+                for (int p = buckets[bucket(i, j)]; p != NONE; p = chain[p]) {
+                    if (cellX[p] == i && cellY[p] == j) {
+                        result.add(p);
+                    }
+                }
+            }
+        }
+
+        // insertion sort, there are only a few points
+        int[] values = result.values;
+        for (int i = 1; i < result.size; i++) {
+            int p = values[i];
+            int j = i - 1;
+            while (j >= 0 && order[values[j]] > order[p]) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = p;
+        }
+    }
+
+    /**
+     * Append a line. The store takes the image.
+     *
+     * @return the index of the line.
+     */
+    int addLine(int ax, int ay, int bx, int by, int ordinal, int frameDelay,
+            IplImage crop, double cropScore) {
+        if (lines == x1.length) {
+            growLines(x1.length * 2);
+        }
+        int l = lines++;
+        x1[l] = ax;
+        y1[l] = ay;
+        x2[l] = bx;
+        y2[l] = by;
+        lineType[l] = ordinal;
+        lineDelay[l] = frameDelay;
+        lineImage[l] = crop;
+        lineScore[l] = cropScore;
+        return l;
+    }
+
+    /**
+     * Remove the lines with a frame delay bigger than maxFrameDelay and keep the order of the
+     * others. The images of the removed lines must be released before.
+     *
+     * @param maxFrameDelay
+     */
+    void compactLines(int maxFrameDelay) {
+        int to = 0;
+        for (int l = 0; l < lines; l++) {
+            if (lineDelay[l] > maxFrameDelay) {
+                continue;
+            }
+            if (to != l) {
+                x1[to] = x1[l];
+                y1[to] = y1[l];
+                x2[to] = x2[l];
+                y2[to] = y2[l];
+                lineType[to] = lineType[l];
+                lineDelay[to] = lineDelay[l];
+                lineScore[to] = lineScore[l];
+                lineImage[to] = lineImage[l];
+            }
+            to++;
+        }
+        Arrays.fill(lineImage, to, lines, null);
+        lines = to;
+    }
+
+    /**
+     * Change the maximum distance of two points, which are compared. The grid is built again if
+     * the cell size changes.
+     *
+     * @param distance
+     */
+    void setDistance(double distance) {
+        int size = cellSize(distance);
+        if (size == cellSize) {
+            return;
+        }
+        cellSize = size;
+        rebuildBuckets();
+    }
+
+    /**
+     * Release all images and remove all points and lines.
+     */
+    void clear() {
+        for (int p = first; p != NONE; p = next[p]) {
+            NativeMemory.releaseImage(image[p]);
+        }
+        for (int l = 0; l < lines; l++) {
+            NativeMemory.releaseImage(lineImage[l]);
+        }
+        Arrays.fill(image, 0, slots, null);
+        Arrays.fill(lineImage, 0, lines, null);
+        Arrays.fill(buckets, NONE);
+        slots = 0;
+        points = 0;
+        first = NONE;
+        last = NONE;
+        lines = 0;
+    }
+
+    /**
+     * Move a point into another slot and correct the links to it.
+     */
+    private void movePoint(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        type[to] = type[from];
+        delay[to] = delay[from];
+        score[to] = score[from];
+        image[to] = image[from];
+        order[to] = order[from];
+        next[to] = next[from];
+        previous[to] = previous[from];
+        cellX[to] = cellX[from];
+        cellY[to] = cellY[from];
+        chain[to] = chain[from];
+        unlinked[to] = unlinked[from];
+        if (unlinked[to]) {
+            return;
+        }
+
+        if (previous[to] == NONE) {
+            first = to;
+        } else {
+            next[previous[to]] = to;
+        }
+        if (next[to] == NONE) {
+            last = to;
+        } else {
+            previous[next[to]] = to;
+        }
+
+        int bucket = bucket(cellX[to], cellY[to]);
+        if (buckets[bucket] == from) {
+            buckets[bucket] = to;
+        } else {
+            int q = buckets[bucket];
+            while (chain[q] != from) {
+                q = chain[q];
+            }
+            chain[q] = to;
+        }
+    }
+
+    private void addToBucket(int p) {
+        int bucket = bucket(cellX[p], cellY[p]);
+        chain[p] = buckets[bucket];
+        buckets[bucket] = p;
+    }
+
+    private int bucket(int cx, int cy) {
+        int hash = cx * 0x9E3779B1 + cy * 0x85EBCA77;
+        return (hash ^ (hash >>> 16)) & (buckets.length - 1);
+    }
+
+    /**
+     * Compute the cells of all points and fill the buckets again.
+     */
+    private void rebuildBuckets() {
+        Arrays.fill(buckets, NONE);
+        for (int p = first; p != NONE; p = next[p]) {
+            cellX[p] = floorDiv(x[p], cellSize);
+            cellY[p] = floorDiv(y[p], cellSize);
+            addToBucket(p);
+        }
+    }
+
+    private void growPoints(int capacity) {
+        x = Arrays.copyOf(x == null ? new int[0] : x, capacity);
+        y = Arrays.copyOf(y == null ? new int[0] : y, capacity);
+        type = Arrays.copyOf(type == null ? new int[0] : type, capacity);
+        delay = Arrays.copyOf(delay == null ? new int[0] : delay, capacity);
+        score = Arrays.copyOf(score == null ? new double[0] : score, capacity);
+        image = Arrays.copyOf(image == null ? new IplImage[0] : image,
+                capacity);
+        order = Arrays.copyOf(order == null ? new long[0] : order, capacity);
+        next = Arrays.copyOf(next == null ? new int[0] : next, capacity);
+        previous = Arrays.copyOf(previous == null ? new int[0] : previous,
+                capacity);
+        cellX = Arrays.copyOf(cellX == null ? new int[0] : cellX, capacity);
+        cellY = Arrays.copyOf(cellY == null ? new int[0] : cellY, capacity);
+        chain = Arrays.copyOf(chain == null ? new int[0] : chain, capacity);
+        unlinked = Arrays.copyOf(unlinked == null ? new boolean[0]
+                : unlinked, capacity);
+
+        // twice as many buckets as slots
+        buckets = new int[capacity * 2];
+        rebuildBuckets();
+    }
+
+    private void growLines(int capacity) {
+        x1 = Arrays.copyOf(x1 == null ? new int[0] : x1, capacity);
+        y1 = Arrays.copyOf(y1 == null ? new int[0] : y1, capacity);
+        x2 = Arrays.copyOf(x2 == null ? new int[0] : x2, capacity);
+        y2 = Arrays.copyOf(y2 == null ? new int[0] : y2, capacity);
+        lineType = Arrays.copyOf(lineType == null ? new int[0] : lineType,
+                capacity);
+        lineDelay = Arrays.copyOf(lineDelay == null ? new int[0] : lineDelay,
+                capacity);
+        lineScore = Arrays.copyOf(lineScore == null ? new double[0]
+                : lineScore, capacity);
+        lineImage = Arrays.copyOf(lineImage == null ? new IplImage[0]
+                : lineImage, capacity);
+    }
+
+    /**
+     * Integer division, which rounds towards negative infinity.
+     */
+    private static int floorDiv(int a, int b) {
+        int quotient = a / b;
+        if (a % b != 0 && a < 0) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /**
+     * The cell size for a distance, at least 1.
+     */
+    private static int cellSize(double distance) {
+        if (!(distance >= 1)) {
+            return 1;
+        }
+        return distance >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math
+                .ceil(distance);
+    }
+
+    /**
+     * A growable list of ints, which is reused.
+     */
+    static class IntList {
+
+        int[] values = new int[16];
+
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+    }
+}
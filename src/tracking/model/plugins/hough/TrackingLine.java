@@ -1,8 +1,6 @@
 package tracking.model.plugins.hough;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvCloneImage;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
 
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -12,6 +10,7 @@ import java.awt.geom.Rectangle2D;
 
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
 
+import tracking.model.NativeMemory;
 import tracking.model.plugins.StreetObject;
 import tracking.model.plugins.StreetObject.Type;
 
@@ -57,10 +56,20 @@ public class TrackingLine extends Line2D {
         this.type = type;
         this.P1 = new Point((int) P1.getX(), (int) P1.getY());
         this.P2 =new Point((int) P2.getX(), (int) P2.getY());
-        this.image = cvCloneImage(image);
+        this.image = NativeMemory.cloneImage(image);
         this.delay = 0;
     }
 
+    /**
+     * Set the frame delay, e.g. when the state of the {@link SignTracker} is restored.
+     * 
+     * @param delay
+     *            the frame delay.
+     */
+    void setFrameDelay(int delay) {
+        this.delay = delay;
+    }
+
     /**
      * Return the actual frame delay
      */
@@ -75,7 +84,7 @@ public class TrackingLine extends Line2D {
      *            the image to set
      */
     public void setImage(IplImage image) {
-        this.image = cvCloneImage(image);
+        this.image = NativeMemory.cloneImage(image);
     }
 
     /**
@@ -91,7 +100,7 @@ public class TrackingLine extends Line2D {
      * Release the local image. Call when this line is no longer needed.
      */
     public void releaseImage() {
-        cvReleaseImage(image);
+        NativeMemory.releaseImage(image);
     }
 
     /*
@@ -1,10 +1,10 @@
 package tracking.model.plugins.hough;
 
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
 
+import tracking.model.NativeMemory;
 import tracking.model.plugins.StreetObject;
 import tracking.model.plugins.StreetObject.Type;
 
@@ -27,6 +27,11 @@ public class TrackingPoint extends Point2D {
      */
     private IplImage image;
 
+    /**
+     * Score of the image, see {@link CropScore}.
+     */
+    private double score;
+
     /**
      * Frame delay.
      */
@@ -36,15 +41,46 @@ public class TrackingPoint extends Point2D {
      * @param point
      * @param type
      * @param image
-     *            ROI is saved as clone.
+     *            ROI is saved as clone and scored with {@link CropScore}.
      */
     public TrackingPoint(Point point, StreetObject.Type type, IplImage image) {
         this.type = type;
         this.point = point;
+        this.score = CropScore.score(image);
         this.image = DetectionUtils.getRoiImage(image);
         this.delay = 0;
     }
 
+    /**
+     * Create a tracking point with an already cut and scored image, e.g. from the
+     * {@link DetectionCache}.
+     *
+     * @param point
+     * @param type
+     * @param image
+     *            the image of the sign, the tracking point takes it.
+     * @param score
+     *            the {@link CropScore} of the image.
+     */
+    TrackingPoint(Point point, StreetObject.Type type, IplImage image,
+            double score) {
+        this.type = type;
+        this.point = point;
+        this.score = score;
+        this.image = image;
+        this.delay = 0;
+    }
+
+    /**
+     * Set the frame delay, e.g. when the state of the {@link SignTracker} is restored.
+     * 
+     * @param delay
+     *            the frame delay.
+     */
+    void setFrameDelay(int delay) {
+        this.delay = delay;
+    }
+
     /**
      * Return the actual frame delay
      */
@@ -84,11 +120,20 @@ public class TrackingPoint extends Point2D {
         return this.image;
     }
 
+    /**
+     * Return the score of the image. The trackers keep the image with the best score.
+     * 
+     * @return the {@link CropScore}
+     */
+    public double getScore() {
+        return this.score;
+    }
+
     /**
      * Release the image of the tracking point.
      */
     public void releaseImage() {
-        cvReleaseImage(image);
+        NativeMemory.releaseImage(image);
     }
 
     @Override
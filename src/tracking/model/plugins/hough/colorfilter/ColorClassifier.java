@@ -0,0 +1,160 @@
+package tracking.model.plugins.hough.colorfilter;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.googlecode.javacv.cpp.opencv_core.CvScalar;
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * Classify the pixels of a 3 channel image with any number of color ranges in one pass. For every
+ * channel and every channel value there is a bitmask with one bit per range, which is set if the
+ * value is inside the range. A pixel is inside a range, if the bit of the range is set in the masks
+ * of all 3 channels, so
+ *
+ * <pre>
+ * mask0[c0] &amp; mask1[c1] &amp; mask2[c2] != 0
+ * </pre>
+ *
+ * marks a pixel which is in at least one range. The result is the same as a cvInRangeS per range
+ * ORed together, but the cost of a pixel does not depend on the number of ranges (up to 64 ranges
+ * fit into one long).
+ *
+ * @author Philipp
+ */
+public class ColorClassifier {
+
+    /**
+     * Number of longs per channel value.
+     */
+    private final int words;
+
+    /**
+     * The masks of the 3 channels. The masks of value v are at v * words ... v * words + words - 1.
+     */
+    private final long[][] masks = new long[3][];
+
+    /**
+     * The bounds, the classifier was built from. Used to check if it is still valid.
+     */
+    private final double[] bounds;
+
+    /**
+     * Build the classifier for the ranges lows[i] to highs[i]. Like in cvInRangeS both bounds are
+     * inclusive, the fourth value of the scalars is ignored.
+     *
+     * @param lows
+     *            the lower bounds.
+     * @param highs
+     *            the upper bounds, same size as lows.
+     */
+    public ColorClassifier(List<CvScalar> lows, List<CvScalar> highs) {
+        this.bounds = toBounds(lows, highs);
+        int ranges = lows.size();
+        this.words = Math.max(1, (ranges + 63) / 64);
+
+        for (int c = 0; c < 3; c++) {
+            masks[c] = new long[256 * words];
+        }
+        for (int r = 0; r < ranges; r++) {
+            int word = r / 64;
+            long bit = 1L << (r % 64);
+            for (int c = 0; c < 3; c++) {
+                // cvInRangeS rounds the bounds into the 8 bit range
+                int low = Math.max(0, (int) Math.ceil(lows.get(r).getVal(c)));
+                int high = Math.min(255,
+                        (int) Math.floor(highs.get(r).getVal(c)));
+                for (int v = low; v <= high; v++) {
+                    masks[c][v * words + word] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return if the classifier was built from these ranges.
+     *
+     * @param lows
+     * @param highs
+     * @return <code>true</code> if the bounds are the same.
+     */
+    public boolean matches(List<CvScalar> lows, List<CvScalar> highs) {
+        if (lows.size() * 6 != bounds.length || highs.size() != lows.size()) {
+            return false;
+        }
+        int i = 0;
+        for (int r = 0; r < lows.size(); r++) {
+            for (int c = 0; c < 3; c++) {
+                if (bounds[i++] != lows.get(r).getVal(c)
+                        || bounds[i++] != highs.get(r).getVal(c)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write 255 into dst for all pixels of src, which are in at least one range, else 0.
+     *
+     * @param src
+     *            a 3 channel {@link IplImage} with depth 8.
+     * @param dst
+     *            a 1 channel {@link IplImage} with depth 8 and the size of src.
+     */
+    public void classify(IplImage src, IplImage dst) {
+        int width = src.width();
+        int height = src.height();
+        int srcStep = src.widthStep();
+        int dstStep = dst.widthStep();
+        ByteBuffer srcBuffer = src.getByteBuffer();
+        ByteBuffer dstBuffer = dst.getByteBuffer();
+        byte[] srcRow = new byte[width * 3];
+        byte[] dstRow = new byte[width];
+        long[] mask0 = masks[0];
+        long[] mask1 = masks[1];
+        long[] mask2 = masks[2];
+
+        for (int y = 0; y < height; y++) {
+            srcBuffer.position(y * srcStep);
+            srcBuffer.get(srcRow);
+
+            if (words == 1) {
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    long hit = mask0[srcRow[i] & 0xff]
+                            & mask1[srcRow[i + 1] & 0xff]
+                            & mask2[srcRow[i + 2] & 0xff];
+                    dstRow[x] = hit != 0 ? (byte) 255 : 0;
+                }
+            } else {
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    int v0 = (srcRow[i] & 0xff) * words;
+                    int v1 = (srcRow[i + 1] & 0xff) * words;
+                    int v2 = (srcRow[i + 2] & 0xff) * words;
+                    long hit = 0;
+                    for (int w = 0; w < words && hit == 0; w++) {
+                        hit = mask0[v0 + w] & mask1[v1 + w] & mask2[v2 + w];
+                    }
+                    dstRow[x] = hit != 0 ? (byte) 255 : 0;
+                }
+            }
+
+            dstBuffer.position(y * dstStep);
+            dstBuffer.put(dstRow);
+        }
+        srcBuffer.rewind();
+        dstBuffer.rewind();
+    }
+
+    private static double[] toBounds(List<CvScalar> lows, List<CvScalar> highs) {
+        double[] bounds = new double[lows.size() * 6];
+        int i = 0;
+        for (int r = 0; r < lows.size(); r++) {
+            for (int c = 0; c < 3; c++) {
+                bounds[i++] = lows.get(r).getVal(c);
+                bounds[i++] = highs.get(r).getVal(c);
+            }
+        }
+        return bounds;
+    }
+}
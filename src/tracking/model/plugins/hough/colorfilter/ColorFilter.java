@@ -1,20 +1,29 @@
 package tracking.model.plugins.hough.colorfilter;
 
 import static com.googlecode.javacv.cpp.opencv_core.IPL_DEPTH_8U;
-import static com.googlecode.javacv.cpp.opencv_core.cvCreateImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvCreateImageHeader;
 import static com.googlecode.javacv.cpp.opencv_core.cvGetSize;
-import static com.googlecode.javacv.cpp.opencv_core.cvInRangeS;
-import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImage;
+import static com.googlecode.javacv.cpp.opencv_core.cvReleaseImageHeader;
+import static com.googlecode.javacv.cpp.opencv_core.cvSetData;
+import static com.googlecode.javacv.cpp.opencv_core.cvSize;
 import static com.googlecode.javacv.cpp.opencv_imgproc.CV_HSV2RGB;
 import static com.googlecode.javacv.cpp.opencv_imgproc.CV_RGB2HSV;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvCvtColor;
 import static com.googlecode.javacv.cpp.opencv_imgproc.cvResize;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import tracking.gui.plugins.hough.colorfilter.ColorFilterPanel;
+import tracking.model.ImagePool;
+import tracking.model.Metrics;
+import tracking.model.Metrics.Stage;
+import tracking.model.NativeMemory;
 
 import com.googlecode.javacv.cpp.opencv_core.CvScalar;
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
@@ -33,6 +42,22 @@ public class ColorFilter extends Observable {
 
     private CvScalar actualhigh;
 
+    /**
+     * The classifier of the last filtered ranges.
+     */
+    private ColorClassifier classifier;
+
+    /**
+     * Number of horizontal stripes, which are pushed and filtered concurrently. 1 processes the
+     * whole frame in the calling thread.
+     */
+    private volatile int stripes = 1;
+
+    /**
+     * The fork-join pool of all color filters, created with the first striped filter.
+     */
+    private static ForkJoinPool pool;
+
     /**
      * Create a color filter for multi scalar filtering. The original image is filtered with all
      * given scalars and then all resulting images are summed up to one image, that only includes
@@ -48,11 +73,11 @@ public class ColorFilter extends Observable {
             CvScalar actualhigh, LinkedList<CvScalar> lows,
             LinkedList<CvScalar> highs) {
 
-        this.originalimageHSV = cvCreateImage(cvGetSize(originalimage),
-                IPL_DEPTH_8U, 3);
+        this.originalimageHSV = NativeMemory.createImage(
+                cvGetSize(originalimage), IPL_DEPTH_8U, 3);
         pushHSVValue(originalimage, originalimageHSV);
-        this.filteredimage = cvCreateImage(cvGetSize(originalimage),
-                IPL_DEPTH_8U, 1);
+        this.filteredimage = NativeMemory.createImage(
+                cvGetSize(originalimage), IPL_DEPTH_8U, 1);
         this.actuallow = actuallow;
         this.actualhigh = actualhigh;
         this.lows = lows;
@@ -67,11 +92,11 @@ public class ColorFilter extends Observable {
      */
     public ColorFilter(IplImage originalimage) {
 
-        this.originalimageHSV = cvCreateImage(cvGetSize(originalimage),
-                IPL_DEPTH_8U, 3);
+        this.originalimageHSV = NativeMemory.createImage(
+                cvGetSize(originalimage), IPL_DEPTH_8U, 3);
         pushHSVValue(originalimage, originalimageHSV);
-        this.filteredimage = cvCreateImage(cvGetSize(originalimage),
-                IPL_DEPTH_8U, 1);
+        this.filteredimage = NativeMemory.createImage(
+                cvGetSize(originalimage), IPL_DEPTH_8U, 1);
         this.actuallow = new CvScalar(255, 255, 255, 255);
         this.actualhigh = new CvScalar(0, 0, 0, 0);
         this.lows = new LinkedList<CvScalar>();
@@ -88,56 +113,205 @@ public class ColorFilter extends Observable {
      *            highs which are set in setLows() and setHighs().
      */
     public void filter(int method) {
+        filter(method, originalimageHSV);
+    }
+
+    /**
+     * Filter an image, which is already pushed like in {@link #setImage(IplImage)}, e.g. the
+     * {@link SaturatedImage} of a frame, which is shared by several plugins. Works like
+     * {@link #filter(int)}.
+     * 
+     * @param method
+     *            the filtering method, see {@link #filter(int)}.
+     * @param pushed
+     *            the pushed image with the size of the initial image. It is only read.
+     */
+    public void filter(int method, IplImage pushed) {
+        long start = Metrics.start();
+        try {
+            filterImage(method, pushed);
+        } finally {
+            Metrics.end(Stage.COLOR_FILTER, start);
+        }
+    }
+
+    /**
+     * Filter the HSV image, see {@link #filter(int)}. All ranges are classified in one pass with
+     * the {@link ColorClassifier}, which is rebuilt only when the ranges change.
+     */
+    private void filterImage(int method, final IplImage pushed) {
 
         boolean allright = lows != null && highs != null && !lows.isEmpty()
                 && !highs.isEmpty() && lows.size() == highs.size();
 
+        LinkedList<CvScalar> rangeLows = new LinkedList<CvScalar>();
+        LinkedList<CvScalar> rangeHighs = new LinkedList<CvScalar>();
         if (method == 0) {
-            cvInRangeS(originalimageHSV, actuallow, actualhigh, filteredimage);
-        } else if (method == 1 && allright) {
-            cvInRangeS(originalimageHSV, lows.get(0), highs.get(0),
-                    filteredimage);
-        } else {
+            rangeLows.add(actuallow);
+            rangeHighs.add(actualhigh);
+        } else if (method != 1 || !allright) {
             return;
         }
-
         if (allright) {
+            rangeLows.addAll(lows);
+            rangeHighs.addAll(highs);
+        }
+
+        if (classifier == null || !classifier.matches(rangeLows, rangeHighs)) {
+            classifier = new ColorClassifier(rangeLows, rangeHighs);
+        }
+        final ColorClassifier stripeClassifier = classifier;
+        forEachStripe(stripes, pushed.height(), new Stripe() {
+
+            @Override
+            public void process(int fromRow, int toRow) {
+                IplImage src = stripe(pushed, fromRow, toRow);
+                IplImage dst = stripe(filteredimage, fromRow, toRow);
+                stripeClassifier.classify(src, dst);
+                releaseStripe(pushed, src);
+                releaseStripe(filteredimage, dst);
+            }
+        });
+    }
 
-            ByteBuffer buff1 = filteredimage.getByteBuffer();
-            ByteBuffer buff2;
-            IplImage tmp = cvCreateImage(cvGetSize(filteredimage),
-                    filteredimage.depth(), filteredimage.nChannels());
-
-            for (int i = method; i < lows.size(); i++) { // go through all filters
-                cvInRangeS(originalimageHSV, lows.get(i), highs.get(i), tmp);
-                buff2 = tmp.getByteBuffer();
-
-                for (int j = 0; j < buff2.capacity(); j++) { // write all pixels that are != 0 into
-                                                             // filteredimage
-                    byte b = buff2.get(j);
-                    if (b != 0) {
-                        buff1.put(j, b);
-                    }
+    /**
+     * Set the Value of originalimageHSV to maximum.
+     */
+    private void pushHSVValue(IplImage src, IplImage dst) {
+        pushHSVValue(src, dst, stripes);
+    }
+
+    /**
+     * Set the Value of an image to maximum: convert src to HSV, set V to 255 and convert it back
+     * into dst.
+     * 
+     * @param src
+     *            the original image.
+     * @param dst
+     *            the pushed image, same size as src.
+     * @param stripes
+     *            number of stripes, which are pushed concurrently.
+     */
+    static void pushHSVValue(final IplImage src, final IplImage dst,
+            int stripes) {
+        long start = Metrics.start();
+        forEachStripe(stripes, dst.height(), new Stripe() {
+
+            @Override
+            public void process(int fromRow, int toRow) {
+                IplImage srcStripe = stripe(src, fromRow, toRow);
+                IplImage dstStripe = stripe(dst, fromRow, toRow);
+                cvCvtColor(srcStripe, dstStripe, CV_RGB2HSV);
+                maximizeValue(dstStripe);
+                cvCvtColor(dstStripe, dstStripe, CV_HSV2RGB);
+                releaseStripe(src, srcStripe);
+                releaseStripe(dst, dstStripe);
+            }
+        });
+        Metrics.end(Stage.HSV_PUSH, start);
+    }
+
+    /**
+     * Work on the rows fromRow (inclusive) to toRow (exclusive) of the images.
+     */
+    private interface Stripe {
+        void process(int fromRow, int toRow);
+    }
+
+    /**
+     * Split the rows into the set number of stripes and process them on the fork-join pool. The
+     * stripes are disjoint, so every stripe writes its own part of the images. Returns after all
+     * stripes are processed.
+     */
+    private static void forEachStripe(int stripes, final int height,
+            final Stripe stripe) {
+        final int count = Math.max(1, Math.min(stripes, height));
+        if (count == 1) {
+            stripe.process(0, height);
+            return;
+        }
+
+        getPool().invoke(new RecursiveAction() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+                for (int i = 0; i < count; i++) {
+                    final int fromRow = height * i / count;
+                    final int toRow = height * (i + 1) / count;
+                    tasks.add(new RecursiveAction() {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected void compute() {
+                            stripe.process(fromRow, toRow);
+                        }
+                    });
                 }
+                invokeAll(tasks);
             }
-            cvReleaseImage(tmp);
+        });
+    }
 
+    /**
+     * Return a header for the rows fromRow to toRow of the image, which shares the image data. If
+     * the stripe is the whole image, the image itself is returned.
+     */
+    private static IplImage stripe(IplImage image, int fromRow, int toRow) {
+        if (fromRow == 0 && toRow == image.height()) {
+            return image;
+        }
+        IplImage header = cvCreateImageHeader(
+                cvSize(image.width(), toRow - fromRow), image.depth(),
+                image.nChannels());
+        cvSetData(header,
+                image.imageData().position(fromRow * image.widthStep()),
+                image.widthStep());
+        return header;
+    }
+
+    /**
+     * Release a header of {@link #stripe(IplImage, int, int)}.
+     */
+    private static void releaseStripe(IplImage image, IplImage stripe) {
+        if (stripe != image) {
+            cvReleaseImageHeader(stripe);
         }
+    }
 
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
     }
 
     /**
-     * Set the Value of originalimageHSV to maximum.
+     * Set the V channel of a HSV image to 255. Every row is copied into an array, the V bytes are
+     * set with a stride of 3 and the row is written back, so there is no bounds check and no
+     * branch per byte. The padding at the end of the rows is not touched.
+     * 
+     * @param hsv
+     *            3 channel {@link IplImage} with depth 8.
      */
-    private void pushHSVValue(IplImage src, IplImage dst) {
-        cvCvtColor(src, dst, CV_RGB2HSV);
-        ByteBuffer buff = dst.getByteBuffer();
-        for (int i = 0; i < buff.capacity(); i++) {
-            if (i % 3 == 2) {
-                buff.put(i, (byte) (255)); // 255 max. unsigned byte value
+    static void maximizeValue(IplImage hsv) {
+        ByteBuffer buff = hsv.getByteBuffer();
+        int step = hsv.widthStep();
+        byte[] row = new byte[hsv.width() * 3];
+
+        for (int y = 0; y < hsv.height(); y++) {
+            buff.position(y * step);
+            buff.get(row);
+            for (int i = 2; i < row.length; i += 3) {
+                row[i] = (byte) 255; // 255 max. unsigned byte value
             }
+            buff.position(y * step);
+            buff.put(row);
         }
-        cvCvtColor(dst, dst, CV_HSV2RGB);
+        buff.rewind();
     }
 
     /**
@@ -166,11 +340,11 @@ public class ColorFilter extends Observable {
      *            the new {@link IplImage}.
      */
     public void setImageR(IplImage image) {
-        IplImage tmp = cvCreateImage(cvGetSize(originalimageHSV),
-                image.depth(), image.nChannels());
+        IplImage tmp = ImagePool.borrow(originalimageHSV.width(),
+                originalimageHSV.height(), image.depth(), image.nChannels());
         cvResize(image, tmp);
         pushHSVValue(tmp, originalimageHSV);
-        cvReleaseImage(tmp);
+        ImagePool.giveBack(tmp);
     }
 
     /**
@@ -315,4 +489,35 @@ public class ColorFilter extends Observable {
         this.highs = highs;
     }
 
+    /**
+     * Release the images of the filter. The filter can not be used afterwards.
+     */
+    public void release() {
+        NativeMemory.releaseImage(originalimageHSV);
+        NativeMemory.releaseImage(filteredimage);
+        originalimageHSV = null;
+        filteredimage = null;
+    }
+
+    /**
+     * Set the number of horizontal stripes, which are processed concurrently in the HSV push and
+     * the filter. All color filters share one fork-join pool with a thread per core, so with
+     * several frames in work at the same time 1 is usually the best value.
+     * 
+     * @param stripes
+     *            number of stripes, 1 for no parallel processing.
+     */
+    public void setStripes(int stripes) {
+        this.stripes = Math.max(1, stripes);
+    }
+
+    /**
+     * Return the number of stripes.
+     * 
+     * @return number of stripes.
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
 }
@@ -0,0 +1,46 @@
+package tracking.model.plugins.hough.colorfilter;
+
+import tracking.model.ImagePool;
+import tracking.model.plugins.FrameContext;
+import tracking.model.plugins.ImageDerivation;
+
+import com.googlecode.javacv.cpp.opencv_core.IplImage;
+
+/**
+ * The frame with the HSV value pushed to maximum, the input of every {@link ColorFilter}. As an
+ * {@link ImageDerivation} it is computed once per frame in the {@link FrameContext}, no matter how
+ * many plugins filter the frame. All instances are equal, the number of stripes only changes how
+ * fast the image is computed.
+ *
+ * @author Philipp
+ */
+public class SaturatedImage implements ImageDerivation {
+
+    private final int stripes;
+
+    /**
+     * @param stripes
+     *            number of stripes, which are pushed concurrently, see
+     *            {@link ColorFilter#setStripes(int)}.
+     */
+    public SaturatedImage(int stripes) {
+        this.stripes = Math.max(1, stripes);
+    }
+
+    @Override
+    public IplImage derive(IplImage original) {
+        IplImage pushed = ImagePool.borrow(original);
+        ColorFilter.pushHSVValue(original, pushed, stripes);
+        return pushed;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SaturatedImage;
+    }
+
+    @Override
+    public int hashCode() {
+        return SaturatedImage.class.hashCode();
+    }
+}